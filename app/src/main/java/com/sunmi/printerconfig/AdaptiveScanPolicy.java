@@ -0,0 +1,122 @@
+package com.sunmi.printerconfig;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Ends a scan as soon as any enabled trigger fires: a target MAC or serial is live, the expected
+ * number of likely-Sunmi printers is live, or no new printer has appeared for a quiet period.
+ * The hard timeout always applies, and no early trigger fires before the minimum scan time.
+ */
+public final class AdaptiveScanPolicy implements ScanTerminationPolicy {
+    private final long maxScanMs;
+    private final long minScanMs;
+    private final long quietPeriodMs;
+    private final int expectedLikelySunmiCount;
+    private final Set<String> targetAddresses;
+    private final Set<String> targetSerials;
+
+    private long startedAtMs;
+    private long lastNewPrinterAtMs;
+    private int lastLiveCount;
+    private boolean targetSeen;
+    private int likelySunmiCount;
+
+    /**
+     * @param quietPeriodMs            0 disables the quiet-period trigger
+     * @param expectedLikelySunmiCount 0 disables the expected-count trigger
+     */
+    public AdaptiveScanPolicy(
+        long maxScanMs,
+        long minScanMs,
+        long quietPeriodMs,
+        int expectedLikelySunmiCount,
+        Set<String> targetAddresses,
+        Set<String> targetSerials
+    ) {
+        this.maxScanMs = maxScanMs;
+        this.minScanMs = Math.min(minScanMs, maxScanMs);
+        this.quietPeriodMs = quietPeriodMs;
+        this.expectedLikelySunmiCount = expectedLikelySunmiCount;
+        this.targetAddresses = normalize(targetAddresses);
+        this.targetSerials = targetSerials == null ? Collections.emptySet() : new HashSet<>(targetSerials);
+    }
+
+    private static Set<String> normalize(Set<String> addresses) {
+        Set<String> normalized = new HashSet<>();
+        if (addresses != null) {
+            for (String address : addresses) {
+                normalized.add(address.trim().toUpperCase(Locale.ROOT));
+            }
+        }
+        return normalized;
+    }
+
+    @Override
+    public void onScanStarted(long nowMs) {
+        startedAtMs = nowMs;
+        lastNewPrinterAtMs = nowMs;
+        lastLiveCount = 0;
+        targetSeen = false;
+        likelySunmiCount = 0;
+    }
+
+    @Override
+    public void onSnapshot(DiscoverySnapshot snapshot, long nowMs) {
+        if (snapshot.getLiveCount() > lastLiveCount) {
+            lastNewPrinterAtMs = nowMs;
+        }
+        lastLiveCount = snapshot.getLiveCount();
+
+        int likely = 0;
+        for (DiscoveredPrinter printer : snapshot.getPrinters()) {
+            if (printer.isCached()) {
+                continue;
+            }
+            if (printer.isLikelySunmi()) {
+                likely++;
+            }
+            if (targetAddresses.contains(printer.getAddress())
+                || (!printer.getSerialNumber().isEmpty() && targetSerials.contains(printer.getSerialNumber()))) {
+                targetSeen = true;
+            }
+        }
+        likelySunmiCount = likely;
+    }
+
+    @Override
+    public StopReason check(long nowMs) {
+        long elapsed = nowMs - startedAtMs;
+        if (elapsed >= maxScanMs) {
+            return StopReason.TIMEOUT;
+        }
+        if (elapsed < minScanMs) {
+            return null;
+        }
+        if (targetSeen) {
+            return StopReason.TARGET_FOUND;
+        }
+        if (expectedLikelySunmiCount > 0 && likelySunmiCount >= expectedLikelySunmiCount) {
+            return StopReason.EXPECTED_COUNT_REACHED;
+        }
+        // Quiet only counts once something was found; an empty site still gets the full window.
+        if (quietPeriodMs > 0 && lastLiveCount > 0 && nowMs - lastNewPrinterAtMs >= quietPeriodMs) {
+            return StopReason.QUIET_PERIOD;
+        }
+        return null;
+    }
+
+    @Override
+    public long nextCheckAtMs() {
+        long next = startedAtMs + maxScanMs;
+        if (targetSeen || (expectedLikelySunmiCount > 0 && likelySunmiCount >= expectedLikelySunmiCount)) {
+            next = Math.min(next, startedAtMs + minScanMs);
+        }
+        if (quietPeriodMs > 0 && lastLiveCount > 0) {
+            next = Math.min(next, Math.max(startedAtMs + minScanMs, lastNewPrinterAtMs + quietPeriodMs));
+        }
+        return next;
+    }
+}
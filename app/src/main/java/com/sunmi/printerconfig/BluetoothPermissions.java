@@ -0,0 +1,39 @@
+package com.sunmi.printerconfig;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+
+import androidx.core.content.ContextCompat;
+
+/**
+ * Runtime permissions needed to scan for and talk to printers on this Android version.
+ */
+final class BluetoothPermissions {
+    private BluetoothPermissions() {
+    }
+
+    static String[] required() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            return new String[]{
+                Manifest.permission.BLUETOOTH_SCAN,
+                Manifest.permission.BLUETOOTH_CONNECT
+            };
+        }
+        return new String[]{
+            Manifest.permission.BLUETOOTH,
+            Manifest.permission.BLUETOOTH_ADMIN,
+            Manifest.permission.ACCESS_FINE_LOCATION
+        };
+    }
+
+    static boolean areGranted(Context context) {
+        for (String permission : required()) {
+            if (ContextCompat.checkSelfPermission(context, permission) != PackageManager.PERMISSION_GRANTED) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
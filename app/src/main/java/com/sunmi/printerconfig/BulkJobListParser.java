@@ -0,0 +1,50 @@
+package com.sunmi.printerconfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parses bulk job lists written as {@code target,ssid,password} lines.
+ *
+ * <p>The target is either a Bluetooth MAC ({@code AA:BB:CC:DD:EE:FF}) or a name pattern that may use
+ * {@code *} and {@code ?}. Blank lines and lines starting with {@code #} are ignored. The password is
+ * everything after the second comma so it may itself contain commas; it may be empty for open networks.
+ */
+public final class BulkJobListParser {
+    private BulkJobListParser() {
+    }
+
+    public static List<BulkProvisioningJob> parse(String text) {
+        List<BulkProvisioningJob> jobs = new ArrayList<>();
+        if (text == null) {
+            return jobs;
+        }
+
+        String[] lines = text.split("\r?\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+
+            int firstComma = line.indexOf(',');
+            if (firstComma < 0) {
+                throw new IllegalArgumentException("Line " + (i + 1) + ": expected target,ssid,password");
+            }
+            int secondComma = line.indexOf(',', firstComma + 1);
+
+            String target = line.substring(0, firstComma);
+            String ssid = secondComma < 0 ? line.substring(firstComma + 1) : line.substring(firstComma + 1, secondComma);
+            String password = secondComma < 0 ? "" : line.substring(secondComma + 1);
+
+            BulkProvisioningJob job = new BulkProvisioningJob(target, ssid, password);
+            if (job.getTarget().isEmpty() || job.getSsid().isEmpty()) {
+                throw new IllegalArgumentException("Line " + (i + 1) + ": target and SSID are required");
+            }
+            jobs.add(job);
+        }
+        return Collections.unmodifiableList(jobs);
+    }
+}
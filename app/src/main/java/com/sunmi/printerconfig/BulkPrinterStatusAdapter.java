@@ -0,0 +1,124 @@
+package com.sunmi.printerconfig;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One row per printer of a bulk run, in the order they were queued, showing where each one is.
+ * Rows are updated in place as {@link BulkProvisioningQueue} reports status changes.
+ */
+public class BulkPrinterStatusAdapter extends RecyclerView.Adapter<BulkPrinterStatusAdapter.ViewHolder> {
+    private static final class Row {
+        final DiscoveredPrinter printer;
+        BulkProvisioningQueue.PrinterStatus status;
+        String detail;
+
+        Row(DiscoveredPrinter printer) {
+            this.printer = printer;
+        }
+    }
+
+    private final List<Row> rows = new ArrayList<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+
+    public BulkPrinterStatusAdapter() {
+        setHasStableIds(true);
+    }
+
+    public void update(DiscoveredPrinter printer, BulkProvisioningQueue.PrinterStatus status, String detail) {
+        Integer position = positions.get(printer.getAddress());
+        boolean inserted = position == null;
+        if (inserted) {
+            position = rows.size();
+            positions.put(printer.getAddress(), position);
+            rows.add(new Row(printer));
+        }
+        Row row = rows.get(position);
+        row.status = status;
+        row.detail = detail;
+        if (inserted) {
+            notifyItemInserted(position);
+        } else {
+            notifyItemChanged(position);
+        }
+    }
+
+    public void clear() {
+        int removed = rows.size();
+        rows.clear();
+        positions.clear();
+        notifyItemRangeRemoved(0, removed);
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+            .inflate(R.layout.item_bluetooth_device, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        Row row = rows.get(position);
+        Context context = holder.itemView.getContext();
+        holder.deviceName.setText(row.printer.getName().isEmpty()
+            ? context.getString(R.string.unknown_device)
+            : row.printer.getName());
+        holder.deviceStatus.setText(context.getString(
+            R.string.bulk_printer_row,
+            row.printer.getAddress(),
+            describe(context, row.status, row.detail)
+        ));
+    }
+
+    private static String describe(Context context, BulkProvisioningQueue.PrinterStatus status, String detail) {
+        switch (status) {
+            case CONNECTING:
+                return context.getString(R.string.bulk_status_connecting);
+            case READING_WIFI_LIST:
+                return context.getString(R.string.bulk_status_reading_wifi_list);
+            case SENDING_CREDENTIALS:
+                return context.getString(R.string.bulk_status_sending_credentials, detail);
+            case CONFIGURED:
+                return context.getString(R.string.bulk_status_configured, detail);
+            case FAILED:
+                return context.getString(R.string.bulk_status_failed, detail);
+            case QUEUED:
+            default:
+                return context.getString(R.string.bulk_status_queued);
+        }
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return rows.get(position).printer.getStableId();
+    }
+
+    @Override
+    public int getItemCount() {
+        return rows.size();
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        private final TextView deviceName;
+        private final TextView deviceStatus;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            deviceName = itemView.findViewById(R.id.deviceName);
+            deviceStatus = itemView.findViewById(R.id.deviceAddress);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.sunmi.printerconfig;
+
+import android.bluetooth.BluetoothAdapter;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.ScrollView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs a {@link BulkProvisioningQueue} from a pasted or imported job list. The queue lives as long as
+ * this screen, so the manifest has it handle configuration changes itself instead of being recreated.
+ */
+public class BulkProvisioningActivity extends AppCompatActivity implements BulkProvisioningQueue.Listener {
+    private static final int REQUEST_IMPORT_JOB_LIST = 1;
+    private static final int MAX_LOG_CHARS = 16_000;
+    private static final String BULK_DIR = "bulk";
+    private static final String JOB_LIST_FILE = "jobs.txt";
+    private static final String JOURNAL_FILE = "journal.log";
+
+    private EditText jobListInput;
+    private EditText parallelismInput;
+    private Button importButton;
+    private Button resetButton;
+    private Button startButton;
+    private TextView progressText;
+    private TextView logText;
+    private ScrollView logScroll;
+    private final BulkPrinterStatusAdapter statusAdapter = new BulkPrinterStatusAdapter();
+
+    private File jobListFile;
+    // The job list as last saved, which the journal's progress belongs to; null until loaded.
+    private String savedJobListText;
+    private ProvisioningJournal journal;
+    private BulkProvisioningQueue queue;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_bulk_provisioning);
+
+        jobListInput = findViewById(R.id.jobListInput);
+        importButton = findViewById(R.id.importButton);
+        resetButton = findViewById(R.id.resetButton);
+        startButton = findViewById(R.id.startButton);
+        progressText = findViewById(R.id.progressText);
+        logText = findViewById(R.id.logText);
+        logScroll = findViewById(R.id.logScroll);
+        parallelismInput = findViewById(R.id.parallelismInput);
+        parallelismInput.setText(String.valueOf(BulkProvisioningQueue.DEFAULT_MAX_PARALLEL));
+        RecyclerView printerStatusList = findViewById(R.id.printerStatusList);
+        printerStatusList.setLayoutManager(new LinearLayoutManager(this));
+        printerStatusList.setAdapter(statusAdapter);
+
+        File bulkDir = new File(getFilesDir(), BULK_DIR);
+        jobListFile = new File(bulkDir, JOB_LIST_FILE);
+        journal = new ProvisioningJournal(new File(bulkDir, JOURNAL_FILE));
+
+        // Until the saved list and journal are read there is nothing to resume or reset.
+        startButton.setEnabled(false);
+        resetButton.setEnabled(false);
+        loadSavedRun();
+
+        importButton.setOnClickListener(v -> {
+            Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.setType("text/*");
+            startActivityForResult(intent, REQUEST_IMPORT_JOB_LIST);
+        });
+
+        resetButton.setOnClickListener(v -> {
+            journal.clear();
+            progressText.setText("");
+            logText.setText("");
+        });
+
+        startButton.setOnClickListener(v -> {
+            if (queue != null && queue.isRunning()) {
+                queue.stop();
+            } else {
+                startQueue();
+            }
+        });
+    }
+
+    private void loadSavedRun() {
+        new Thread(() -> {
+            String jobListText = "";
+            boolean readFailed = false;
+            try {
+                journal.replay();
+                if (jobListFile.exists()) {
+                    jobListText = readFully(new FileInputStream(jobListFile));
+                }
+            } catch (IOException e) {
+                readFailed = true;
+            }
+            String loadedText = jobListText;
+            boolean failed = readFailed;
+            runOnUiThread(() -> onSavedRunLoaded(loadedText, failed));
+        }, "bulk-load").start();
+    }
+
+    private void onSavedRunLoaded(String jobListText, boolean readFailed) {
+        if (isDestroyed()) {
+            return;
+        }
+        savedJobListText = jobListText;
+        if (readFailed) {
+            onLog(getString(R.string.bulk_journal_read_failed));
+        }
+        // Keep whatever the user typed or imported while the file was being read.
+        if (jobListInput.getText().length() == 0) {
+            jobListInput.setText(jobListText);
+        }
+        int alreadyConfigured = journal.getConfiguredAddresses().size();
+        if (alreadyConfigured > 0) {
+            progressText.setText(getString(R.string.bulk_resume_available, alreadyConfigured));
+        }
+        startButton.setEnabled(true);
+        resetButton.setEnabled(true);
+    }
+
+    private void startQueue() {
+        BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        if (bluetoothAdapter == null || !bluetoothAdapter.isEnabled()) {
+            Toast.makeText(this, R.string.bluetooth_disabled, Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        String jobListText = jobListInput.getText().toString();
+        List<BulkProvisioningJob> jobs;
+        try {
+            jobs = BulkJobListParser.parse(jobListText);
+        } catch (IllegalArgumentException e) {
+            Toast.makeText(this, getString(R.string.error, e.getMessage()), Toast.LENGTH_LONG).show();
+            return;
+        }
+        if (jobs.isEmpty()) {
+            Toast.makeText(this, R.string.bulk_job_list_empty, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        try {
+            // Progress only carries over while the job list is unchanged; a new list starts a new journal.
+            if (!jobListText.equals(savedJobListText)) {
+                journal.clear();
+                writeJobList(jobListText);
+                savedJobListText = jobListText;
+            }
+        } catch (IOException e) {
+            Toast.makeText(this, R.string.bulk_journal_write_failed, Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        setEditingEnabled(false);
+        startButton.setText(R.string.bulk_stop);
+        statusAdapter.clear();
+        queue = new BulkProvisioningQueue(this, jobs, journal, readParallelism(), this);
+        queue.start();
+    }
+
+    private int readParallelism() {
+        try {
+            return Integer.parseInt(parallelismInput.getText().toString().trim());
+        } catch (NumberFormatException e) {
+            return BulkProvisioningQueue.DEFAULT_MAX_PARALLEL;
+        }
+    }
+
+    private void setEditingEnabled(boolean enabled) {
+        jobListInput.setEnabled(enabled);
+        parallelismInput.setEnabled(enabled);
+        importButton.setEnabled(enabled);
+        resetButton.setEnabled(enabled);
+    }
+
+    private void writeJobList(String text) throws IOException {
+        File parent = jobListFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        try (OutputStream out = new FileOutputStream(jobListFile)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            int read;
+            while ((read = input.read(chunk)) != -1) {
+                buffer.write(chunk, 0, read);
+            }
+            return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode != REQUEST_IMPORT_JOB_LIST || resultCode != RESULT_OK || data == null) {
+            return;
+        }
+
+        Uri uri = data.getData();
+        if (uri == null) {
+            return;
+        }
+        try {
+            jobListInput.setText(readFully(getContentResolver().openInputStream(uri)));
+        } catch (IOException | SecurityException e) {
+            Toast.makeText(this, R.string.bulk_import_failed, Toast.LENGTH_LONG).show();
+        }
+    }
+
+    @Override
+    public void onProgress(int configured, int failed, int queued, double printersPerHour) {
+        progressText.setText(getString(
+            R.string.bulk_progress,
+            configured,
+            failed,
+            queued,
+            String.format(Locale.ROOT, "%.1f", printersPerHour)
+        ));
+    }
+
+    @Override
+    public void onPrinterStatus(DiscoveredPrinter printer, BulkProvisioningQueue.PrinterStatus status, String detail) {
+        statusAdapter.update(printer, status, detail);
+    }
+
+    @Override
+    public void onLog(String message) {
+        CharSequence existing = logText.getText();
+        String updated = existing == null || existing.length() == 0 ? message : existing + "\n" + message;
+        if (updated.length() > MAX_LOG_CHARS) {
+            updated = updated.substring(updated.length() - MAX_LOG_CHARS);
+        }
+        logText.setText(updated);
+        logScroll.post(() -> logScroll.fullScroll(ScrollView.FOCUS_DOWN));
+    }
+
+    @Override
+    public void onStopped() {
+        setEditingEnabled(true);
+        startButton.setText(R.string.bulk_start);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (queue != null) {
+            queue.stop();
+        }
+    }
+}
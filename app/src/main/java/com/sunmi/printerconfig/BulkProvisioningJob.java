@@ -0,0 +1,78 @@
+package com.sunmi.printerconfig;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * One line of a bulk job list: a printer MAC or name pattern mapped to the Wi-Fi profile it should receive.
+ */
+public final class BulkProvisioningJob {
+    private static final Pattern MAC_PATTERN = Pattern.compile("^([0-9A-F]{2}:){5}[0-9A-F]{2}$");
+
+    private final String target;
+    private final String ssid;
+    private final String password;
+    private final boolean macTarget;
+
+    public BulkProvisioningJob(String target, String ssid, String password) {
+        String normalizedTarget = target == null ? "" : target.trim();
+        this.macTarget = MAC_PATTERN.matcher(normalizedTarget.toUpperCase(Locale.ROOT)).matches();
+        this.target = macTarget ? normalizedTarget.toUpperCase(Locale.ROOT) : normalizedTarget;
+        this.ssid = ssid == null ? "" : ssid.trim();
+        this.password = password == null ? "" : password;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public String getSsid() {
+        return ssid;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public boolean isMacTarget() {
+        return macTarget;
+    }
+
+    public boolean matches(DiscoveredPrinter printer) {
+        if (macTarget) {
+            return target.equalsIgnoreCase(printer.getAddress());
+        }
+        return globMatches(target, printer.getName());
+    }
+
+    // Case-insensitive glob with '*' (any run) and '?' (any single char); no allocation per call.
+    static boolean globMatches(String pattern, String value) {
+        int p = 0;
+        int v = 0;
+        int starP = -1;
+        int starV = 0;
+        while (v < value.length()) {
+            if (p < pattern.length()
+                && (pattern.charAt(p) == '?' || equalsIgnoreCase(pattern.charAt(p), value.charAt(v)))) {
+                p++;
+                v++;
+            } else if (p < pattern.length() && pattern.charAt(p) == '*') {
+                starP = p++;
+                starV = v;
+            } else if (starP >= 0) {
+                p = starP + 1;
+                v = ++starV;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*') {
+            p++;
+        }
+        return p == pattern.length();
+    }
+
+    private static boolean equalsIgnoreCase(char a, char b) {
+        return a == b || Character.toUpperCase(a) == Character.toUpperCase(b);
+    }
+}
@@ -0,0 +1,536 @@
+package com.sunmi.printerconfig;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.sunmi.cloudprinter.bean.PrinterDevice;
+import com.sunmi.cloudprinter.bean.Router;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs a bulk job list as a pipeline: one SDK client keeps scanning and queueing matching printers
+ * while up to {@code maxParallel} of them are configured at once, each through its own
+ * {@link PrinterSession}. Every printer goes through {@code getPrinterSn}, {@code getPrinterWifiList}
+ * and {@code setPrinterWifi} independently, so a shelf of printers takes about as long as its slowest
+ * one rather than the sum of all of them.
+ *
+ * <p>All state is confined to the main looper; SDK callbacks are re-posted there. Journal writes go
+ * to a single background thread so fsync never blocks the UI. A queue is single-use: create a new
+ * one for each run.
+ *
+ * <p>Each SDK request is a {@link RetryingCall}, so transient failures are retried in place and a
+ * printer whose circuit breaker is open fails at once instead of holding up the queue. A printer that
+ * still fails is queued again the next time the scan reports it, until it has failed
+ * {@link #MAX_FAILURES_PER_PRINTER} times, counting failures journaled by earlier runs.
+ */
+public final class BulkProvisioningQueue {
+    public static final int DEFAULT_MAX_PARALLEL = 3;
+    // Android holds at most about seven GATT client links, shared with every other app on the phone.
+    public static final int MAX_PARALLEL = 6;
+    public static final int MAX_FAILURES_PER_PRINTER = 2;
+
+    public enum PrinterStatus {
+        QUEUED,
+        CONNECTING,
+        READING_WIFI_LIST,
+        SENDING_CREDENTIALS,
+        CONFIGURED,
+        FAILED
+    }
+
+    public interface Listener {
+        /**
+         * @param failed printers given up on after {@link #MAX_FAILURES_PER_PRINTER} failed attempts
+         */
+        void onProgress(int configured, int failed, int queued, double printersPerHour);
+
+        /**
+         * @param detail the SSID for {@link PrinterStatus#SENDING_CREDENTIALS} and
+         *               {@link PrinterStatus#CONFIGURED}, the reason for {@link PrinterStatus#FAILED},
+         *               otherwise null
+         */
+        void onPrinterStatus(DiscoveredPrinter printer, PrinterStatus status, String detail);
+
+        void onLog(String message);
+
+        void onStopped();
+    }
+
+    private final Context context;
+    private final List<BulkProvisioningJob> jobs;
+    private final ProvisioningJournal journal;
+    private final Listener listener;
+    private final int maxParallel;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ExecutorService journalExecutor = Executors.newSingleThreadExecutor();
+
+    private final Set<String> seenAddresses = new HashSet<>();
+    private final Map<String, Integer> failureCounts = new HashMap<>();
+    private final ArrayDeque<Worker> queue = new ArrayDeque<>();
+    private final Map<String, Worker> active = new LinkedHashMap<>();
+    private ScanTransport scanClient;
+
+    private boolean running = false;
+    private int configuredCount = 0;
+    private int failedCount = 0;
+    private long startedAtMs;
+
+    /**
+     * @param maxParallel printers configured at the same time, clamped to 1..{@link #MAX_PARALLEL}
+     */
+    public BulkProvisioningQueue(
+        Context context,
+        List<BulkProvisioningJob> jobs,
+        ProvisioningJournal journal,
+        int maxParallel,
+        Listener listener
+    ) {
+        this.context = context.getApplicationContext();
+        this.jobs = jobs;
+        this.journal = journal;
+        this.maxParallel = Math.max(1, Math.min(MAX_PARALLEL, maxParallel));
+        this.listener = listener;
+    }
+
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        startedAtMs = SystemClock.elapsedRealtime();
+
+        // Printers finished in an earlier (possibly killed) run are skipped outright.
+        seenAddresses.addAll(journal.getConfiguredAddresses());
+        failureCounts.putAll(journal.getFailureCounts());
+        int resumed = seenAddresses.size();
+        if (resumed > 0) {
+            listener.onLog(context.getString(R.string.bulk_resuming, resumed));
+        }
+
+        scanClient = PrinterSessionManager.getInstance(context).createScanTransport(new ScanCallbacks());
+
+        try {
+            scanClient.startScan();
+        } catch (Throwable t) {
+            listener.onLog(context.getString(R.string.error, context.getString(R.string.printer_scan_failed)));
+            stop();
+            return;
+        }
+        publishProgress();
+    }
+
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+
+        try {
+            scanClient.stopScan();
+        } catch (Throwable ignored) {
+        }
+        for (Worker worker : active.values()) {
+            worker.cancel();
+        }
+        active.clear();
+        queue.clear();
+        journalExecutor.shutdown();
+        listener.onStopped();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void onPrinterDiscovered(DiscoveredPrinter printer) {
+        if (!running || printer.getAddress().isEmpty() || !seenAddresses.add(printer.getAddress())) {
+            return;
+        }
+        if (failureCount(printer.getAddress()) >= MAX_FAILURES_PER_PRINTER) {
+            listener.onLog(context.getString(R.string.bulk_skipping_failed, displayName(printer),
+                failureCount(printer.getAddress())));
+            return;
+        }
+
+        BulkProvisioningJob job = findJob(printer);
+        if (job == null) {
+            return;
+        }
+
+        queue.addLast(new Worker(printer, job));
+        listener.onLog(context.getString(R.string.bulk_queued, displayName(printer)));
+        listener.onPrinterStatus(printer, PrinterStatus.QUEUED, null);
+        publishProgress();
+        startQueuedPrinters();
+    }
+
+    private BulkProvisioningJob findJob(DiscoveredPrinter printer) {
+        for (BulkProvisioningJob job : jobs) {
+            if (job.matches(printer)) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    private void startQueuedPrinters() {
+        while (running && active.size() < maxParallel && !queue.isEmpty()) {
+            Worker worker = queue.pollFirst();
+            active.put(worker.address, worker);
+            worker.start();
+        }
+    }
+
+    private void onWorkerFinished(Worker worker, boolean success, String detail) {
+        if (active.remove(worker.address) != worker) {
+            return;
+        }
+        String name = displayName(worker.printer);
+        if (success) {
+            configuredCount++;
+            appendJournal(ProvisioningJournal.EVENT_CONFIGURED, worker.address, detail);
+            KnownPrinterStore.getInstance(context).recordConfigured(worker.address, worker.printer.getName(), detail);
+            listener.onLog(context.getString(R.string.bulk_printer_configured, name));
+            listener.onPrinterStatus(worker.printer, PrinterStatus.CONFIGURED, detail);
+        } else {
+            failureCounts.put(worker.address, failureCount(worker.address) + 1);
+            appendJournal(ProvisioningJournal.EVENT_FAILED, worker.address, detail);
+            listener.onLog(context.getString(R.string.bulk_printer_failed, name, detail));
+            listener.onPrinterStatus(worker.printer, PrinterStatus.FAILED, detail);
+            if (failureCount(worker.address) < MAX_FAILURES_PER_PRINTER) {
+                // Forget it so its next advertisement queues another attempt.
+                seenAddresses.remove(worker.address);
+            } else {
+                // Only a printer that is out of attempts counts as failed; one that succeeds on its
+                // retry is just configured.
+                failedCount++;
+            }
+        }
+
+        publishProgress();
+        startQueuedPrinters();
+    }
+
+    private int failureCount(String address) {
+        Integer count = failureCounts.get(address);
+        return count == null ? 0 : count;
+    }
+
+    private void publishProgress() {
+        double elapsedHours = (SystemClock.elapsedRealtime() - startedAtMs) / 3_600_000d;
+        double printersPerHour = elapsedHours <= 0 ? 0 : configuredCount / elapsedHours;
+        listener.onProgress(configuredCount, failedCount, queue.size() + active.size(), printersPerHour);
+    }
+
+    private void appendJournal(String event, String address, String detail) {
+        journalExecutor.execute(() -> {
+            try {
+                journal.append(event, address, detail);
+            } catch (IOException e) {
+                handler.post(() -> listener.onLog(context.getString(R.string.bulk_journal_write_failed)));
+            }
+        });
+    }
+
+    private String displayName(DiscoveredPrinter printer) {
+        return printer.getName().isEmpty() ? printer.getAddress() : printer.getName();
+    }
+
+    /**
+     * One printer's run through the handshake, the Wi-Fi list and the Wi-Fi push, on its own session
+     * and callbacks so its results never mix with another printer's.
+     */
+    private final class Worker {
+        final DiscoveredPrinter printer;
+        final BulkProvisioningJob job;
+        final String address;
+        private final ConfigCallbacks callbacks = new ConfigCallbacks(this);
+        private final List<Router> routers = new ArrayList<>();
+        private PrinterSession session;
+        private RetryingCall snCall;
+        private RetryingCall wifiListCall;
+        private RetryingCall wifiConfigCall;
+        private boolean finished = false;
+
+        Worker(DiscoveredPrinter printer, BulkProvisioningJob job) {
+            this.printer = printer;
+            this.job = job;
+            this.address = printer.getAddress();
+        }
+
+        void start() {
+            appendJournal(ProvisioningJournal.EVENT_STARTED, address, job.getSsid());
+            listener.onLog(context.getString(R.string.bulk_configuring, displayName(printer)));
+            listener.onPrinterStatus(printer, PrinterStatus.CONNECTING, null);
+
+            PrinterSession acquired = PrinterSessionManager.getInstance(context).acquire(address, callbacks);
+            if (printer.getModelFamily() != null) {
+                acquired.setModelFamily(printer.getModelFamily());
+            }
+            session = acquired;
+            snCall = new RetryingCall(
+                address,
+                "getPrinterSn",
+                RetryPolicy.defaults(),
+                phaseTimeoutMs(ProvisioningMetrics.Phase.HANDSHAKE, ProvisioningFlow.PRINTER_CONNECTION_TIMEOUT_MS),
+                acquired::requestSerialNumber,
+                new CallListener(R.string.printer_connection_timeout, ProvisioningMetrics.Phase.HANDSHAKE)
+            );
+            snCall.start();
+        }
+
+        void onSnReceived() {
+            if (finished || snCall == null || !snCall.isActive()) {
+                return;
+            }
+            snCall.succeed();
+
+            listener.onPrinterStatus(printer, PrinterStatus.READING_WIFI_LIST, null);
+            PrinterSession acquired = session;
+            wifiListCall = new RetryingCall(
+                address,
+                "getPrinterWifiList",
+                RetryPolicy.defaults(),
+                phaseTimeoutMs(ProvisioningMetrics.Phase.WIFI_LIST, ProvisioningFlow.WIFI_LIST_TIMEOUT_MS),
+                () -> {
+                    routers.clear();
+                    acquired.requestWifiList();
+                },
+                new CallListener(R.string.printer_connection_timeout, ProvisioningMetrics.Phase.WIFI_LIST) {
+                    @Override
+                    public void onGaveUp(RetryingCall.Failure failure) {
+                        giveUpPhase();
+                        // Like the single-printer flow, carry on without the list: it only refines
+                        // the SSID bytes, and a hidden network is never listed anyway.
+                        sendCredentials();
+                    }
+                }
+            );
+            wifiListCall.start();
+        }
+
+        void onRouterFound(Router router) {
+            if (!finished && wifiListCall != null && wifiListCall.isActive()) {
+                routers.add(router);
+            }
+        }
+
+        void onWifiListFinished() {
+            if (finished || wifiListCall == null || !wifiListCall.isActive()) {
+                return;
+            }
+            wifiListCall.succeed();
+            sendCredentials();
+        }
+
+        private long phaseTimeoutMs(ProvisioningMetrics.Phase phase, long defaultMs) {
+            return PrinterSessionManager.getInstance(context).getTimeoutPolicy()
+                .getTimeoutMs(phase, session.getModelFamily(), defaultMs);
+        }
+
+        /**
+         * Sends the job's network, using the SSID bytes exactly as the printer reported them when it
+         * listed the network, so SSIDs in other encodings still match.
+         */
+        private void sendCredentials() {
+            if (finished) {
+                return;
+            }
+            byte[] essid = job.getSsid().getBytes(StandardCharsets.UTF_8);
+            for (Router router : routers) {
+                if (job.getSsid().equals(RouterIndex.displayNameOf(router, "")) && router.getEssid() != null) {
+                    essid = router.getEssid();
+                    break;
+                }
+            }
+
+            listener.onPrinterStatus(printer, PrinterStatus.SENDING_CREDENTIALS, job.getSsid());
+            PrinterSession acquired = session;
+            byte[] chosenEssid = essid;
+            String password = job.getPassword();
+            wifiConfigCall = new RetryingCall(
+                address,
+                "setPrinterWifi",
+                RetryPolicy.defaults(),
+                phaseTimeoutMs(ProvisioningMetrics.Phase.WIFI_CONFIG, ProvisioningFlow.WIFI_CONFIG_TIMEOUT_MS),
+                () -> acquired.setWifi(chosenEssid, password),
+                new CallListener(R.string.printer_wifi_config_timeout, ProvisioningMetrics.Phase.WIFI_CONFIG)
+            );
+            wifiConfigCall.start();
+        }
+
+        void onWifiConfigured() {
+            if (!finished && wifiConfigCall != null && wifiConfigCall.isActive()) {
+                wifiConfigCall.succeed();
+                finish(true, job.getSsid());
+            }
+        }
+
+        RetryingCall activeCall() {
+            if (wifiConfigCall != null && wifiConfigCall.isActive()) {
+                return wifiConfigCall;
+            }
+            if (wifiListCall != null && wifiListCall.isActive()) {
+                return wifiListCall;
+            }
+            return snCall != null && snCall.isActive() ? snCall : null;
+        }
+
+        private void finish(boolean success, String detail) {
+            if (finished) {
+                return;
+            }
+            cancel();
+            onWorkerFinished(this, success, detail);
+        }
+
+        void cancel() {
+            finished = true;
+            for (RetryingCall call : new RetryingCall[]{snCall, wifiListCall, wifiConfigCall}) {
+                if (call != null) {
+                    call.cancel();
+                }
+            }
+            if (session != null) {
+                // A retried printer starts over on a new session, so there is no point keeping its link warm.
+                session.releaseAndDisconnect(callbacks);
+                session = null;
+            }
+        }
+
+        private class CallListener implements RetryingCall.Listener {
+            private final int timeoutMessage;
+            private final ProvisioningMetrics.Phase phase;
+
+            CallListener(int timeoutMessage, ProvisioningMetrics.Phase phase) {
+                this.timeoutMessage = timeoutMessage;
+                this.phase = phase;
+            }
+
+            void giveUpPhase() {
+                if (session != null) {
+                    session.giveUpPhase(phase);
+                }
+            }
+
+            @Override
+            public void onRetryScheduled(RetryingCall.Failure failure, int nextAttempt, int maxAttempts, long delayMs) {
+                listener.onLog(context.getString(R.string.bulk_retrying, displayName(printer), failure, nextAttempt, maxAttempts));
+            }
+
+            @Override
+            public void onGaveUp(RetryingCall.Failure failure) {
+                giveUpPhase();
+                switch (failure.getKind()) {
+                    case TIMEOUT:
+                        finish(false, context.getString(timeoutMessage));
+                        break;
+                    case CIRCUIT_OPEN:
+                        finish(false, context.getString(R.string.bulk_circuit_open));
+                        break;
+                    case SEND_DATA_FAIL:
+                        finish(false, context.getString(
+                            R.string.wifi_push_error_with_code,
+                            failure.getCode(),
+                            failure.getMessage() == null ? "Unknown" : failure.getMessage()
+                        ));
+                        break;
+                    default:
+                        finish(false, context.getString(R.string.wifi_push_failed_try_24g));
+                        break;
+                }
+            }
+        }
+    }
+
+    private final class ScanCallbacks extends PrinterClientCallbacks {
+        @Override
+        public void onPrinterFount(PrinterDevice printerDevice) {
+            if (printerDevice == null || printerDevice.getAddress() == null) {
+                return;
+            }
+            DiscoveredPrinter printer = new DiscoveredPrinter(printerDevice.getAddress(), printerDevice.getName());
+            handler.post(() -> onPrinterDiscovered(printer));
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            handler.post(() -> {
+                if (running) {
+                    listener.onLog(context.getString(R.string.error, context.getString(R.string.printer_scan_failed_code, errorCode)));
+                    stop();
+                }
+            });
+        }
+    }
+
+    private final class ConfigCallbacks extends PrinterClientCallbacks {
+        private final Worker worker;
+
+        ConfigCallbacks(Worker worker) {
+            this.worker = worker;
+        }
+
+        @Override
+        public void onSnReceived(String sn) {
+            handler.post(worker::onSnReceived);
+        }
+
+        @Override
+        public void routerFound(Router router) {
+            handler.post(() -> worker.onRouterFound(router));
+        }
+
+        @Override
+        public void onGetWifiListFinish() {
+            handler.post(worker::onWifiListFinished);
+        }
+
+        @Override
+        public void onGetWifiListFail() {
+            handler.post(() -> {
+                if (worker.wifiListCall != null) {
+                    worker.wifiListCall.fail(RetryPolicy.FailureKind.WIFI_LIST_FAIL, 0, null);
+                }
+            });
+        }
+
+        @Override
+        public void wifiConfigSuccess() {
+            handler.post(worker::onWifiConfigured);
+        }
+
+        @Override
+        public void onWifiConfigFail() {
+            handler.post(() -> {
+                if (worker.wifiConfigCall != null) {
+                    worker.wifiConfigCall.fail(RetryPolicy.FailureKind.WIFI_CONFIG_FAIL, 0, null);
+                }
+            });
+        }
+
+        @Override
+        public void sendDataFail(int code, String msg) {
+            handler.post(() -> {
+                RetryingCall call = worker.activeCall();
+                if (call != null) {
+                    call.fail(RetryPolicy.FailureKind.SEND_DATA_FAIL, code, msg);
+                }
+            });
+        }
+    }
+}
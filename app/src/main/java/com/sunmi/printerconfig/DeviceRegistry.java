@@ -0,0 +1,204 @@
+package com.sunmi.printerconfig;
+
+import java.util.Arrays;
+
+/**
+ * Every device a scan has reported, keyed by its MAC as a 48-bit {@code long}. Devices are numbered by
+ * slot in the order they were first added, and each slot keeps the canonical address, advertised
+ * name, model classification and signal window in parallel arrays, so a long scan in a crowded room
+ * costs a few words per device and nothing per duplicate advertisement.
+ *
+ * <p>Lookups go through an open-addressed table of keys with linear probing; the raw address is parsed
+ * in place, so a repeat advertisement neither upper-cases nor boxes anything. Plain Java, not
+ * thread-safe.
+ */
+final class DeviceRegistry {
+    /**
+     * Returned by {@link #parseMac} for anything that is not six hex octets.
+     */
+    static final long NOT_A_MAC = -1L;
+
+    private static final int INITIAL_CAPACITY = 64;
+    // Table slots hold device slot + 1, so zero means empty.
+    private static final int EMPTY = 0;
+
+    private long[] tableKeys = new long[INITIAL_CAPACITY * 2];
+    private int[] tableSlots = new int[INITIAL_CAPACITY * 2];
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private String[] addresses = new String[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private PrinterModelFamily[] families = new PrinterModelFamily[INITIAL_CAPACITY];
+    private SignalWindow[] signals = new SignalWindow[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Parses {@code AA:BB:CC:DD:EE:FF} in either case, with {@code :} or {@code -} separators or none,
+     * and surrounding spaces.
+     *
+     * @return the 48-bit MAC, or {@link #NOT_A_MAC}
+     */
+    static long parseMac(CharSequence address) {
+        long mac = 0;
+        int digits = 0;
+        int start = 0;
+        int end = address.length();
+        while (start < end && address.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && address.charAt(end - 1) == ' ') {
+            end--;
+        }
+        for (int i = start; i < end; i++) {
+            char c = address.charAt(i);
+            int value = hexValue(c);
+            if (value >= 0) {
+                if (++digits > 12) {
+                    return NOT_A_MAC;
+                }
+                mac = (mac << 4) | value;
+            } else if (c != ':' && c != '-') {
+                return NOT_A_MAC;
+            }
+        }
+        return digits == 12 ? mac : NOT_A_MAC;
+    }
+
+    // ASCII only: Character.digit would also take full-width and other Unicode digits.
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(tableSlots, EMPTY);
+        Arrays.fill(addresses, 0, size, null);
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(families, 0, size, null);
+        Arrays.fill(signals, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * @return the device's slot, or -1 if it was never added
+     */
+    int find(long mac) {
+        int mask = tableKeys.length - 1;
+        for (int i = mix(mac) & mask; ; i = (i + 1) & mask) {
+            int stored = tableSlots[i];
+            if (stored == EMPTY) {
+                return -1;
+            }
+            if (tableKeys[i] == mac) {
+                return stored - 1;
+            }
+        }
+    }
+
+    /**
+     * Adds a device not yet in the registry, classifying its name.
+     *
+     * @param address the canonical form kept for display and persistence
+     * @return the new device's slot
+     */
+    int add(long mac, String address, String name) {
+        if (size == keys.length) {
+            growSlots();
+        }
+        // Keep the table at most half full so probe runs stay short.
+        if ((size + 1) * 2 > tableKeys.length) {
+            rehash(tableKeys.length * 2);
+        }
+        int slot = size++;
+        keys[slot] = mac;
+        addresses[slot] = address;
+        names[slot] = name;
+        families[slot] = PrinterDeviceClassifier.classify(name);
+        insert(mac, slot);
+        return slot;
+    }
+
+    long getMac(int slot) {
+        return keys[slot];
+    }
+
+    String getAddress(int slot) {
+        return addresses[slot];
+    }
+
+    String getName(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * Replaces the advertised name and reclassifies the device.
+     */
+    void setName(int slot, String name) {
+        names[slot] = name;
+        families[slot] = PrinterDeviceClassifier.classify(name);
+    }
+
+    /**
+     * @return the model family matched from the current name, or null when it does not look like a Sunmi printer
+     */
+    PrinterModelFamily getModelFamily(int slot) {
+        return families[slot];
+    }
+
+    /**
+     * The device's signal window, created on its first reading.
+     */
+    SignalWindow signal(int slot) {
+        SignalWindow window = signals[slot];
+        if (window == null) {
+            window = new SignalWindow();
+            signals[slot] = window;
+        }
+        return window;
+    }
+
+    private void insert(long mac, int slot) {
+        int mask = tableKeys.length - 1;
+        int i = mix(mac) & mask;
+        while (tableSlots[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        tableKeys[i] = mac;
+        tableSlots[i] = slot + 1;
+    }
+
+    private void rehash(int capacity) {
+        tableKeys = new long[capacity];
+        tableSlots = new int[capacity];
+        for (int slot = 0; slot < size; slot++) {
+            insert(keys[slot], slot);
+        }
+    }
+
+    private void growSlots() {
+        int capacity = keys.length * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        addresses = Arrays.copyOf(addresses, capacity);
+        names = Arrays.copyOf(names, capacity);
+        families = Arrays.copyOf(families, capacity);
+        signals = Arrays.copyOf(signals, capacity);
+    }
+
+    // Vendor prefixes repeat across a fleet, so spread every bit of the MAC before masking.
+    private static int mix(long mac) {
+        long h = mac * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
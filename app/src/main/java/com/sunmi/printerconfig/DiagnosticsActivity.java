@@ -0,0 +1,145 @@
+package com.sunmi.printerconfig;
+
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.Spinner;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Hidden screen (long-press the main title) showing per-phase latency percentiles and the estimates
+ * behind {@link PhaseTimeoutPolicy}, with export to a user-chosen file so numbers from field devices
+ * can be compared offline. Also switches the discovery scan backend, so the SDK and platform scanners
+ * can be compared on the same device, and, in debug builds only, swaps the printers for a
+ * {@link SimulatedPrinterFleet} until the app restarts. The {@link SdkCallTrace} of recent printer traffic is exported the same way.
+ */
+public class DiagnosticsActivity extends AppCompatActivity {
+    private static final int REQUEST_EXPORT_REPORT = 1;
+    private static final int REQUEST_EXPORT_TRACE = 2;
+    private static final String EXPORT_FILE_NAME = "printer-latency.txt";
+    private static final String TRACE_FILE_NAME = "printer-trace.txt";
+    private static final int SIMULATED_PRINTER_COUNT = 5;
+
+    private TextView reportText;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_diagnostics);
+
+        reportText = findViewById(R.id.reportText);
+        Button exportButton = findViewById(R.id.exportButton);
+        Button exportTraceButton = findViewById(R.id.exportTraceButton);
+        Button resetButton = findViewById(R.id.resetButton);
+        setupScanBackendSpinner(findViewById(R.id.scanBackendSpinner));
+
+        PrinterSessionManager sessionManager = PrinterSessionManager.getInstance(this);
+        CheckBox simulatedPrintersCheck = findViewById(R.id.simulatedPrintersCheck);
+        if (BuildConfig.DEBUG) {
+            simulatedPrintersCheck.setChecked(!sessionManager.isUsingSdkTransport());
+            simulatedPrintersCheck.setOnCheckedChangeListener((button, checked) -> {
+                sessionManager.setTransportFactory(checked ? SimulatedPrinterFleet.demo(SIMULATED_PRINTER_COUNT) : null);
+                ProvisioningFlow.getInstance(this).setLocatorFactory(checked ? SimulatedPrinterFleet.LOCATOR_FACTORY : null);
+            });
+        } else {
+            // Fake printers would let a release build "configure" hardware that does not exist.
+            simulatedPrintersCheck.setVisibility(View.GONE);
+        }
+
+        exportButton.setOnClickListener(v -> chooseExportFile(EXPORT_FILE_NAME, REQUEST_EXPORT_REPORT));
+        exportTraceButton.setOnClickListener(v -> chooseExportFile(TRACE_FILE_NAME, REQUEST_EXPORT_TRACE));
+
+        resetButton.setOnClickListener(v -> {
+            ProvisioningMetrics.getInstance().reset();
+            sessionManager.getTimeoutPolicy().reset();
+            refreshReport();
+        });
+    }
+
+    private void chooseExportFile(String fileName, int requestCode) {
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("text/plain");
+        intent.putExtra(Intent.EXTRA_TITLE, fileName);
+        startActivityForResult(intent, requestCode);
+    }
+
+    // Labels are listed in ScanBackend declaration order.
+    private void setupScanBackendSpinner(Spinner spinner) {
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item,
+            getResources().getStringArray(R.array.scan_backend_labels));
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinner.setAdapter(adapter);
+
+        PrinterSessionManager sessionManager = PrinterSessionManager.getInstance(this);
+        spinner.setSelection(sessionManager.getScanBackend().ordinal());
+        spinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                ScanBackend selected = ScanBackend.values()[position];
+                if (selected != sessionManager.getScanBackend()) {
+                    sessionManager.setScanBackend(selected);
+                }
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        refreshReport();
+    }
+
+    private String buildReport() {
+        return ProvisioningMetrics.getInstance().buildReport() + '\n'
+            + PrinterSessionManager.getInstance(this).getTimeoutPolicy().buildReport();
+    }
+
+    private void refreshReport() {
+        reportText.setText(buildReport());
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        boolean trace = requestCode == REQUEST_EXPORT_TRACE;
+        if ((requestCode != REQUEST_EXPORT_REPORT && !trace) || resultCode != RESULT_OK || data == null) {
+            return;
+        }
+
+        Uri uri = data.getData();
+        if (uri == null) {
+            return;
+        }
+        try (OutputStream out = getContentResolver().openOutputStream(uri)) {
+            if (out == null) {
+                throw new IOException("No output stream for " + uri);
+            }
+            String content = trace
+                ? SdkCallTrace.getInstance().export()
+                : buildReport();
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+            Toast.makeText(this, trace ? R.string.diagnostics_trace_exported : R.string.diagnostics_exported,
+                Toast.LENGTH_SHORT).show();
+        } catch (IOException | SecurityException e) {
+            Toast.makeText(this, trace ? R.string.diagnostics_trace_export_failed : R.string.diagnostics_export_failed,
+                Toast.LENGTH_LONG).show();
+        }
+    }
+}
@@ -1,14 +1,87 @@
 package com.sunmi.printerconfig;
 
+import java.util.Locale;
 import java.util.Objects;
 
 public final class DiscoveredPrinter {
+    /**
+     * {@link #getRssi} of a printer whose advertisements carried no signal strength yet.
+     */
+    public static final int NO_SIGNAL = Integer.MIN_VALUE;
+
     private final String address;
     private final String name;
+    private final String serialNumber;
+    private final boolean cached;
+    private final int rssi;
+    private final long stableId;
+    private final PrinterModelFamily modelFamily;
 
     public DiscoveredPrinter(String address, String name) {
-        this.address = address == null ? "" : address.trim();
+        this(address, name, "", false);
+    }
+
+    /**
+     * @param cached true for an entry restored from {@link KnownPrinterStore} that the current scan
+     *               has not seen yet
+     */
+    public DiscoveredPrinter(String address, String name, String serialNumber, boolean cached) {
+        this(address, name, serialNumber, cached, NO_SIGNAL);
+    }
+
+    /**
+     * @param rssi smoothed signal strength in dBm, or {@link #NO_SIGNAL}
+     */
+    public DiscoveredPrinter(String address, String name, String serialNumber, boolean cached, int rssi) {
+        this.address = normalizeAddress(address);
         this.name = name == null ? "" : name.trim();
+        this.serialNumber = serialNumber == null ? "" : serialNumber.trim();
+        this.cached = cached;
+        this.rssi = rssi;
+        this.stableId = computeStableId(this.address);
+        this.modelFamily = PrinterDeviceClassifier.classify(this.name);
+    }
+
+    /**
+     * For {@link DiscoveryMerger}, which has already parsed the address and classified the name in its
+     * {@link DeviceRegistry}. Both strings must already be trimmed.
+     */
+    DiscoveredPrinter(String address, long mac, String name, PrinterModelFamily modelFamily,
+                      String serialNumber, boolean cached, int rssi) {
+        this.address = address;
+        this.name = name;
+        this.serialNumber = serialNumber == null ? "" : serialNumber.trim();
+        this.cached = cached;
+        this.rssi = rssi;
+        this.stableId = mac;
+        this.modelFamily = modelFamily;
+    }
+
+    // Signal updates arrive many times a second; copying skips re-parsing the address and name.
+    private DiscoveredPrinter(DiscoveredPrinter other, int rssi) {
+        this.address = other.address;
+        this.name = other.name;
+        this.serialNumber = other.serialNumber;
+        this.cached = other.cached;
+        this.rssi = rssi;
+        this.stableId = other.stableId;
+        this.modelFamily = other.modelFamily;
+    }
+
+    public DiscoveredPrinter withRssi(int rssi) {
+        return rssi == this.rssi ? this : new DiscoveredPrinter(this, rssi);
+    }
+
+    // Upper-cased when it is a MAC, so equals agrees with the stable id whatever case the source used.
+    private static String normalizeAddress(String address) {
+        String trimmed = address == null ? "" : address.trim();
+        return DeviceRegistry.parseMac(trimmed) != DeviceRegistry.NOT_A_MAC ? trimmed.toUpperCase(Locale.ROOT) : trimmed;
+    }
+
+    // A MAC is 48 bits, so it is its own id; anything else is hashed above that range.
+    private static long computeStableId(String address) {
+        long mac = DeviceRegistry.parseMac(address);
+        return mac != DeviceRegistry.NOT_A_MAC ? mac : (1L << 48) | (address.hashCode() & 0xFFFFFFFFL);
     }
 
     public String getAddress() {
@@ -19,6 +92,63 @@ public final class DiscoveredPrinter {
         return name;
     }
 
+    public String getSerialNumber() {
+        return serialNumber;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * Signal strength in dBm averaged over recent advertisements, or {@link #NO_SIGNAL}. Higher is nearer.
+     */
+    public int getRssi() {
+        return rssi;
+    }
+
+    public boolean hasSignal() {
+        return rssi != NO_SIGNAL;
+    }
+
+    /**
+     * Classified once at construction so list binds and scan policies never rescan the name.
+     *
+     * @return the recognised family, or null when the name does not look like a Sunmi printer
+     */
+    public PrinterModelFamily getModelFamily() {
+        return modelFamily;
+    }
+
+    public boolean isLikelySunmi() {
+        return modelFamily != null;
+    }
+
+    /**
+     * True when every field shown in a list row matches; {@link #equals} compares identity only.
+     */
+    public boolean hasSameContent(DiscoveredPrinter other) {
+        return hasSameTitle(other) && hasSameDetail(other);
+    }
+
+    /**
+     * Name, model family and saved marker: the first line of a list row.
+     */
+    boolean hasSameTitle(DiscoveredPrinter other) {
+        return name.equals(other.name) && cached == other.cached;
+    }
+
+    /**
+     * Serial number and signal strength: the second line of a list row, next to the address.
+     */
+    boolean hasSameDetail(DiscoveredPrinter other) {
+        return serialNumber.equals(other.serialNumber) && rssi == other.rssi;
+    }
+
+    public long getStableId() {
+        return stableId;
+    }
+
     @Override
     public boolean equals(Object other) {
         if (this == other) {
@@ -33,6 +163,7 @@ public final class DiscoveredPrinter {
 
     @Override
     public int hashCode() {
-        return Objects.hash(address);
+        // String caches its hash; Objects.hash would box a varargs array on every call.
+        return address.hashCode();
     }
 }
@@ -1,26 +1,71 @@
 package com.sunmi.printerconfig;
 
+import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class DiscoveredPrinterAdapter extends RecyclerView.Adapter<DiscoveredPrinterAdapter.ViewHolder> {
-    private final List<DiscoveredPrinter> devices;
+    // Change payloads naming the one line of a row that needs rebinding; both changing is a full bind.
+    static final Object PAYLOAD_TITLE_CHANGED = new Object();
+    static final Object PAYLOAD_DETAIL_CHANGED = new Object();
+
+    private List<DiscoveredPrinter> devices = Collections.emptyList();
     private final OnDeviceClickListener listener;
 
     public interface OnDeviceClickListener {
         void onDeviceClick(DiscoveredPrinter device);
     }
 
-    public DiscoveredPrinterAdapter(List<DiscoveredPrinter> devices, OnDeviceClickListener listener) {
-        this.devices = devices;
+    public DiscoveredPrinterAdapter(OnDeviceClickListener listener) {
         this.listener = listener;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Replaces the shown devices, dispatching only the inserts, removals and row changes that differ
+     * from the current list. The list is copied, so callers may keep mutating their own.
+     */
+    public void submitList(List<DiscoveredPrinter> newDevices) {
+        List<DiscoveredPrinter> oldDevices = devices;
+        List<DiscoveredPrinter> snapshot = new ArrayList<>(newDevices);
+
+        if (isAppendOnly(oldDevices, snapshot)) {
+            // Common case while scanning: new devices land at the end and nothing else moved.
+            devices = snapshot;
+            int inserted = snapshot.size() - oldDevices.size();
+            if (inserted > 0) {
+                notifyItemRangeInserted(oldDevices.size(), inserted);
+            }
+            return;
+        }
+
+        DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DeviceDiffCallback(oldDevices, snapshot));
+        devices = snapshot;
+        result.dispatchUpdatesTo(this);
+    }
+
+    private static boolean isAppendOnly(List<DiscoveredPrinter> oldDevices, List<DiscoveredPrinter> newDevices) {
+        if (newDevices.size() < oldDevices.size()) {
+            return false;
+        }
+        for (int i = 0; i < oldDevices.size(); i++) {
+            DiscoveredPrinter oldDevice = oldDevices.get(i);
+            DiscoveredPrinter newDevice = newDevices.get(i);
+            if (!oldDevice.equals(newDevice) || !oldDevice.hasSameContent(newDevice)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @NonNull
@@ -28,24 +73,72 @@ public class DiscoveredPrinterAdapter extends RecyclerView.Adapter<DiscoveredPri
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
             .inflate(R.layout.item_bluetooth_device, parent, false);
-        return new ViewHolder(view);
+        ViewHolder holder = new ViewHolder(view);
+        view.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                listener.onDeviceClick(devices.get(position));
+            }
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        DiscoveredPrinter device = devices.get(position);
+        if (payloads.contains(PAYLOAD_TITLE_CHANGED)) {
+            bindTitle(holder, device);
+        }
+        if (payloads.contains(PAYLOAD_DETAIL_CHANGED)) {
+            bindDetail(holder, device);
+        }
     }
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
         DiscoveredPrinter device = devices.get(position);
+        bindTitle(holder, device);
+        bindDetail(holder, device);
+    }
 
+    private static void bindTitle(ViewHolder holder, DiscoveredPrinter device) {
+        Context context = holder.itemView.getContext();
         String baseName = device.getName().isEmpty()
-            ? holder.itemView.getContext().getString(R.string.unknown_device)
+            ? context.getString(R.string.unknown_device)
             : device.getName();
 
-        if (PrinterDeviceClassifier.isLikelySunmi(device.getName())) {
-            baseName = baseName + " \u2022 " + holder.itemView.getContext().getString(R.string.likely_sunmi);
+        PrinterModelFamily family = device.getModelFamily();
+        if (family != null) {
+            baseName = baseName + " \u2022 "
+                + (family.isGeneric() ? context.getString(R.string.likely_sunmi) : family.getLabel());
+        }
+
+        if (device.isCached()) {
+            baseName = baseName + " \u2022 " + context.getString(R.string.known_printer_saved);
         }
 
         holder.deviceName.setText(baseName);
-        holder.deviceAddress.setText(device.getAddress());
-        holder.itemView.setOnClickListener(v -> listener.onDeviceClick(device));
+    }
+
+    // The address never changes for a row; only the serial and signal around it do.
+    private static void bindDetail(ViewHolder holder, DiscoveredPrinter device) {
+        Context context = holder.itemView.getContext();
+        String detail = device.getSerialNumber().isEmpty()
+            ? device.getAddress()
+            : context.getString(R.string.printer_address_with_serial, device.getAddress(), device.getSerialNumber());
+        if (device.hasSignal()) {
+            detail = context.getString(R.string.printer_signal_strength, detail, device.getRssi());
+        }
+        holder.deviceAddress.setText(detail);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return devices.get(position).getStableId();
     }
 
     @Override
@@ -53,6 +146,46 @@ public class DiscoveredPrinterAdapter extends RecyclerView.Adapter<DiscoveredPri
         return devices.size();
     }
 
+    private static final class DeviceDiffCallback extends DiffUtil.Callback {
+        private final List<DiscoveredPrinter> oldDevices;
+        private final List<DiscoveredPrinter> newDevices;
+
+        DeviceDiffCallback(List<DiscoveredPrinter> oldDevices, List<DiscoveredPrinter> newDevices) {
+            this.oldDevices = oldDevices;
+            this.newDevices = newDevices;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldDevices.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newDevices.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldDevices.get(oldItemPosition).equals(newDevices.get(newItemPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldDevices.get(oldItemPosition).hasSameContent(newDevices.get(newItemPosition));
+        }
+
+        @Override
+        public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+            DiscoveredPrinter oldDevice = oldDevices.get(oldItemPosition);
+            DiscoveredPrinter newDevice = newDevices.get(newItemPosition);
+            if (oldDevice.hasSameTitle(newDevice)) {
+                return PAYLOAD_DETAIL_CHANGED;
+            }
+            return oldDevice.hasSameDetail(newDevice) ? PAYLOAD_TITLE_CHANGED : null;
+        }
+    }
+
     static class ViewHolder extends RecyclerView.ViewHolder {
         private final TextView deviceName;
         private final TextView deviceAddress;
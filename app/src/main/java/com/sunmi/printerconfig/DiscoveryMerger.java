@@ -0,0 +1,229 @@
+package com.sunmi.printerconfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Deduplicates raw discovery events into a printer list ordered by proximity: strongest smoothed
+ * signal first, with printers not heard from yet kept in arrival order after them. Devices are tracked
+ * in a {@link DeviceRegistry} by parsed MAC. Plain Java with no threading of its own:
+ * {@link DiscoveryPipeline} drives it from its worker thread.
+ *
+ * <p>Signal updates do not move rows by themselves. Each snapshot checks, in one pass, whether any printer
+ * is more than {@link #REORDER_HYSTERESIS_DB} stronger than one listed above it, and only then moves rows
+ * back into order in place, touching only the printers that are out of order. Small inversions are left
+ * alone, which keeps two printers at similar distance from trading places on every advertisement, while
+ * no inversion larger than the hysteresis survives a snapshot.
+ */
+final class DiscoveryMerger {
+    static final int REORDER_HYSTERESIS_DB = 3;
+
+    interface RevivalListener {
+        /**
+         * A seeded (cached) printer was seen by the current scan.
+         */
+        void onRevived(String address, String advertisedName);
+    }
+
+    private final RevivalListener revivalListener;
+    private final DeviceRegistry registry = new DeviceRegistry();
+    // The printers in display order, and for each registry slot its index in that list and back.
+    private final List<DiscoveredPrinter> printers = new ArrayList<>();
+    private int[] positionOfSlot = new int[64];
+    private int[] slotAtPosition = new int[64];
+    private int pendingEvents = 0;
+    private boolean signalChanged = false;
+
+    DiscoveryMerger(RevivalListener revivalListener) {
+        this.revivalListener = revivalListener;
+    }
+
+    /**
+     * Starts over with {@code seed} listed as given. Seeds whose address is not a MAC are dropped;
+     * scans only ever report MACs, so they could never be revived.
+     */
+    void reset(List<DiscoveredPrinter> seed) {
+        registry.clear();
+        printers.clear();
+        for (DiscoveredPrinter printer : seed) {
+            long mac = DeviceRegistry.parseMac(printer.getAddress());
+            if (mac != DeviceRegistry.NOT_A_MAC && registry.find(mac) < 0) {
+                append(registry.add(mac, printer.getAddress(), printer.getName()), printer);
+            }
+        }
+        pendingEvents = 0;
+        signalChanged = false;
+    }
+
+    /**
+     * @return true when the list changed and a new snapshot is worth publishing
+     */
+    boolean merge(String rawAddress, String rawName) {
+        long mac = DeviceRegistry.parseMac(rawAddress);
+        if (mac == DeviceRegistry.NOT_A_MAC) {
+            return false;
+        }
+        pendingEvents++;
+
+        // Duplicates are found by the parsed MAC before any string is built, so only new or renamed
+        // devices pay for normalization and classification.
+        String name = rawName == null ? "" : rawName.trim();
+        int slot = registry.find(mac);
+        if (slot < 0) {
+            slot = registry.add(mac, rawAddress.trim().toUpperCase(Locale.ROOT), name);
+            append(slot, row(slot, "", false, DiscoveredPrinter.NO_SIGNAL));
+            return true;
+        }
+
+        int position = positionOfSlot[slot];
+        DiscoveredPrinter known = printers.get(position);
+        if (known.isCached()) {
+            // First sighting of a cached printer in this scan: it is live again.
+            if (!name.isEmpty()) {
+                registry.setName(slot, name);
+            }
+            printers.set(position, row(slot, known.getSerialNumber(), false, known.getRssi()));
+            if (revivalListener != null) {
+                revivalListener.onRevived(known.getAddress(), name);
+            }
+            return true;
+        }
+        if (!name.isEmpty() && !name.equals(known.getName())) {
+            // Later advertisements may carry a name the first one lacked.
+            registry.setName(slot, name);
+            printers.set(position, row(slot, known.getSerialNumber(), false, known.getRssi()));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Folds one advertisement's signal strength into a listed printer's window. The printer is moved, if
+     * needed, by the next {@link #takeSnapshot}. Readings for unlisted addresses are ignored.
+     *
+     * @return true when the printer's shown signal changed
+     */
+    boolean mergeSignal(String rawAddress, int rssi) {
+        int slot = slotOf(rawAddress);
+        if (slot < 0) {
+            return false;
+        }
+        SignalWindow window = registry.signal(slot);
+        window.add(rssi);
+
+        int position = positionOfSlot[slot];
+        DiscoveredPrinter known = printers.get(position);
+        DiscoveredPrinter updated = known.withRssi(window.getSmoothedRssi());
+        if (updated == known) {
+            return false;
+        }
+        printers.set(position, updated);
+        signalChanged = true;
+        return true;
+    }
+
+    // True when some printer is more than the hysteresis stronger than one anywhere above it. Comparing
+    // with the weakest printer above covers every pair, not only neighbours.
+    private boolean hasLargeInversion() {
+        int weakestAbove = Integer.MAX_VALUE;
+        for (int i = 0; i < printers.size(); i++) {
+            int rssi = printers.get(i).getRssi();
+            if (weakestAbove != Integer.MAX_VALUE && isStronger(rssi, weakestAbove)) {
+                return true;
+            }
+            weakestAbove = Math.min(weakestAbove, rssi);
+        }
+        return false;
+    }
+
+    // NO_SIGNAL is the minimum int, so adding the margin cannot overflow.
+    private static boolean isStronger(int rssi, int than) {
+        return rssi != DiscoveredPrinter.NO_SIGNAL && rssi > than + REORDER_HYSTERESIS_DB;
+    }
+
+    // Insertion sort: stable, so equal signals and printers without one keep arrival order, and on a
+    // list that is nearly in order already it costs one pass plus the moves, with no allocation.
+    private void sortBySignal() {
+        for (int i = 1; i < printers.size(); i++) {
+            DiscoveredPrinter printer = printers.get(i);
+            int slot = slotAtPosition[i];
+            int position = i;
+            while (position > 0 && printers.get(position - 1).getRssi() < printer.getRssi()) {
+                printers.set(position, printers.get(position - 1));
+                slotAtPosition[position] = slotAtPosition[position - 1];
+                positionOfSlot[slotAtPosition[position]] = position;
+                position--;
+            }
+            if (position != i) {
+                printers.set(position, printer);
+                slotAtPosition[position] = slot;
+                positionOfSlot[slot] = position;
+            }
+        }
+    }
+
+    /**
+     * Attaches a serial read outside the scan (e.g. by a prefetch handshake) to a listed printer.
+     *
+     * @return true when the list changed
+     */
+    boolean setSerialNumber(String rawAddress, String serialNumber) {
+        int slot = slotOf(rawAddress);
+        if (slot < 0 || serialNumber == null) {
+            return false;
+        }
+        int position = positionOfSlot[slot];
+        DiscoveredPrinter known = printers.get(position);
+        if (known.getSerialNumber().equals(serialNumber.trim())) {
+            return false;
+        }
+        printers.set(position, row(slot, serialNumber, known.isCached(), known.getRssi()));
+        return true;
+    }
+
+    private int slotOf(String rawAddress) {
+        long mac = DeviceRegistry.parseMac(rawAddress);
+        return mac == DeviceRegistry.NOT_A_MAC ? -1 : registry.find(mac);
+    }
+
+    private DiscoveredPrinter row(int slot, String serialNumber, boolean cached, int rssi) {
+        return new DiscoveredPrinter(registry.getAddress(slot), registry.getMac(slot), registry.getName(slot),
+            registry.getModelFamily(slot), serialNumber, cached, rssi);
+    }
+
+    // Registry slots are handed out in order, so a new slot always lands at the end of the list.
+    private void append(int slot, DiscoveredPrinter printer) {
+        if (slot == positionOfSlot.length) {
+            positionOfSlot = Arrays.copyOf(positionOfSlot, slot * 2);
+            slotAtPosition = Arrays.copyOf(slotAtPosition, slot * 2);
+        }
+        positionOfSlot[slot] = printers.size();
+        slotAtPosition[printers.size()] = slot;
+        printers.add(printer);
+    }
+
+    /**
+     * Restores signal order if signal changes have left it out of order by more than the hysteresis, then
+     * builds an immutable snapshot and resets the coalesced-event counter.
+     */
+    DiscoverySnapshot takeSnapshot() {
+        if (signalChanged) {
+            signalChanged = false;
+            if (hasLargeInversion()) {
+                sortBySignal();
+            }
+        }
+        int events = pendingEvents;
+        pendingEvents = 0;
+        int liveCount = 0;
+        for (DiscoveredPrinter printer : printers) {
+            if (!printer.isCached()) {
+                liveCount++;
+            }
+        }
+        return new DiscoverySnapshot(Collections.unmodifiableList(new ArrayList<>(printers)), liveCount, events);
+    }
+}
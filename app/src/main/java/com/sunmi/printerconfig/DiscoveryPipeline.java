@@ -0,0 +1,162 @@
+package com.sunmi.printerconfig;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Takes SDK discovery callbacks on any thread, deduplicates and normalizes them on a background
+ * thread, and hands the UI at most one immutable {@link DiscoverySnapshot} per frame.
+ *
+ * <p>Main-thread cost per frame is one snapshot delivery regardless of how fast advertisements arrive.
+ */
+public final class DiscoveryPipeline {
+    private static final long FLUSH_INTERVAL_MS = 16;
+
+    public interface Listener {
+        void onDiscoverySnapshot(DiscoverySnapshot snapshot);
+    }
+
+    private final Listener listener;
+    private final HandlerThread workerThread;
+    private final Handler workerHandler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Worker-thread state.
+    private final DiscoveryMerger merger;
+    private boolean publishScheduled = false;
+
+    private final AtomicReference<DiscoverySnapshot> pendingSnapshot = new AtomicReference<>();
+    private final AtomicBoolean frameScheduled = new AtomicBoolean(false);
+    private volatile boolean accepting = false;
+    private volatile boolean shutDown = false;
+
+    private final Runnable publishRunnable = this::publish;
+    private final Choreographer.FrameCallback frameCallback = this::deliver;
+    private final Runnable scheduleFrameRunnable = () ->
+        Choreographer.getInstance().postFrameCallback(frameCallback);
+
+    public DiscoveryPipeline(Listener listener, KnownPrinterStore knownPrinterStore) {
+        this.listener = listener;
+        merger = new DiscoveryMerger(knownPrinterStore == null ? null : knownPrinterStore::touchIfKnown);
+        workerThread = new HandlerThread("printer-discovery", Process.THREAD_PRIORITY_BACKGROUND);
+        workerThread.start();
+        workerHandler = new Handler(workerThread.getLooper());
+    }
+
+    /**
+     * Clears previous results and starts accepting events. {@code seed} entries (typically cached
+     * printers) are listed at once and flip to live when the scan sees them.
+     */
+    public void start(List<DiscoveredPrinter> seed) {
+        accepting = true;
+        List<DiscoveredPrinter> seedCopy = new ArrayList<>(seed);
+        workerHandler.post(() -> {
+            merger.reset(seedCopy);
+            workerHandler.removeCallbacks(publishRunnable);
+            publishScheduled = false;
+            publish();
+        });
+    }
+
+    public void stop() {
+        accepting = false;
+    }
+
+    /**
+     * Releases the worker thread. Must be called on the main thread.
+     */
+    public void shutdown() {
+        accepting = false;
+        shutDown = true;
+        workerThread.quitSafely();
+        mainHandler.removeCallbacks(scheduleFrameRunnable);
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+    }
+
+    /**
+     * Safe to call from any thread, including SDK scan callbacks.
+     */
+    public void submit(String address, String name) {
+        if (!accepting || address == null) {
+            return;
+        }
+        workerHandler.post(() -> process(address, name));
+    }
+
+    /**
+     * Feeds one advertisement's signal strength into the proximity ordering. Safe to call from any
+     * thread; readings for printers not listed yet are dropped.
+     */
+    public void submitSignalStrength(String address, int rssi) {
+        if (!accepting || address == null) {
+            return;
+        }
+        workerHandler.post(() -> {
+            if (accepting && merger.mergeSignal(address, rssi)) {
+                schedulePublish();
+            }
+        });
+    }
+
+    /**
+     * Shows {@code serialNumber} on the listed printer with this address. Unlike {@link #submit}
+     * this still applies after {@link #stop}, since prefetched serials can arrive once the scan ends.
+     */
+    public void updateSerialNumber(String address, String serialNumber) {
+        if (shutDown || address == null) {
+            return;
+        }
+        workerHandler.post(() -> {
+            if (merger.setSerialNumber(address, serialNumber)) {
+                schedulePublish();
+            }
+        });
+    }
+
+    private void process(String rawAddress, String rawName) {
+        if (accepting && merger.merge(rawAddress, rawName)) {
+            schedulePublish();
+        }
+    }
+
+    private void schedulePublish() {
+        if (!publishScheduled) {
+            publishScheduled = true;
+            workerHandler.postDelayed(publishRunnable, FLUSH_INTERVAL_MS);
+        }
+    }
+
+    private void publish() {
+        publishScheduled = false;
+        offer(merger.takeSnapshot());
+    }
+
+    private void offer(DiscoverySnapshot snapshot) {
+        DiscoverySnapshot replaced = pendingSnapshot.getAndSet(snapshot);
+        if (replaced != null && replaced.getCoalescedEvents() > 0) {
+            // The UI had not drawn the previous snapshot yet; carry its event count forward.
+            DiscoverySnapshot merged = snapshot.mergeCoalesced(replaced.getCoalescedEvents());
+            pendingSnapshot.compareAndSet(snapshot, merged);
+        }
+        if (frameScheduled.compareAndSet(false, true)) {
+            mainHandler.post(scheduleFrameRunnable);
+        }
+    }
+
+    private void deliver(long frameTimeNanos) {
+        frameScheduled.set(false);
+        DiscoverySnapshot snapshot = pendingSnapshot.getAndSet(null);
+        if (snapshot != null && !shutDown) {
+            ProvisioningMetrics.getInstance().recordDiscoveryFlush(snapshot.getCoalescedEvents());
+            listener.onDiscoverySnapshot(snapshot);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.sunmi.printerconfig;
+
+import java.util.List;
+
+/**
+ * Immutable view of the discovered printers at one flush, plus how many raw SDK events it folds in.
+ */
+public final class DiscoverySnapshot {
+    private final List<DiscoveredPrinter> printers;
+    private final int liveCount;
+    private final int coalescedEvents;
+
+    DiscoverySnapshot(List<DiscoveredPrinter> printers, int liveCount, int coalescedEvents) {
+        this.printers = printers;
+        this.liveCount = liveCount;
+        this.coalescedEvents = coalescedEvents;
+    }
+
+    public List<DiscoveredPrinter> getPrinters() {
+        return printers;
+    }
+
+    /**
+     * Printers seen by the current scan, excluding cached entries not yet confirmed.
+     */
+    public int getLiveCount() {
+        return liveCount;
+    }
+
+    public int getCoalescedEvents() {
+        return coalescedEvents;
+    }
+
+    DiscoverySnapshot mergeCoalesced(int previousEvents) {
+        return new DiscoverySnapshot(printers, liveCount, coalescedEvents + previousEvents);
+    }
+}
@@ -0,0 +1,28 @@
+package com.sunmi.printerconfig;
+
+import java.net.InetSocketAddress;
+
+/**
+ * {@link PrinterLocator} that always reports one known address, for printers with a reserved IP and for
+ * checking the verification stage against a local stand-in such as a loopback server socket.
+ */
+public final class FixedAddressPrinterLocator implements PrinterLocator {
+    private final InetSocketAddress address;
+
+    public FixedAddressPrinterLocator(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    public static Factory factory(InetSocketAddress address) {
+        return (context, serialNumber, bluetoothAddress, ssid) -> new FixedAddressPrinterLocator(address);
+    }
+
+    @Override
+    public void start(Callback callback) {
+        callback.onCandidate(address);
+    }
+
+    @Override
+    public void stop() {
+    }
+}
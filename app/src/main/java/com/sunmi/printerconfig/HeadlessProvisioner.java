@@ -0,0 +1,307 @@
+package com.sunmi.printerconfig;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+/**
+ * Runs one {@link HeadlessProvisioningRequest} through {@link ProvisioningFlow}, the state machine the
+ * screens drive: find the printer (scanning only when it is known just by serial number), run
+ * {@code getPrinterSn}, then {@code setPrinterWifi} without listing networks, and wait until the
+ * flow has looked for the printer on the LAN. A printer not seen there is still {@code CONFIGURED},
+ * with a note in the message and no {@code lan_host}.
+ *
+ * <p>A run is refused while the flow is busy with another printer, and gives up if another caller
+ * takes the flow over or {@link #RUN_TIMEOUT_MS} passes. Main thread only; single-use.
+ */
+final class HeadlessProvisioner implements ProvisioningFlow.Observer, DiscoveryPipeline.Listener {
+    static final long RUN_TIMEOUT_MS = 120_000;
+    private static final int LOOKUP_SCAN_TIMEOUT_MS = 30_000;
+    private static final int LOOKUP_SCAN_MIN_MS = 3_000;
+    private static final int LOOKUP_SCAN_QUIET_PERIOD_MS = 10_000;
+    private static final int SERIAL_LOOKUP_CONCURRENCY = 2;
+    private static final long SERIAL_LOOKUP_TIMEOUT_MS = 8_000;
+    private static final int NO_ATTEMPT = -1;
+
+    interface Listener {
+        void onFinished(HeadlessProvisioningResult result);
+    }
+
+    private final Context context;
+    private final ProvisioningFlow flow;
+    private final HeadlessProvisioningRequest request;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private DiscoveryPipeline discoveryPipeline;
+    private SerialNumberPrefetcher serialLookup;
+    private int scanAttemptId = NO_ATTEMPT;
+    private int connectAttemptId = NO_ATTEMPT;
+    private ProvisioningFlow.State lastState;
+    private String printerAddress;
+    private String serialNumber;
+    private boolean configureSent = false;
+    private boolean finished = false;
+
+    private long startedAtMs;
+    private long lookupStartedAtMs;
+    private long connectStartedAtMs;
+    private long configureStartedAtMs;
+    private long lookupMs = -1;
+    private long handshakeMs = -1;
+    private long wifiConfigMs = -1;
+    private long timeToOnlineMs = -1;
+    private String lanHost;
+
+    private final Runnable timeoutRunnable = this::onTimeout;
+
+    HeadlessProvisioner(Context context, ProvisioningFlow flow, HeadlessProvisioningRequest request, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.flow = flow;
+        this.request = request;
+        this.listener = listener;
+    }
+
+    void start() {
+        startedAtMs = ProvisioningMetrics.now();
+        if (isBusy(flow.getSnapshot().getState())) {
+            finish(result(HeadlessProvisioningResult.Status.BUSY, null, context.getString(R.string.headless_busy)), false);
+            return;
+        }
+
+        handler.postDelayed(timeoutRunnable, RUN_TIMEOUT_MS);
+        flow.addObserver(this);
+        String address = request.getTargetAddress();
+        if (address == null) {
+            address = findKnownAddress(request.getTargetSerial());
+        }
+        if (address != null) {
+            connect(address, null);
+        } else {
+            startLookup();
+        }
+    }
+
+    /**
+     * Abandons the run and reports it as interrupted.
+     */
+    void cancel() {
+        if (!finished) {
+            finish(result(HeadlessProvisioningResult.Status.FAILED, null, context.getString(R.string.headless_interrupted)), ownsFlow());
+        }
+    }
+
+    private boolean ownsFlow() {
+        int ownAttemptId = connectAttemptId != NO_ATTEMPT ? connectAttemptId : scanAttemptId;
+        return ownAttemptId != NO_ATTEMPT && flow.getSnapshot().getAttemptId() == ownAttemptId;
+    }
+
+    private static boolean isBusy(ProvisioningFlow.State state) {
+        return state != ProvisioningFlow.State.IDLE
+            && state != ProvisioningFlow.State.DONE
+            && state != ProvisioningFlow.State.FAILED;
+    }
+
+    private String findKnownAddress(String serial) {
+        for (KnownPrinter known : KnownPrinterStore.getInstance(context).getAll()) {
+            if (serial.equals(known.getSerialNumber())) {
+                return known.getAddress();
+            }
+        }
+        return null;
+    }
+
+    // Only the serial is known: scan, reading serials of likely printers until one matches.
+    private void startLookup() {
+        discoveryPipeline = new DiscoveryPipeline(this, KnownPrinterStore.getInstance(context));
+        serialLookup = new SerialNumberPrefetcher(
+            PrinterSessionManager.getInstance(context),
+            discoveryPipeline::updateSerialNumber,
+            SERIAL_LOOKUP_CONCURRENCY,
+            SERIAL_LOOKUP_TIMEOUT_MS
+        );
+        serialLookup.setEnabled(true);
+        lookupStartedAtMs = ProvisioningMetrics.now();
+        discoveryPipeline.start(Collections.emptyList());
+        scanAttemptId = flow.startScan(discoveryPipeline, new AdaptiveScanPolicy(
+            LOOKUP_SCAN_TIMEOUT_MS,
+            LOOKUP_SCAN_MIN_MS,
+            LOOKUP_SCAN_QUIET_PERIOD_MS,
+            0,
+            Collections.emptySet(),
+            Collections.singleton(request.getTargetSerial())
+        ));
+    }
+
+    private void connect(String address, String advertisedName) {
+        printerAddress = address;
+        boolean handshakePending = serialLookup != null && serialLookup.isHandshakeInFlight(address);
+        connectStartedAtMs = ProvisioningMetrics.now();
+        connectAttemptId = flow.connect(address, advertisedName, handshakePending, false);
+        if (serialLookup != null) {
+            serialLookup.handOff(address);
+        }
+    }
+
+    @Override
+    public void onDiscoverySnapshot(DiscoverySnapshot snapshot) {
+        if (finished || connectAttemptId != NO_ATTEMPT) {
+            return;
+        }
+        flow.onDiscoverySnapshot(snapshot);
+        serialLookup.onSnapshot(snapshot);
+        for (DiscoveredPrinter printer : snapshot.getPrinters()) {
+            if (request.getTargetSerial().equals(printer.getSerialNumber())) {
+                lookupMs = ProvisioningMetrics.now() - lookupStartedAtMs;
+                connect(printer.getAddress(), printer.getName());
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onFlowSnapshot(ProvisioningFlow.Snapshot snapshot) {
+        if (finished) {
+            return;
+        }
+        int ownAttemptId = connectAttemptId != NO_ATTEMPT ? connectAttemptId : scanAttemptId;
+        if (ownAttemptId == NO_ATTEMPT) {
+            // The snapshot delivered on subscription, from before this run.
+            return;
+        }
+        if (snapshot.getAttemptId() > ownAttemptId) {
+            // Somebody else started a scan or picked a printer; the flow is no longer ours.
+            finish(result(HeadlessProvisioningResult.Status.FAILED, null, context.getString(R.string.headless_interrupted)), false);
+            return;
+        }
+        if (snapshot.getAttemptId() != ownAttemptId) {
+            return;
+        }
+        lastState = snapshot.getState();
+
+        if (connectAttemptId == NO_ATTEMPT) {
+            if (lastState == ProvisioningFlow.State.FAILED) {
+                finish(result(HeadlessProvisioningResult.Status.FAILED, ProvisioningFlow.State.SCANNING, snapshot.getMessage()), false);
+            } else if (lastState == ProvisioningFlow.State.IDLE) {
+                lookupMs = ProvisioningMetrics.now() - lookupStartedAtMs;
+                String message = context.getString(R.string.headless_not_found, request.getTargetSerial());
+                finish(result(HeadlessProvisioningResult.Status.NOT_FOUND, null, message), false);
+            }
+            return;
+        }
+
+        switch (lastState) {
+            case LISTING_WIFI:
+            case READY:
+                if (!configureSent) {
+                    onHandshakeComplete(snapshot.getSerialNumber());
+                }
+                break;
+            case VERIFYING:
+                recordWifiConfigTime();
+                break;
+            case DONE:
+                recordWifiConfigTime();
+                timeToOnlineMs = snapshot.getTimeToOnlineMs();
+                lanHost = snapshot.getLanHost();
+                finish(result(HeadlessProvisioningResult.Status.CONFIGURED, null, snapshot.getMessage()), true);
+                break;
+            case FAILED:
+                if (snapshot.getFailedState() == ProvisioningFlow.State.CONFIGURING) {
+                    recordWifiConfigTime();
+                }
+                finish(result(HeadlessProvisioningResult.Status.FAILED, snapshot.getFailedState(), snapshot.getMessage()), true);
+                break;
+            case IDLE:
+                finish(result(HeadlessProvisioningResult.Status.FAILED, null, context.getString(R.string.headless_interrupted)), false);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void onHandshakeComplete(String serial) {
+        handshakeMs = ProvisioningMetrics.now() - connectStartedAtMs;
+        serialNumber = serial;
+        String expected = request.getTargetSerial();
+        if (expected != null && !expected.equals(serial)) {
+            String message = context.getString(R.string.headless_serial_mismatch, serial, expected);
+            finish(result(HeadlessProvisioningResult.Status.SERIAL_MISMATCH, null, message), true);
+            return;
+        }
+
+        configureSent = true;
+        configureStartedAtMs = ProvisioningMetrics.now();
+        boolean sent = flow.configure(
+            printerAddress,
+            request.getSsid().getBytes(StandardCharsets.UTF_8),
+            request.getPassword(),
+            request.getSsid()
+        );
+        if (!sent) {
+            finish(result(HeadlessProvisioningResult.Status.FAILED, null, context.getString(R.string.headless_interrupted)), ownsFlow());
+        }
+    }
+
+    // The push ends when VERIFYING (or DONE, if verification is skipped) is first seen.
+    private void recordWifiConfigTime() {
+        if (wifiConfigMs < 0) {
+            wifiConfigMs = ProvisioningMetrics.now() - configureStartedAtMs;
+        }
+    }
+
+    private void onTimeout() {
+        if (finished) {
+            return;
+        }
+        long seconds = RUN_TIMEOUT_MS / 1000;
+        finish(result(HeadlessProvisioningResult.Status.TIMED_OUT, lastState, context.getString(R.string.headless_timed_out, seconds)), ownsFlow());
+    }
+
+    private HeadlessProvisioningResult result(
+        HeadlessProvisioningResult.Status status,
+        ProvisioningFlow.State failedStep,
+        String message
+    ) {
+        return new HeadlessProvisioningResult(
+            status,
+            failedStep,
+            message,
+            printerAddress,
+            serialNumber,
+            request.getSsid(),
+            lookupMs,
+            handshakeMs,
+            wifiConfigMs,
+            timeToOnlineMs,
+            lanHost,
+            ProvisioningMetrics.now() - startedAtMs
+        );
+    }
+
+    /**
+     * @param releaseFlow true when the flow is still serving this run and should be returned to idle
+     */
+    private void finish(HeadlessProvisioningResult result, boolean releaseFlow) {
+        finished = true;
+        handler.removeCallbacks(timeoutRunnable);
+        flow.removeObserver(this);
+        if (releaseFlow) {
+            if (connectAttemptId != NO_ATTEMPT) {
+                flow.close(printerAddress);
+            } else if (scanAttemptId != NO_ATTEMPT) {
+                flow.stopScan();
+            }
+        }
+        if (serialLookup != null) {
+            serialLookup.cancelAll();
+        }
+        if (discoveryPipeline != null) {
+            discoveryPipeline.shutdown();
+        }
+        listener.onFinished(result);
+    }
+}
@@ -0,0 +1,74 @@
+package com.sunmi.printerconfig;
+
+import android.content.Intent;
+
+import java.util.Locale;
+
+/**
+ * One headless provisioning order: which printer, by MAC address, serial number or both, and the
+ * Wi-Fi credentials to push to it.
+ */
+public final class HeadlessProvisioningRequest {
+    private final String targetAddress;
+    private final String targetSerial;
+    private final String ssid;
+    private final String password;
+
+    public HeadlessProvisioningRequest(String targetAddress, String targetSerial, String ssid, String password) {
+        String address = emptyToNull(targetAddress);
+        this.targetAddress = address == null ? null : address.toUpperCase(Locale.ROOT);
+        this.targetSerial = emptyToNull(targetSerial);
+        this.ssid = ssid == null ? "" : ssid;
+        this.password = password == null ? "" : password;
+        if (this.targetAddress == null && this.targetSerial == null) {
+            throw new IllegalArgumentException("A target MAC address or serial number is required");
+        }
+        if (this.ssid.isEmpty()) {
+            throw new IllegalArgumentException("SSID is required");
+        }
+    }
+
+    /**
+     * Reads the {@code HeadlessProvisioningService.EXTRA_*} extras of {@code intent}.
+     *
+     * @throws IllegalArgumentException if the target or the SSID is missing
+     */
+    public static HeadlessProvisioningRequest fromIntent(Intent intent) {
+        return new HeadlessProvisioningRequest(
+            intent.getStringExtra(HeadlessProvisioningService.EXTRA_TARGET_ADDRESS),
+            intent.getStringExtra(HeadlessProvisioningService.EXTRA_TARGET_SERIAL),
+            intent.getStringExtra(HeadlessProvisioningService.EXTRA_SSID),
+            intent.getStringExtra(HeadlessProvisioningService.EXTRA_PASSWORD)
+        );
+    }
+
+    private static String emptyToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    /**
+     * MAC address of the printer, or null when it has to be found by serial number.
+     */
+    public String getTargetAddress() {
+        return targetAddress;
+    }
+
+    /**
+     * Serial number the printer must report, or null to accept whatever the addressed printer reports.
+     */
+    public String getTargetSerial() {
+        return targetSerial;
+    }
+
+    public String getSsid() {
+        return ssid;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+}
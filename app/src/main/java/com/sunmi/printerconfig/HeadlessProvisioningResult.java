@@ -0,0 +1,162 @@
+package com.sunmi.printerconfig;
+
+import android.os.Bundle;
+
+/**
+ * Outcome of one headless provisioning run, with how long each step took.
+ *
+ * <p>Sent back as a {@link Bundle} using the {@code RESULT_*} keys. Durations are -1 for steps that
+ * did not run.
+ */
+public final class HeadlessProvisioningResult {
+    public static final String RESULT_STATUS = "status";
+    public static final String RESULT_FAILED_STEP = "failed_step";
+    public static final String RESULT_MESSAGE = "message";
+    public static final String RESULT_PRINTER_ADDRESS = "printer_address";
+    public static final String RESULT_SERIAL_NUMBER = "serial_number";
+    public static final String RESULT_SSID = "ssid";
+    public static final String RESULT_LOOKUP_MS = "lookup_ms";
+    public static final String RESULT_HANDSHAKE_MS = "handshake_ms";
+    public static final String RESULT_WIFI_CONFIG_MS = "wifi_config_ms";
+    public static final String RESULT_TIME_TO_ONLINE_MS = "time_to_online_ms";
+    public static final String RESULT_LAN_HOST = "lan_host";
+    public static final String RESULT_TOTAL_MS = "total_ms";
+
+    public enum Status {
+        CONFIGURED,
+        FAILED,
+        NOT_FOUND,
+        SERIAL_MISMATCH,
+        BUSY,
+        INVALID_REQUEST,
+        TIMED_OUT
+    }
+
+    private final Status status;
+    private final ProvisioningFlow.State failedStep;
+    private final String message;
+    private final String printerAddress;
+    private final String serialNumber;
+    private final String ssid;
+    private final long lookupMs;
+    private final long handshakeMs;
+    private final long wifiConfigMs;
+    private final long timeToOnlineMs;
+    private final String lanHost;
+    private final long totalMs;
+
+    HeadlessProvisioningResult(
+        Status status,
+        ProvisioningFlow.State failedStep,
+        String message,
+        String printerAddress,
+        String serialNumber,
+        String ssid,
+        long lookupMs,
+        long handshakeMs,
+        long wifiConfigMs,
+        long timeToOnlineMs,
+        String lanHost,
+        long totalMs
+    ) {
+        this.status = status;
+        this.failedStep = failedStep;
+        this.message = message;
+        this.printerAddress = printerAddress;
+        this.serialNumber = serialNumber;
+        this.ssid = ssid;
+        this.lookupMs = lookupMs;
+        this.handshakeMs = handshakeMs;
+        this.wifiConfigMs = wifiConfigMs;
+        this.timeToOnlineMs = timeToOnlineMs;
+        this.lanHost = lanHost;
+        this.totalMs = totalMs;
+    }
+
+    static HeadlessProvisioningResult rejected(Status status, String message, String ssid) {
+        return new HeadlessProvisioningResult(status, null, message, null, null, ssid, -1, -1, -1, -1, null, 0);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.CONFIGURED;
+    }
+
+    /**
+     * Flow step that failed, or null if the run did not fail inside the flow.
+     */
+    public ProvisioningFlow.State getFailedStep() {
+        return failedStep;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getPrinterAddress() {
+        return printerAddress;
+    }
+
+    public String getSerialNumber() {
+        return serialNumber;
+    }
+
+    public String getSsid() {
+        return ssid;
+    }
+
+    /**
+     * Time spent scanning for a printer given only by serial number.
+     */
+    public long getLookupMs() {
+        return lookupMs;
+    }
+
+    public long getHandshakeMs() {
+        return handshakeMs;
+    }
+
+    public long getWifiConfigMs() {
+        return wifiConfigMs;
+    }
+
+    /**
+     * Time from the printer accepting the credentials until it answered on the LAN; -1 if not verified.
+     */
+    public long getTimeToOnlineMs() {
+        return timeToOnlineMs;
+    }
+
+    /**
+     * LAN address the printer answered on, or null if not verified.
+     */
+    public String getLanHost() {
+        return lanHost;
+    }
+
+    public long getTotalMs() {
+        return totalMs;
+    }
+
+    public Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        bundle.putString(RESULT_STATUS, status.name());
+        if (failedStep != null) {
+            bundle.putString(RESULT_FAILED_STEP, failedStep.name());
+        }
+        bundle.putString(RESULT_MESSAGE, message);
+        bundle.putString(RESULT_PRINTER_ADDRESS, printerAddress);
+        bundle.putString(RESULT_SERIAL_NUMBER, serialNumber);
+        bundle.putString(RESULT_SSID, ssid);
+        bundle.putLong(RESULT_LOOKUP_MS, lookupMs);
+        bundle.putLong(RESULT_HANDSHAKE_MS, handshakeMs);
+        bundle.putLong(RESULT_WIFI_CONFIG_MS, wifiConfigMs);
+        bundle.putLong(RESULT_TIME_TO_ONLINE_MS, timeToOnlineMs);
+        bundle.putString(RESULT_LAN_HOST, lanHost);
+        bundle.putLong(RESULT_TOTAL_MS, totalMs);
+        return bundle;
+    }
+}
@@ -0,0 +1,168 @@
+package com.sunmi.printerconfig;
+
+import android.app.Activity;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.bluetooth.BluetoothAdapter;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.IBinder;
+import android.os.ResultReceiver;
+
+import androidx.core.app.NotificationCompat;
+
+import java.util.ArrayDeque;
+
+/**
+ * Explicit-intent API for provisioning a printer without the screens, for device-management tools
+ * and test automation.
+ *
+ * <p>Start it with {@link #ACTION_PROVISION}, a target ({@link #EXTRA_TARGET_ADDRESS} and/or
+ * {@link #EXTRA_TARGET_SERIAL}), {@link #EXTRA_SSID} and {@link #EXTRA_PASSWORD}. The outcome is a
+ * {@link HeadlessProvisioningResult} bundle sent to {@link #EXTRA_RESULT_RECEIVER} (in-process callers)
+ * and/or filled into {@link #EXTRA_RESULT_INTENT} (other apps), with result code
+ * {@link Activity#RESULT_OK} on success. Requests are run one after another as a foreground service.
+ */
+public class HeadlessProvisioningService extends Service {
+    public static final String ACTION_PROVISION = "com.sunmi.printerconfig.action.PROVISION";
+    public static final String EXTRA_TARGET_ADDRESS = "target_address";
+    public static final String EXTRA_TARGET_SERIAL = "target_serial";
+    public static final String EXTRA_SSID = "ssid";
+    public static final String EXTRA_PASSWORD = "password";
+    public static final String EXTRA_RESULT_RECEIVER = "result_receiver";
+    public static final String EXTRA_RESULT_INTENT = "result_intent";
+
+    private static final String NOTIFICATION_CHANNEL_ID = "headless_provisioning";
+    private static final int NOTIFICATION_ID = 1;
+
+    private static final class PendingRun {
+        final HeadlessProvisioningRequest request;
+        final ResultReceiver resultReceiver;
+        final PendingIntent resultIntent;
+
+        PendingRun(HeadlessProvisioningRequest request, ResultReceiver resultReceiver, PendingIntent resultIntent) {
+            this.request = request;
+            this.resultReceiver = resultReceiver;
+            this.resultIntent = resultIntent;
+        }
+    }
+
+    private final ArrayDeque<PendingRun> queue = new ArrayDeque<>();
+    private HeadlessProvisioner current;
+    private int lastStartId;
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        lastStartId = startId;
+        startInForeground();
+        if (intent == null || !ACTION_PROVISION.equals(intent.getAction())) {
+            runNext();
+            return START_NOT_STICKY;
+        }
+
+        ResultReceiver resultReceiver = intent.getParcelableExtra(EXTRA_RESULT_RECEIVER);
+        PendingIntent resultIntent = intent.getParcelableExtra(EXTRA_RESULT_INTENT);
+        try {
+            queue.addLast(new PendingRun(HeadlessProvisioningRequest.fromIntent(intent), resultReceiver, resultIntent));
+        } catch (IllegalArgumentException e) {
+            String ssid = intent.getStringExtra(EXTRA_SSID);
+            deliver(resultReceiver, resultIntent, HeadlessProvisioningResult.rejected(
+                HeadlessProvisioningResult.Status.INVALID_REQUEST,
+                e.getMessage(),
+                ssid
+            ));
+        }
+        runNext();
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        queue.clear();
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    private void runNext() {
+        if (current != null) {
+            return;
+        }
+        PendingRun run = queue.pollFirst();
+        if (run == null) {
+            stopForeground(true);
+            stopSelf(lastStartId);
+            return;
+        }
+
+        if (!isBluetoothReady()) {
+            deliver(run.resultReceiver, run.resultIntent, HeadlessProvisioningResult.rejected(
+                HeadlessProvisioningResult.Status.FAILED,
+                getString(R.string.headless_bluetooth_unavailable),
+                run.request.getSsid()
+            ));
+            runNext();
+            return;
+        }
+
+        current = new HeadlessProvisioner(this, ProvisioningFlow.getInstance(this), run.request, result -> {
+            current = null;
+            deliver(run.resultReceiver, run.resultIntent, result);
+            runNext();
+        });
+        current.start();
+    }
+
+    private boolean isBluetoothReady() {
+        BluetoothAdapter adapter = BluetoothAdapter.getDefaultAdapter();
+        return adapter != null && adapter.isEnabled() && BluetoothPermissions.areGranted(this);
+    }
+
+    private void deliver(ResultReceiver resultReceiver, PendingIntent resultIntent, HeadlessProvisioningResult result) {
+        int resultCode = result.isSuccess() ? Activity.RESULT_OK : Activity.RESULT_CANCELED;
+        Bundle bundle = result.toBundle();
+        if (resultReceiver != null) {
+            resultReceiver.send(resultCode, bundle);
+        }
+        if (resultIntent != null) {
+            try {
+                resultIntent.send(this, resultCode, new Intent().putExtras(bundle));
+            } catch (PendingIntent.CanceledException ignored) {
+                // The caller is gone; nobody is left to tell.
+            }
+        }
+    }
+
+    private void startInForeground() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(
+                NOTIFICATION_CHANNEL_ID,
+                getString(R.string.headless_notification_channel),
+                NotificationManager.IMPORTANCE_LOW
+            );
+            getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+
+        Notification notification = new NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ID)
+            .setSmallIcon(R.mipmap.ic_launcher)
+            .setContentTitle(getString(R.string.headless_notification_title))
+            .setOngoing(true)
+            .build();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_CONNECTED_DEVICE);
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+    }
+}
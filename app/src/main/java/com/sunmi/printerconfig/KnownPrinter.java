@@ -0,0 +1,52 @@
+package com.sunmi.printerconfig;
+
+/**
+ * A printer this device has connected to before, as persisted by {@link KnownPrinterStore}.
+ */
+public final class KnownPrinter {
+    private final String address;
+    private final String name;
+    private final String serialNumber;
+    private final String lastSsid;
+    private final long lastSeenMs;
+
+    public KnownPrinter(String address, String name, String serialNumber, String lastSsid, long lastSeenMs) {
+        this.address = address == null ? "" : address;
+        this.name = name == null ? "" : name;
+        this.serialNumber = serialNumber == null ? "" : serialNumber;
+        this.lastSsid = lastSsid == null ? "" : lastSsid;
+        this.lastSeenMs = lastSeenMs;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSerialNumber() {
+        return serialNumber;
+    }
+
+    public String getLastSsid() {
+        return lastSsid;
+    }
+
+    public long getLastSeenMs() {
+        return lastSeenMs;
+    }
+
+    KnownPrinter withSeen(String name, long seenAtMs) {
+        return new KnownPrinter(address, name == null || name.isEmpty() ? this.name : name, serialNumber, lastSsid, seenAtMs);
+    }
+
+    KnownPrinter withSerialNumber(String serialNumber, long seenAtMs) {
+        return new KnownPrinter(address, name, serialNumber, lastSsid, seenAtMs);
+    }
+
+    KnownPrinter withLastSsid(String lastSsid, long seenAtMs) {
+        return new KnownPrinter(address, name, serialNumber, lastSsid, seenAtMs);
+    }
+}
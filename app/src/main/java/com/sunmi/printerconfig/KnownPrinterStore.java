@@ -0,0 +1,174 @@
+package com.sunmi.printerconfig;
+
+import android.content.Context;
+import android.util.AtomicFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Persistent LRU cache of printers this device has connected to, so they can be listed and
+ * reconnected before a scan finds them.
+ *
+ * <p>Entries live in one small binary file written atomically on a background thread. Only printers
+ * that completed a handshake are added; discovery merely refreshes entries that already exist, so a
+ * busy site cannot flush the cache with strangers.
+ */
+public final class KnownPrinterStore {
+    private static final String FILE_NAME = "known_printers.bin";
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_ENTRIES = 64;
+
+    private static KnownPrinterStore instance;
+
+    private final AtomicFile file;
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+    private final LinkedHashMap<String, KnownPrinter> printers =
+        new LinkedHashMap<String, KnownPrinter>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, KnownPrinter> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+    private boolean writeScheduled = false;
+
+    private KnownPrinterStore(File file) {
+        this.file = new AtomicFile(file);
+        load();
+    }
+
+    public static synchronized KnownPrinterStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new KnownPrinterStore(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * Most recently used first.
+     */
+    public synchronized List<KnownPrinter> getAll() {
+        List<KnownPrinter> result = new ArrayList<>(printers.values());
+        Collections.reverse(result);
+        return result;
+    }
+
+    public synchronized KnownPrinter get(String address) {
+        return printers.get(address);
+    }
+
+    public synchronized void recordHandshake(String address, String name, String serialNumber) {
+        if (address == null || address.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        KnownPrinter known = printers.get(address);
+        KnownPrinter updated = known == null
+            ? new KnownPrinter(address, name, serialNumber, "", now)
+            : known.withSeen(name, now).withSerialNumber(serialNumber, now);
+        printers.put(address, updated);
+        scheduleWrite();
+    }
+
+    public synchronized void recordConfigured(String address, String name, String ssid) {
+        if (address == null || address.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        KnownPrinter known = printers.get(address);
+        KnownPrinter updated = known == null
+            ? new KnownPrinter(address, name, "", ssid, now)
+            : known.withSeen(name, now).withLastSsid(ssid, now);
+        printers.put(address, updated);
+        scheduleWrite();
+    }
+
+    /**
+     * Refreshes last-seen time for a printer already in the cache; unknown addresses are ignored.
+     */
+    public synchronized void touchIfKnown(String address, String name) {
+        KnownPrinter known = printers.get(address);
+        if (known == null) {
+            return;
+        }
+        printers.put(address, known.withSeen(name, System.currentTimeMillis()));
+        scheduleWrite();
+    }
+
+    private void scheduleWrite() {
+        if (writeScheduled) {
+            return;
+        }
+        writeScheduled = true;
+        writeExecutor.execute(this::write);
+    }
+
+    private void write() {
+        List<KnownPrinter> snapshot;
+        synchronized (this) {
+            writeScheduled = false;
+            snapshot = new ArrayList<>(printers.values());
+        }
+
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(FORMAT_VERSION);
+            data.writeInt(snapshot.size());
+            // Least recently used first, so replaying the inserts restores the access order.
+            for (KnownPrinter printer : snapshot) {
+                data.writeUTF(printer.getAddress());
+                data.writeUTF(printer.getName());
+                data.writeUTF(printer.getSerialNumber());
+                data.writeUTF(printer.getLastSsid());
+                data.writeLong(printer.getLastSeenMs());
+            }
+            data.flush();
+            file.finishWrite(out);
+        } catch (IOException e) {
+            if (out != null) {
+                file.failWrite(out);
+            }
+        }
+    }
+
+    private synchronized void load() {
+        byte[] bytes;
+        try {
+            bytes = file.readFully();
+        } catch (IOException e) {
+            return;
+        }
+
+        try (DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (data.readInt() != FORMAT_VERSION) {
+                return;
+            }
+            int count = data.readInt();
+            for (int i = 0; i < count; i++) {
+                KnownPrinter printer = new KnownPrinter(
+                    data.readUTF(),
+                    data.readUTF(),
+                    data.readUTF(),
+                    data.readUTF(),
+                    data.readLong()
+                );
+                printers.put(printer.getAddress(), printer);
+            }
+        } catch (IOException e) {
+            // A corrupt cache only costs a scan; keep whatever was read before the damage.
+        }
+    }
+}
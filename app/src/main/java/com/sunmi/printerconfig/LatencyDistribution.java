@@ -0,0 +1,53 @@
+package com.sunmi.printerconfig;
+
+import java.util.Random;
+
+/**
+ * How long a simulated printer takes to answer one kind of request. BLE round trips are right-skewed,
+ * with most answers near the median and a long tail, so {@link #logNormal} is the realistic choice;
+ * {@link #fixed} keeps runs deterministic.
+ */
+public abstract class LatencyDistribution {
+    public static final LatencyDistribution ZERO = fixed(0);
+
+    // z-score of the 95th percentile of a standard normal distribution.
+    private static final double Z_95 = 1.6449;
+
+    public abstract long sampleMs(Random random);
+
+    public static LatencyDistribution fixed(long ms) {
+        long value = Math.max(0, ms);
+        return new LatencyDistribution() {
+            @Override
+            public long sampleMs(Random random) {
+                return value;
+            }
+        };
+    }
+
+    public static LatencyDistribution uniform(long minMs, long maxMs) {
+        long min = Math.max(0, minMs);
+        long span = Math.max(min, maxMs) - min;
+        return new LatencyDistribution() {
+            @Override
+            public long sampleMs(Random random) {
+                return min + (span == 0 ? 0 : (long) (random.nextDouble() * (span + 1)));
+            }
+        };
+    }
+
+    /**
+     * A log-normal distribution given by its median and 95th percentile, the two numbers the
+     * Diagnostics report shows for each phase.
+     */
+    public static LatencyDistribution logNormal(long medianMs, long p95Ms) {
+        double mu = Math.log(Math.max(1, medianMs));
+        double sigma = Math.log(Math.max(medianMs, p95Ms) / (double) Math.max(1, medianMs)) / Z_95;
+        return new LatencyDistribution() {
+            @Override
+            public long sampleMs(Random random) {
+                return Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+            }
+        };
+    }
+}
@@ -0,0 +1,121 @@
+package com.sunmi.printerconfig;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with roughly 10% wide geometric buckets from 1 ms to 5 minutes.
+ *
+ * <p>Recording is a binary search over a shared bounds table plus a few atomic adds, so it is cheap
+ * enough to leave on for every phase of every printer. Percentiles report the upper bound of the
+ * bucket they fall in.
+ */
+public final class LatencyHistogram {
+    private static final long MAX_TRACKED_MS = 300_000;
+    private static final long[] BUCKET_UPPER_BOUNDS_MS = buildBounds();
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_UPPER_BOUNDS_MS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumMs = new AtomicLong();
+    private final AtomicLong maxMs = new AtomicLong();
+
+    private static long[] buildBounds() {
+        long[] scratch = new long[256];
+        int size = 0;
+        long bound = 1;
+        while (bound < MAX_TRACKED_MS) {
+            scratch[size++] = bound;
+            bound = Math.max(bound + 1, Math.round(bound * 1.1));
+        }
+        scratch[size++] = MAX_TRACKED_MS;
+        long[] bounds = new long[size];
+        System.arraycopy(scratch, 0, bounds, 0, size);
+        return bounds;
+    }
+
+    public void record(long latencyMs) {
+        long value = Math.max(0, latencyMs);
+        counts.incrementAndGet(bucketFor(value));
+        count.incrementAndGet();
+        sumMs.addAndGet(value);
+
+        long currentMax = maxMs.get();
+        while (value > currentMax && !maxMs.compareAndSet(currentMax, value)) {
+            currentMax = maxMs.get();
+        }
+    }
+
+    private static int bucketFor(long value) {
+        int low = 0;
+        int high = BUCKET_UPPER_BOUNDS_MS.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (BUCKET_UPPER_BOUNDS_MS[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        // low == length means above the last bound: the overflow bucket.
+        return low;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxMs() {
+        return maxMs.get();
+    }
+
+    public long getMeanMs() {
+        long samples = count.get();
+        return samples == 0 ? 0 : sumMs.get() / samples;
+    }
+
+    /**
+     * @param percentile in (0, 100]
+     * @return upper bound of the bucket holding that percentile, or 0 with no samples
+     */
+    public long getPercentileMs(double percentile) {
+        long samples = count.get();
+        if (samples == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(samples * percentile / 100d));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return i < BUCKET_UPPER_BOUNDS_MS.length ? Math.min(BUCKET_UPPER_BOUNDS_MS[i], maxMs.get()) : maxMs.get();
+            }
+        }
+        return maxMs.get();
+    }
+
+    /**
+     * Appends one {@code upperBoundMs,count} line per non-empty bucket; the overflow bucket is {@code inf}.
+     */
+    public void appendBuckets(StringBuilder out) {
+        for (int i = 0; i < counts.length(); i++) {
+            long bucketCount = counts.get(i);
+            if (bucketCount == 0) {
+                continue;
+            }
+            out.append(i < BUCKET_UPPER_BOUNDS_MS.length ? String.valueOf(BUCKET_UPPER_BOUNDS_MS[i]) : "inf")
+                .append(',')
+                .append(bucketCount)
+                .append('\n');
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sumMs.set(0);
+        maxMs.set(0);
+    }
+}
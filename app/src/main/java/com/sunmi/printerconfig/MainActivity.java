@@ -1,141 +1,296 @@
 package com.sunmi.printerconfig;
 
-import android.Manifest;
 import android.bluetooth.BluetoothAdapter;
+import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
+import android.os.Trace;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
-import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.sunmi.cloudprinter.bean.PrinterDevice;
-import com.sunmi.cloudprinter.bean.Router;
-import com.sunmi.cloudprinter.presenter.SunmiPrinterClient;
-
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 
-public class MainActivity extends AppCompatActivity implements SunmiPrinterClient.IPrinterClient {
+public class MainActivity extends AppCompatActivity
+    implements DiscoveryPipeline.Listener, ProvisioningFlow.Observer {
+    // Optional launch extras that let a scan end as soon as the wanted printers are in view.
+    public static final String EXTRA_EXPECTED_PRINTER_COUNT = "expected_printer_count";
+    public static final String EXTRA_TARGET_ADDRESS = "target_address";
+    public static final String EXTRA_TARGET_SERIAL = "target_serial";
+
     private static final int PERMISSION_REQUEST_CODE = 1;
     private static final int REQUEST_ENABLE_BT = 2;
+    private static final String STATE_OPEN_BULK_AFTER_PERMISSIONS = "open_bulk_after_permissions";
     private static final int PRINTER_SCAN_TIMEOUT_MS = 12_000;
-    private static final int PRINTER_CONNECTION_TIMEOUT_MS = 10_000;
+    private static final int PRINTER_SCAN_MIN_MS = 3_000;
+    private static final int PRINTER_SCAN_QUIET_PERIOD_MS = 4_000;
+    private static final String SETTINGS_PREFS = "settings";
+    private static final String SETTING_SPECULATIVE_CONNECT = "speculative_connect";
+    private static final String SETTING_SERIAL_PREFETCH = "serial_prefetch";
+    private static final String SETTING_AUTO_SELECT_NEAREST = "auto_select_nearest";
+    private static final int SERIAL_PREFETCH_CONCURRENCY = 2;
+    private static final long SERIAL_PREFETCH_TIMEOUT_MS = 8_000;
 
     private BluetoothAdapter bluetoothAdapter;
     private Button scanButton;
+    private Button bulkButton;
     private ProgressBar progressBar;
     private TextView statusText;
     private RecyclerView devicesRecyclerView;
     private DiscoveredPrinterAdapter deviceAdapter;
-    private final List<DiscoveredPrinter> deviceList = new ArrayList<>();
-    private final Set<String> discoveredAddresses = new HashSet<>();
-
-    private SunmiPrinterClient sunmiPrinterClient;
-    private final Handler scanTimeoutHandler = new Handler(Looper.getMainLooper());
-    private final Handler connectionTimeoutHandler = new Handler(Looper.getMainLooper());
+    private List<DiscoveredPrinter> deviceList = Collections.emptyList();
+    private int liveDeviceCount = 0;
+    private DiscoveryPipeline discoveryPipeline;
+    private KnownPrinterStore knownPrinterStore;
+    private boolean storesLoaded = false;
+    private boolean firstFrameDrawn = false;
+
+    private ProvisioningFlow provisioningFlow;
+    private ProvisioningFlow.State flowState = ProvisioningFlow.State.IDLE;
+    private SpeculativeConnector speculativeConnector;
+    private SerialNumberPrefetcher serialPrefetcher;
+    private NearestPrinterSelector nearestPrinterSelector;
 
     private String pendingPrinterAddress;
     private String pendingPrinterName;
-    private boolean scanInProgress = false;
+    private int pendingAttemptId;
+    // Set from a tap on a printer until the flow has connected to it or given up.
     private boolean waitingForPrinterConnection = false;
+    private boolean openBulkAfterPermissions = false;
+    // Granted before the printer services were up, as when the activity was recreated under the dialog.
+    private boolean permissionsGrantedBeforeStart = false;
 
-    private final Runnable scanTimeoutRunnable = () -> {
-        if (!scanInProgress || waitingForPrinterConnection) {
-            return;
-        }
-
-        stopPrinterScan(true);
-        if (deviceList.isEmpty()) {
-            statusText.setText(R.string.no_compatible_printers_found);
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        if (savedInstanceState != null) {
+            openBulkAfterPermissions = savedInstanceState.getBoolean(STATE_OPEN_BULK_AFTER_PERMISSIONS);
         }
-    };
-
-    private final Runnable connectionTimeoutRunnable = () -> {
-        if (waitingForPrinterConnection) {
-            handlePrinterConnectionFailure(getString(R.string.printer_connection_timeout));
+        Trace.beginSection("MainActivity.onCreate");
+        try {
+            createUi();
+        } finally {
+            Trace.endSection();
         }
-    };
+        ProvisioningMetrics.getInstance().recordStartupMilestone("activity_created");
+    }
 
     @Override
-    protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putBoolean(STATE_OPEN_BULK_AFTER_PERMISSIONS, openBulkAfterPermissions);
+    }
+
+    /**
+     * Builds only what the first frame needs. The printer stores are read on a background thread, and
+     * the flow, the discovery pipeline, Bluetooth and the SDK client are set up by
+     * {@link #startPrinterServices} once the screen is showing and the stores are in memory.
+     */
+    private void createUi() {
         setContentView(R.layout.activity_main);
 
         scanButton = findViewById(R.id.scanButton);
+        bulkButton = findViewById(R.id.bulkButton);
         progressBar = findViewById(R.id.progressBar);
         statusText = findViewById(R.id.statusText);
         devicesRecyclerView = findViewById(R.id.devicesRecyclerView);
 
-        deviceAdapter = new DiscoveredPrinterAdapter(deviceList, this::onDeviceClick);
+        deviceAdapter = new DiscoveredPrinterAdapter(this::onDeviceClick);
         devicesRecyclerView.setLayoutManager(new LinearLayoutManager(this));
         devicesRecyclerView.setAdapter(deviceAdapter);
+        // Nothing to scan with until the printer services are up.
+        scanButton.setEnabled(false);
+        bulkButton.setEnabled(false);
 
-        bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
-        if (bluetoothAdapter == null) {
+        scanButton.setOnClickListener(v -> {
+            if (checkPermissions()) {
+                startBluetoothScan();
+            } else {
+                openBulkAfterPermissions = false;
+                requestPermissions();
+            }
+        });
+
+        bulkButton.setOnClickListener(v -> {
+            if (checkPermissions()) {
+                openBulkProvisioningScreen();
+            } else {
+                openBulkAfterPermissions = true;
+                requestPermissions();
+            }
+        });
+
+        // Hidden entry point for field diagnostics.
+        findViewById(R.id.titleText).setOnLongClickListener(v -> {
+            startActivity(new Intent(this, DiagnosticsActivity.class));
+            return true;
+        });
+
+        loadPrinterStores();
+
+        View content = findViewById(android.R.id.content);
+        content.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                content.getViewTreeObserver().removeOnPreDrawListener(this);
+                // Posted so it runs after the frame has been drawn, not before.
+                content.post(MainActivity.this::onFirstFrame);
+                return true;
+            }
+        });
+    }
+
+    // Saved printers, settings and learned timeouts are files; reading them would hold up the first frame.
+    private void loadPrinterStores() {
+        Context appContext = getApplicationContext();
+        new Thread(() -> {
+            Trace.beginSection("MainActivity.loadPrinterStores");
+            try {
+                KnownPrinterStore.getInstance(appContext);
+                PrinterSessionManager.getInstance(appContext);
+            } finally {
+                Trace.endSection();
+            }
+            runOnUiThread(() -> {
+                storesLoaded = true;
+                startPrinterServices();
+            });
+        }, "startup-load").start();
+    }
+
+    private void onFirstFrame() {
+        ProvisioningMetrics.getInstance().recordStartupMilestone("first_frame");
+        firstFrameDrawn = true;
+        startPrinterServices();
+    }
+
+    /**
+     * Runs once both the first frame is on screen and the stores are loaded, whichever comes last.
+     */
+    private void startPrinterServices() {
+        if (!firstFrameDrawn || !storesLoaded || provisioningFlow != null || isFinishing() || isDestroyed()) {
+            return;
+        }
+        Trace.beginSection("MainActivity.startPrinterServices");
+        try {
+            createPrinterServices();
+        } finally {
+            Trace.endSection();
+        }
+        ProvisioningMetrics.getInstance().recordStartupMilestone("printers_ready");
+        // The saved printers are listed, so the screen is usable from here.
+        reportFullyDrawn();
+
+        if (bluetoothAdapter() == null) {
             Toast.makeText(this, "Bluetooth not supported", Toast.LENGTH_SHORT).show();
             finish();
             return;
         }
+        if (permissionsGrantedBeforeStart) {
+            permissionsGrantedBeforeStart = false;
+            onPermissionsGranted();
+        } else if (checkPermissions()) {
+            provisioningFlow.warmUp();
+            if (!deviceList.isEmpty() && flowState == ProvisioningFlow.State.IDLE && bluetoothAdapter.isEnabled()) {
+                startBluetoothScan();
+            }
+        }
+    }
 
-        sunmiPrinterClient = new SunmiPrinterClient(
-            new ReceiverSafeContext(getApplicationContext()),
-            this
+    private void createPrinterServices() {
+        knownPrinterStore = KnownPrinterStore.getInstance(this);
+        PrinterSessionManager sessionManager = PrinterSessionManager.getInstance(this);
+        discoveryPipeline = new DiscoveryPipeline(this, knownPrinterStore);
+        speculativeConnector = new SpeculativeConnector(sessionManager);
+        serialPrefetcher = new SerialNumberPrefetcher(
+            sessionManager,
+            discoveryPipeline::updateSerialNumber,
+            SERIAL_PREFETCH_CONCURRENCY,
+            SERIAL_PREFETCH_TIMEOUT_MS
         );
+        nearestPrinterSelector = new NearestPrinterSelector(this::onNearestPrinterSelected);
+
+        // Already in memory: the session manager read the same preferences file in the background.
+        SharedPreferences settings = getSharedPreferences(SETTINGS_PREFS, MODE_PRIVATE);
+        CheckBox speculativeConnectCheck = findViewById(R.id.speculativeConnectCheck);
+        speculativeConnectCheck.setChecked(settings.getBoolean(SETTING_SPECULATIVE_CONNECT, false));
+        speculativeConnector.setEnabled(speculativeConnectCheck.isChecked());
+        speculativeConnectCheck.setOnCheckedChangeListener((button, checked) -> {
+            settings.edit().putBoolean(SETTING_SPECULATIVE_CONNECT, checked).apply();
+            speculativeConnector.setEnabled(checked);
+        });
 
-        scanButton.setOnClickListener(v -> {
-            if (checkPermissions()) {
-                startBluetoothScan();
-            } else {
-                requestPermissions();
-            }
+        // Opt-in: each prefetch opens a link to a printer nobody picked, which on a shared site can be
+        // one another operator is configuring.
+        CheckBox serialPrefetchCheck = findViewById(R.id.serialPrefetchCheck);
+        serialPrefetchCheck.setChecked(settings.getBoolean(SETTING_SERIAL_PREFETCH, false));
+        serialPrefetcher.setEnabled(serialPrefetchCheck.isChecked());
+        serialPrefetchCheck.setOnCheckedChangeListener((button, checked) -> {
+            settings.edit().putBoolean(SETTING_SERIAL_PREFETCH, checked).apply();
+            serialPrefetcher.setEnabled(checked);
+        });
+
+        CheckBox autoSelectNearestCheck = findViewById(R.id.autoSelectNearestCheck);
+        autoSelectNearestCheck.setChecked(settings.getBoolean(SETTING_AUTO_SELECT_NEAREST, false));
+        nearestPrinterSelector.setEnabled(autoSelectNearestCheck.isChecked());
+        autoSelectNearestCheck.setOnCheckedChangeListener((button, checked) -> {
+            settings.edit().putBoolean(SETTING_AUTO_SELECT_NEAREST, checked).apply();
+            nearestPrinterSelector.setEnabled(checked);
         });
+
+        // Printers from earlier visits are tappable right away; a scan only confirms they are still around.
+        deviceList = getKnownPrinters();
+        deviceAdapter.submitList(deviceList);
+        if (!deviceList.isEmpty()) {
+            statusText.setText(getString(R.string.known_printers_listed, deviceList.size()));
+        }
+
+        provisioningFlow = ProvisioningFlow.getInstance(this);
+        // Delivers the current snapshot, which sets the scan button up for the flow state.
+        provisioningFlow.addObserver(this);
+        bulkButton.setEnabled(true);
     }
 
-    private boolean checkPermissions() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-            return ContextCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_SCAN) == PackageManager.PERMISSION_GRANTED
-                && ContextCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_CONNECT) == PackageManager.PERMISSION_GRANTED;
+    private BluetoothAdapter bluetoothAdapter() {
+        if (bluetoothAdapter == null) {
+            bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
         }
-        return ContextCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH) == PackageManager.PERMISSION_GRANTED
-            && ContextCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_ADMIN) == PackageManager.PERMISSION_GRANTED
-            && ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED;
+        return bluetoothAdapter;
     }
 
-    private void requestPermissions() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-            ActivityCompat.requestPermissions(this,
-                new String[]{
-                    Manifest.permission.BLUETOOTH_SCAN,
-                    Manifest.permission.BLUETOOTH_CONNECT
-                },
-                PERMISSION_REQUEST_CODE);
-            return;
+    private List<DiscoveredPrinter> getKnownPrinters() {
+        List<DiscoveredPrinter> printers = new ArrayList<>();
+        for (KnownPrinter known : knownPrinterStore.getAll()) {
+            printers.add(new DiscoveredPrinter(known.getAddress(), known.getName(), known.getSerialNumber(), true));
         }
+        return printers;
+    }
 
-        ActivityCompat.requestPermissions(this,
-            new String[]{
-                Manifest.permission.BLUETOOTH,
-                Manifest.permission.BLUETOOTH_ADMIN,
-                Manifest.permission.ACCESS_FINE_LOCATION
-            },
-            PERMISSION_REQUEST_CODE);
+    private boolean checkPermissions() {
+        return BluetoothPermissions.areGranted(this);
+    }
+
+    private void requestPermissions() {
+        ActivityCompat.requestPermissions(this, BluetoothPermissions.required(), PERMISSION_REQUEST_CODE);
     }
 
     private void startBluetoothScan() {
+        if (bluetoothAdapter() == null) {
+            return;
+        }
         if (!bluetoothAdapter.isEnabled()) {
             Intent enableBtIntent = new Intent(BluetoothAdapter.ACTION_REQUEST_ENABLE);
             startActivityForResult(enableBtIntent, REQUEST_ENABLE_BT);
@@ -143,76 +298,82 @@ public class MainActivity extends AppCompatActivity implements SunmiPrinterClien
         }
 
         waitingForPrinterConnection = false;
-        stopPrinterScan(false);
-
-        scanInProgress = true;
-        scanTimeoutHandler.removeCallbacks(scanTimeoutRunnable);
-        connectionTimeoutHandler.removeCallbacks(connectionTimeoutRunnable);
-
-        discoveredAddresses.clear();
-        deviceList.clear();
-        deviceAdapter.notifyDataSetChanged();
+        liveDeviceCount = 0;
+        speculativeConnector.onScanStarted();
+        serialPrefetcher.cancelAll();
+        nearestPrinterSelector.onScanStarted();
+        discoveryPipeline.start(getKnownPrinters());
+        provisioningFlow.startScan(discoveryPipeline, createScanPolicy());
         statusText.setText(R.string.scanning);
-
-        scanButton.setEnabled(false);
+        showBusy();
         scanButton.setText(R.string.scanning);
-        progressBar.setVisibility(View.VISIBLE);
+    }
 
-        try {
-            sunmiPrinterClient.startScan();
-            scanTimeoutHandler.postDelayed(scanTimeoutRunnable, PRINTER_SCAN_TIMEOUT_MS);
-        } catch (Throwable t) {
-            stopPrinterScan(true);
-            statusText.setText(getString(R.string.error, getString(R.string.printer_scan_failed)));
-        }
+    private ScanTerminationPolicy createScanPolicy() {
+        Intent intent = getIntent();
+        String targetAddress = intent.getStringExtra(EXTRA_TARGET_ADDRESS);
+        String targetSerial = intent.getStringExtra(EXTRA_TARGET_SERIAL);
+        return new AdaptiveScanPolicy(
+            PRINTER_SCAN_TIMEOUT_MS,
+            PRINTER_SCAN_MIN_MS,
+            PRINTER_SCAN_QUIET_PERIOD_MS,
+            intent.getIntExtra(EXTRA_EXPECTED_PRINTER_COUNT, 0),
+            targetAddress == null ? Collections.emptySet() : Collections.singleton(targetAddress),
+            targetSerial == null ? Collections.emptySet() : Collections.singleton(targetSerial)
+        );
     }
 
-    private void stopPrinterScan(boolean resetUi) {
-        scanTimeoutHandler.removeCallbacks(scanTimeoutRunnable);
-        if (scanInProgress) {
-            scanInProgress = false;
-            try {
-                sunmiPrinterClient.stopScan();
-            } catch (Throwable ignored) {
-            }
-        }
-        if (resetUi && !waitingForPrinterConnection) {
-            progressBar.setVisibility(View.GONE);
-            scanButton.setEnabled(true);
-            scanButton.setText(R.string.scan_bluetooth);
+    private void onNearestPrinterSelected(DiscoveredPrinter printer) {
+        if (flowState != ProvisioningFlow.State.SCANNING || waitingForPrinterConnection) {
+            return;
         }
+        String name = printer.getName().isEmpty() ? printer.getAddress() : printer.getName();
+        Toast.makeText(this, getString(R.string.nearest_printer_selected, name), Toast.LENGTH_SHORT).show();
+        onDeviceClick(printer);
     }
 
     private void onDeviceClick(DiscoveredPrinter device) {
-        stopPrinterScan(false);
-
+        nearestPrinterSelector.cancel();
         pendingPrinterAddress = device.getAddress();
         pendingPrinterName = device.getName().isEmpty()
             ? getString(R.string.unknown_device)
             : device.getName();
 
         if (pendingPrinterAddress.isEmpty()) {
+            provisioningFlow.stopScan();
             Toast.makeText(this, R.string.printer_address_unavailable, Toast.LENGTH_LONG).show();
-            progressBar.setVisibility(View.GONE);
-            scanButton.setEnabled(true);
-            scanButton.setText(R.string.scan_bluetooth);
             return;
         }
 
+        boolean handshakePending = speculativeConnector.isHandshakeInFlight(pendingPrinterAddress)
+            || serialPrefetcher.isHandshakeInFlight(pendingPrinterAddress);
+        // The flow takes its own reference on the session before the helpers let go of theirs.
+        pendingAttemptId = provisioningFlow.connect(pendingPrinterAddress, device.getName(), handshakePending, true);
+        speculativeConnector.handOff(pendingPrinterAddress);
+        serialPrefetcher.handOff(pendingPrinterAddress);
+
         waitingForPrinterConnection = true;
+        statusText.setText(R.string.connecting_to_printer);
+        showBusy();
+    }
+
+    private void showBusy() {
         progressBar.setVisibility(View.VISIBLE);
         scanButton.setEnabled(false);
-        statusText.setText(R.string.connecting_to_printer);
+    }
 
-        connectionTimeoutHandler.removeCallbacks(connectionTimeoutRunnable);
-        connectionTimeoutHandler.postDelayed(connectionTimeoutRunnable, PRINTER_CONNECTION_TIMEOUT_MS);
+    private void showIdle() {
+        progressBar.setVisibility(View.GONE);
+        scanButton.setEnabled(true);
+        scanButton.setText(R.string.scan_bluetooth);
+    }
 
-        try {
-            // Match the known stable flow: establish BLE session before Wi-Fi config screen.
-            sunmiPrinterClient.getPrinterSn(pendingPrinterAddress);
-        } catch (Throwable t) {
-            handlePrinterConnectionFailure(getString(R.string.printer_connection_failed));
-        }
+    private void openBulkProvisioningScreen() {
+        provisioningFlow.stopScan();
+        speculativeConnector.cancel();
+        serialPrefetcher.cancelAll();
+        nearestPrinterSelector.cancel();
+        startActivity(new Intent(this, BulkProvisioningActivity.class));
     }
 
     private void openWifiConfigScreen() {
@@ -222,96 +383,65 @@ public class MainActivity extends AppCompatActivity implements SunmiPrinterClien
         startActivity(intent);
     }
 
-    private void handlePrinterConnectionFailure(String message) {
-        waitingForPrinterConnection = false;
-        connectionTimeoutHandler.removeCallbacks(connectionTimeoutRunnable);
-
-        runOnUiThread(() -> {
-            progressBar.setVisibility(View.GONE);
-            scanButton.setEnabled(true);
-            scanButton.setText(R.string.scan_bluetooth);
-            statusText.setText(getString(R.string.error, message));
-            Toast.makeText(this, message, Toast.LENGTH_LONG).show();
-        });
+    @Override
+    public void onFlowSnapshot(ProvisioningFlow.Snapshot snapshot) {
+        ProvisioningFlow.State previousState = flowState;
+        flowState = snapshot.getState();
+        boolean ownAttempt = waitingForPrinterConnection && snapshot.getAttemptId() == pendingAttemptId;
+        switch (flowState) {
+            case SCANNING:
+                showBusy();
+                scanButton.setText(R.string.scanning);
+                break;
+            case CONNECTING:
+                showBusy();
+                if (snapshot.getRetryAttempt() > 0) {
+                    statusText.setText(getString(R.string.retrying_attempt, snapshot.getRetryAttempt(), snapshot.getRetryMaxAttempts()));
+                }
+                break;
+            case IDLE:
+                showIdle();
+                if (previousState == ProvisioningFlow.State.SCANNING && liveDeviceCount == 0) {
+                    statusText.setText(R.string.no_compatible_printers_found);
+                }
+                break;
+            case FAILED:
+                showIdle();
+                if (snapshot.getFailedState() == ProvisioningFlow.State.SCANNING) {
+                    statusText.setText(snapshot.getMessage());
+                } else if (ownAttempt && snapshot.getFailedState() == ProvisioningFlow.State.CONNECTING) {
+                    waitingForPrinterConnection = false;
+                    statusText.setText(getString(R.string.error, snapshot.getMessage()));
+                    Toast.makeText(this, snapshot.getMessage(), Toast.LENGTH_LONG).show();
+                }
+                break;
+            default:
+                // Connected: Wi-Fi setup continues on its own screen.
+                showIdle();
+                if (ownAttempt) {
+                    waitingForPrinterConnection = false;
+                    statusText.setText("");
+                    openWifiConfigScreen();
+                }
+                break;
+        }
     }
 
     @Override
-    public void onPrinterFount(PrinterDevice printerDevice) {
-        if (printerDevice == null) {
+    public void onDiscoverySnapshot(DiscoverySnapshot snapshot) {
+        deviceList = snapshot.getPrinters();
+        liveDeviceCount = snapshot.getLiveCount();
+        deviceAdapter.submitList(deviceList);
+        provisioningFlow.onDiscoverySnapshot(snapshot);
+        if (flowState != ProvisioningFlow.State.SCANNING || waitingForPrinterConnection) {
             return;
         }
-
-        String address = printerDevice.getAddress();
-        if (address == null || address.trim().isEmpty()) {
-            return;
+        if (liveDeviceCount > 0) {
+            statusText.setText(getString(R.string.printers_found, liveDeviceCount));
         }
-
-        String name = printerDevice.getName();
-        runOnUiThread(() -> {
-            if (!scanInProgress || !discoveredAddresses.add(address)) {
-                return;
-            }
-
-            deviceList.add(new DiscoveredPrinter(address, name));
-            deviceAdapter.notifyDataSetChanged();
-            statusText.setText(getString(R.string.printers_found, deviceList.size()));
-        });
-    }
-
-    @Override
-    public void routerFound(Router router) {
-        // Not used in this activity.
-    }
-
-    @Override
-    public void onGetWifiListFinish() {
-        // Not used in this activity.
-    }
-
-    @Override
-    public void onGetWifiListFail() {
-        // Not used in this activity.
-    }
-
-    @Override
-    public void onSetWifiSuccess() {
-        // Not used in this activity.
-    }
-
-    @Override
-    public void wifiConfigSuccess() {
-        // Not used in this activity.
-    }
-
-    @Override
-    public void onWifiConfigFail() {
-        // Not used in this activity.
-    }
-
-    @Override
-    public void sendDataFail(int code, String msg) {
-        String failure = getString(R.string.wifi_push_error_with_code, code, msg == null ? "Unknown" : msg);
-        handlePrinterConnectionFailure(failure);
-    }
-
-    @Override
-    public void getSnRequestSuccess() {
-        // Wait for onSnReceived callback.
-    }
-
-    @Override
-    public void onSnReceived(String sn) {
-        stopPrinterScan(false);
-        waitingForPrinterConnection = false;
-        connectionTimeoutHandler.removeCallbacks(connectionTimeoutRunnable);
-
-        runOnUiThread(() -> {
-            progressBar.setVisibility(View.GONE);
-            scanButton.setEnabled(true);
-            scanButton.setText(R.string.scan_bluetooth);
-            statusText.setText("");
-            openWifiConfigScreen();
-        });
+        speculativeConnector.onSnapshot(snapshot);
+        serialPrefetcher.onSnapshot(snapshot);
+        nearestPrinterSelector.onSnapshot(snapshot);
     }
 
     @Override
@@ -325,26 +455,42 @@ public class MainActivity extends AppCompatActivity implements SunmiPrinterClien
                     break;
                 }
             }
-            if (allGranted) {
-                startBluetoothScan();
-            } else {
+            if (!allGranted) {
                 Toast.makeText(this, R.string.permissions_required, Toast.LENGTH_SHORT).show();
+            } else if (provisioningFlow == null) {
+                permissionsGrantedBeforeStart = true;
+            } else {
+                onPermissionsGranted();
             }
         }
     }
 
+    private void onPermissionsGranted() {
+        provisioningFlow.warmUp();
+        if (openBulkAfterPermissions) {
+            openBulkProvisioningScreen();
+        } else {
+            startBluetoothScan();
+        }
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        stopPrinterScan(false);
-        scanTimeoutHandler.removeCallbacks(scanTimeoutRunnable);
-        connectionTimeoutHandler.removeCallbacks(connectionTimeoutRunnable);
-
-        if (sunmiPrinterClient != null && pendingPrinterAddress != null && !pendingPrinterAddress.isEmpty()) {
-            try {
-                sunmiPrinterClient.disconnect(pendingPrinterAddress);
-            } catch (Throwable ignored) {
+        if (provisioningFlow != null) {
+            provisioningFlow.removeObserver(this);
+            provisioningFlow.stopScan();
+            if (waitingForPrinterConnection) {
+                provisioningFlow.close(pendingPrinterAddress);
             }
         }
+        if (discoveryPipeline != null) {
+            discoveryPipeline.shutdown();
+        }
+        if (speculativeConnector != null) {
+            speculativeConnector.cancel();
+            serialPrefetcher.cancelAll();
+            nearestPrinterSelector.cancel();
+        }
     }
 }
@@ -0,0 +1,103 @@
+package com.sunmi.printerconfig;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Opt-in: picks the nearest likely-Sunmi printer for the operator once it has out-signalled every
+ * other candidate by {@link #LEAD_MARGIN_DB} for {@link #STABLE_WINDOW_MS}, so walking past a printer
+ * or a momentary fade does not choose the wrong one. Fires at most once per scan. Main thread only.
+ */
+final class NearestPrinterSelector {
+    static final long STABLE_WINDOW_MS = 2_000;
+    static final int LEAD_MARGIN_DB = 6;
+
+    interface Listener {
+        void onNearestPrinterSelected(DiscoveredPrinter printer);
+    }
+
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private boolean enabled = false;
+    private boolean selected = false;
+    private DiscoveredPrinter leader;
+    private long leaderSinceMs;
+
+    private final Runnable stabilityCheck = this::selectIfStable;
+
+    NearestPrinterSelector(Listener listener) {
+        this.listener = listener;
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            cancel();
+        }
+    }
+
+    void onScanStarted() {
+        cancel();
+        selected = false;
+    }
+
+    /**
+     * Forgets the current leader, for example because the user picked a printer themselves.
+     */
+    void cancel() {
+        leader = null;
+        handler.removeCallbacks(stabilityCheck);
+    }
+
+    void onSnapshot(DiscoverySnapshot snapshot) {
+        if (!enabled || selected) {
+            return;
+        }
+
+        DiscoveredPrinter nearest = null;
+        int runnerUpRssi = DiscoveredPrinter.NO_SIGNAL;
+        for (DiscoveredPrinter printer : snapshot.getPrinters()) {
+            if (printer.isCached() || !printer.isLikelySunmi() || !printer.hasSignal()) {
+                continue;
+            }
+            if (nearest == null || printer.getRssi() > nearest.getRssi()) {
+                if (nearest != null) {
+                    runnerUpRssi = nearest.getRssi();
+                }
+                nearest = printer;
+            } else if (printer.getRssi() > runnerUpRssi) {
+                runnerUpRssi = printer.getRssi();
+            }
+        }
+
+        boolean clearLead = nearest != null
+            && (runnerUpRssi == DiscoveredPrinter.NO_SIGNAL || nearest.getRssi() - runnerUpRssi >= LEAD_MARGIN_DB);
+        if (!clearLead) {
+            cancel();
+            return;
+        }
+        if (!nearest.equals(leader)) {
+            leaderSinceMs = SystemClock.elapsedRealtime();
+            handler.removeCallbacks(stabilityCheck);
+            handler.postDelayed(stabilityCheck, STABLE_WINDOW_MS);
+        }
+        leader = nearest;
+    }
+
+    private void selectIfStable() {
+        if (!enabled || selected || leader == null) {
+            return;
+        }
+        long remainingMs = leaderSinceMs + STABLE_WINDOW_MS - SystemClock.elapsedRealtime();
+        if (remainingMs > 0) {
+            handler.postDelayed(stabilityCheck, remainingMs);
+            return;
+        }
+        selected = true;
+        DiscoveredPrinter chosen = leader;
+        cancel();
+        listener.onNearestPrinterSelected(chosen);
+    }
+}
@@ -0,0 +1,191 @@
+package com.sunmi.printerconfig;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.net.nsd.NsdManager;
+import android.net.nsd.NsdServiceInfo;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Finds a printer on the LAN through mDNS / DNS-SD: raw-socket ({@code _pdl-datastream}) and IPP
+ * print services are browsed, and a service counts as the printer when its instance name or TXT
+ * record mentions the printer's serial number or Bluetooth MAC (in full or its last six digits).
+ * Only used while the phone is on the very Wi-Fi network the printer was sent to; on any other network,
+ * or when Android will not say which one it is, the printer could not be seen anyway.
+ *
+ * <p>{@link NsdManager} resolves one service at a time on older releases, so resolutions are queued.
+ */
+final class NsdPrinterLocator implements PrinterLocator {
+    static final Factory FACTORY = NsdPrinterLocator::create;
+
+    private static final String[] SERVICE_TYPES = {"_pdl-datastream._tcp.", "_ipp._tcp."};
+
+    private final NsdManager nsdManager;
+    private final List<String> identityTokens = new ArrayList<>();
+    private final List<NsdManager.DiscoveryListener> discoveryListeners = new ArrayList<>();
+    private final ArrayDeque<NsdServiceInfo> pendingResolves = new ArrayDeque<>();
+    private Callback callback;
+    private boolean resolving = false;
+    private boolean stopped = false;
+
+    private NsdPrinterLocator(NsdManager nsdManager, String serialNumber, String bluetoothAddress) {
+        this.nsdManager = nsdManager;
+        if (serialNumber != null && !serialNumber.isEmpty()) {
+            identityTokens.add(serialNumber.toUpperCase(Locale.ROOT));
+        }
+        if (bluetoothAddress != null) {
+            String mac = bluetoothAddress.replace(":", "").toUpperCase(Locale.ROOT);
+            if (mac.length() == 12) {
+                identityTokens.add(mac);
+                identityTokens.add(mac.substring(6));
+            }
+        }
+    }
+
+    private static PrinterLocator create(Context context, String serialNumber, String bluetoothAddress, String ssid) {
+        NsdManager nsdManager = (NsdManager) context.getSystemService(Context.NSD_SERVICE);
+        if (nsdManager == null || !isOnWifi(context, ssid)) {
+            return null;
+        }
+        NsdPrinterLocator locator = new NsdPrinterLocator(nsdManager, serialNumber, bluetoothAddress);
+        return locator.identityTokens.isEmpty() ? null : locator;
+    }
+
+    private static boolean isOnWifi(Context context, String ssid) {
+        if (ssid == null || ssid.isEmpty()) {
+            return false;
+        }
+        ConnectivityManager connectivity = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo network = connectivity == null ? null : connectivity.getActiveNetworkInfo();
+        if (network == null || !network.isConnected() || network.getType() != ConnectivityManager.TYPE_WIFI) {
+            return false;
+        }
+        WifiManager wifi = (WifiManager) context.getApplicationContext().getSystemService(Context.WIFI_SERVICE);
+        WifiInfo info = wifi == null ? null : wifi.getConnectionInfo();
+        // Quoted when the name is valid UTF-8; "<unknown ssid>" without location access.
+        return info != null && ("\"" + ssid + "\"").equals(info.getSSID());
+    }
+
+    @Override
+    public synchronized void start(Callback callback) {
+        this.callback = callback;
+        for (String serviceType : SERVICE_TYPES) {
+            NsdManager.DiscoveryListener listener = new BrowseListener();
+            discoveryListeners.add(listener);
+            try {
+                nsdManager.discoverServices(serviceType, NsdManager.PROTOCOL_DNS_SD, listener);
+            } catch (RuntimeException ignored) {
+                // Another browse with this listener is still active; the rest still run.
+            }
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        stopped = true;
+        pendingResolves.clear();
+        for (NsdManager.DiscoveryListener listener : discoveryListeners) {
+            try {
+                nsdManager.stopServiceDiscovery(listener);
+            } catch (RuntimeException ignored) {
+            }
+        }
+        discoveryListeners.clear();
+    }
+
+    private synchronized void enqueueResolve(NsdServiceInfo service) {
+        if (stopped) {
+            return;
+        }
+        pendingResolves.addLast(service);
+        resolveNext();
+    }
+
+    private synchronized void onResolveFinished(NsdServiceInfo resolved) {
+        resolving = false;
+        if (!stopped && resolved != null && resolved.getHost() != null && matches(resolved)) {
+            int port = resolved.getServiceType().contains("pdl-datastream")
+                ? resolved.getPort()
+                : ReachabilityVerifier.PRINT_PORT;
+            callback.onCandidate(new InetSocketAddress(resolved.getHost(), port));
+        }
+        resolveNext();
+    }
+
+    private void resolveNext() {
+        if (resolving || stopped || pendingResolves.isEmpty()) {
+            return;
+        }
+        resolving = true;
+        nsdManager.resolveService(pendingResolves.pollFirst(), new ResolveListener());
+    }
+
+    private boolean matches(NsdServiceInfo service) {
+        StringBuilder haystack = new StringBuilder(service.getServiceName());
+        Map<String, byte[]> attributes = service.getAttributes();
+        if (attributes != null) {
+            for (Map.Entry<String, byte[]> attribute : attributes.entrySet()) {
+                haystack.append(' ').append(attribute.getKey());
+                if (attribute.getValue() != null) {
+                    haystack.append('=').append(new String(attribute.getValue(), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        String normalized = haystack.toString().replace(":", "").toUpperCase(Locale.ROOT);
+        for (String token : identityTokens) {
+            if (normalized.contains(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class BrowseListener implements NsdManager.DiscoveryListener {
+        @Override
+        public void onDiscoveryStarted(String serviceType) {
+        }
+
+        @Override
+        public void onServiceFound(NsdServiceInfo service) {
+            enqueueResolve(service);
+        }
+
+        @Override
+        public void onServiceLost(NsdServiceInfo service) {
+        }
+
+        @Override
+        public void onDiscoveryStopped(String serviceType) {
+        }
+
+        @Override
+        public void onStartDiscoveryFailed(String serviceType, int errorCode) {
+        }
+
+        @Override
+        public void onStopDiscoveryFailed(String serviceType, int errorCode) {
+        }
+    }
+
+    private final class ResolveListener implements NsdManager.ResolveListener {
+        @Override
+        public void onResolveFailed(NsdServiceInfo service, int errorCode) {
+            onResolveFinished(null);
+        }
+
+        @Override
+        public void onServiceResolved(NsdServiceInfo service) {
+            onResolveFinished(service);
+        }
+    }
+}
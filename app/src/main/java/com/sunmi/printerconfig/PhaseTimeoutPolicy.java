@@ -0,0 +1,276 @@
+package com.sunmi.printerconfig;
+
+import android.content.Context;
+import android.util.AtomicFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Timeouts for the handshake, Wi-Fi list and Wi-Fi push, learned from how long those phases have
+ * actually taken on this device.
+ *
+ * <p>Durations feed a decaying p95 per phase and printer model family, plus one across all models. A
+ * timeout is {@link #HEADROOM} times the estimate, clamped to between {@link #FLOOR_FACTOR} and
+ * {@link #CEILING_FACTOR} times the caller's default. The model's estimate is used once it has
+ * {@link #MIN_SAMPLES} samples, then the all-models one, then the default itself, so a fresh install
+ * behaves exactly as before. {@link PrinterSession} times a retried request from its first attempt, and
+ * when a caller gives up on an unanswered one it adds the time waited, which is at least the timeout.
+ * Timeouts therefore count against the estimate, and a slow site pushes its timeouts back up instead of
+ * drifting to the floor on the few replies fast enough to arrive.
+ *
+ * <p>Estimates survive restarts in one small binary file written atomically on a background thread.
+ */
+public final class PhaseTimeoutPolicy {
+    private static final String FILE_NAME = "phase_latency.bin";
+    private static final int FORMAT_VERSION = 1;
+    static final double HEADROOM = 2.0;
+    static final double FLOOR_FACTOR = 0.5;
+    static final double CEILING_FACTOR = 3.0;
+    static final int MIN_SAMPLES = 5;
+    // Weight kept by older samples at each new one, so roughly the last twenty samples dominate.
+    private static final double DECAY = 0.95;
+    private static final double QUANTILE = 0.95;
+    // Key for the estimate across all models, and for printers whose model is unknown.
+    private static final String ALL_MODELS = "";
+
+    // Bucket upper bounds grow by a quarter from 250 ms; the last bucket takes everything above.
+    private static final long[] BUCKET_UPPER_BOUNDS_MS = buildBounds();
+
+    private static long[] buildBounds() {
+        List<Long> bounds = new ArrayList<>();
+        for (double bound = 250; bound < 300_000; bound *= 1.25) {
+            bounds.add(Math.round(bound));
+        }
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Exponentially decayed histogram of one phase's durations.
+     */
+    private static final class Estimate {
+        final double[] weights = new double[BUCKET_UPPER_BOUNDS_MS.length + 1];
+        int samples;
+
+        void add(long durationMs) {
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] *= DECAY;
+            }
+            weights[bucketOf(durationMs)] += 1;
+            samples++;
+        }
+
+        long quantileMs() {
+            double total = 0;
+            for (double weight : weights) {
+                total += weight;
+            }
+            double seen = 0;
+            for (int i = 0; i < BUCKET_UPPER_BOUNDS_MS.length; i++) {
+                seen += weights[i];
+                if (seen >= total * QUANTILE) {
+                    return BUCKET_UPPER_BOUNDS_MS[i];
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        private static int bucketOf(long durationMs) {
+            for (int i = 0; i < BUCKET_UPPER_BOUNDS_MS.length; i++) {
+                if (durationMs <= BUCKET_UPPER_BOUNDS_MS[i]) {
+                    return i;
+                }
+            }
+            return BUCKET_UPPER_BOUNDS_MS.length;
+        }
+    }
+
+    private static PhaseTimeoutPolicy instance;
+
+    private final AtomicFile file;
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+    private final Map<ProvisioningMetrics.Phase, Map<String, Estimate>> estimates =
+        new EnumMap<>(ProvisioningMetrics.Phase.class);
+    private boolean writeScheduled = false;
+
+    private PhaseTimeoutPolicy(File file) {
+        this.file = new AtomicFile(file);
+        for (ProvisioningMetrics.Phase phase : ProvisioningMetrics.Phase.values()) {
+            estimates.put(phase, new HashMap<>());
+        }
+        load();
+    }
+
+    public static synchronized PhaseTimeoutPolicy getInstance(Context context) {
+        if (instance == null) {
+            instance = new PhaseTimeoutPolicy(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * @param family    the printer's model family, or null when unknown or not about one printer
+     * @param defaultMs the fixed timeout used before any history exists; also sets the floor and ceiling
+     */
+    public synchronized long getTimeoutMs(ProvisioningMetrics.Phase phase, PrinterModelFamily family, long defaultMs) {
+        Estimate estimate = family == null ? null : estimates.get(phase).get(family.getId());
+        if (estimate == null || estimate.samples < MIN_SAMPLES) {
+            estimate = estimates.get(phase).get(ALL_MODELS);
+        }
+        if (estimate == null || estimate.samples < MIN_SAMPLES) {
+            return defaultMs;
+        }
+        long learnedMs = (long) Math.min(Long.MAX_VALUE / 2, estimate.quantileMs() * HEADROOM);
+        long floorMs = (long) (defaultMs * FLOOR_FACTOR);
+        long ceilingMs = (long) (defaultMs * CEILING_FACTOR);
+        return Math.max(floorMs, Math.min(ceilingMs, learnedMs));
+    }
+
+    /**
+     * Adds the duration of a phase that completed, or the time waited for one that never did.
+     */
+    public synchronized void recordSample(ProvisioningMetrics.Phase phase, PrinterModelFamily family, long durationMs) {
+        if (durationMs < 0) {
+            return;
+        }
+        estimate(phase, ALL_MODELS).add(durationMs);
+        if (family != null) {
+            estimate(phase, family.getId()).add(durationMs);
+        }
+        scheduleWrite();
+    }
+
+    private Estimate estimate(ProvisioningMetrics.Phase phase, String model) {
+        Map<String, Estimate> byModel = estimates.get(phase);
+        Estimate estimate = byModel.get(model);
+        if (estimate == null) {
+            estimate = new Estimate();
+            byModel.put(model, estimate);
+        }
+        return estimate;
+    }
+
+    /**
+     * One line per learned estimate, for the diagnostics report.
+     */
+    public synchronized String buildReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "%-18s %-12s %7s %7s%n", "phase", "model", "samples", "p95"));
+        for (ProvisioningMetrics.Phase phase : ProvisioningMetrics.Phase.values()) {
+            for (Map.Entry<String, Estimate> entry : estimates.get(phase).entrySet()) {
+                Estimate estimate = entry.getValue();
+                long p95 = estimate.quantileMs();
+                report.append(String.format(Locale.ROOT, "%-18s %-12s %7d %7s%n",
+                    phase.name().toLowerCase(Locale.ROOT),
+                    entry.getKey().isEmpty() ? "all" : entry.getKey(),
+                    estimate.samples,
+                    p95 == Long.MAX_VALUE ? "inf" : String.valueOf(p95)));
+            }
+        }
+        report.append("(decaying estimates behind adaptive timeouts, milliseconds)\n");
+        return report.toString();
+    }
+
+    /**
+     * Forgets all history, returning every timeout to its default.
+     */
+    public synchronized void reset() {
+        for (Map<String, Estimate> byModel : estimates.values()) {
+            byModel.clear();
+        }
+        scheduleWrite();
+    }
+
+    private void scheduleWrite() {
+        if (writeScheduled) {
+            return;
+        }
+        writeScheduled = true;
+        writeExecutor.execute(this::write);
+    }
+
+    private void write() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream data = new DataOutputStream(bytes)) {
+            synchronized (this) {
+                writeScheduled = false;
+                data.writeInt(FORMAT_VERSION);
+                data.writeInt(BUCKET_UPPER_BOUNDS_MS.length + 1);
+                for (Map.Entry<ProvisioningMetrics.Phase, Map<String, Estimate>> phase : estimates.entrySet()) {
+                    for (Map.Entry<String, Estimate> entry : phase.getValue().entrySet()) {
+                        data.writeBoolean(true);
+                        data.writeUTF(phase.getKey().name());
+                        data.writeUTF(entry.getKey());
+                        data.writeInt(entry.getValue().samples);
+                        for (double weight : entry.getValue().weights) {
+                            data.writeDouble(weight);
+                        }
+                    }
+                }
+                data.writeBoolean(false);
+            }
+        } catch (IOException e) {
+            return;
+        }
+
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            bytes.writeTo(out);
+            file.finishWrite(out);
+        } catch (IOException e) {
+            if (out != null) {
+                file.failWrite(out);
+            }
+        }
+    }
+
+    private synchronized void load() {
+        byte[] bytes;
+        try {
+            bytes = file.readFully();
+        } catch (IOException e) {
+            return;
+        }
+
+        try (DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            // Different buckets mean different numbers; start over rather than misread them.
+            if (data.readInt() != FORMAT_VERSION || data.readInt() != BUCKET_UPPER_BOUNDS_MS.length + 1) {
+                return;
+            }
+            while (data.readBoolean()) {
+                String phaseName = data.readUTF();
+                String model = data.readUTF();
+                Estimate estimate = new Estimate();
+                estimate.samples = data.readInt();
+                for (int i = 0; i < estimate.weights.length; i++) {
+                    estimate.weights[i] = data.readDouble();
+                }
+                for (ProvisioningMetrics.Phase phase : ProvisioningMetrics.Phase.values()) {
+                    if (phase.name().equals(phaseName)) {
+                        estimates.get(phase).put(model, estimate);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Losing the history only costs the default timeouts; keep whatever was read.
+        }
+    }
+}
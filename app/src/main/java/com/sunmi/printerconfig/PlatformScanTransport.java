@@ -0,0 +1,131 @@
+package com.sunmi.printerconfig;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothManager;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanRecord;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.content.Context;
+import android.os.ParcelUuid;
+
+import com.sunmi.cloudprinter.bean.PrinterDevice;
+import com.sunmi.cloudprinter.constant.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Discovery on the platform LE scanner instead of the SDK's unfiltered legacy scan. Only devices
+ * advertising the Sunmi configuration service, plus printers this phone already knows by address,
+ * get past the {@link ScanFilter}s, which the Bluetooth controller applies itself where it supports
+ * offloaded filtering. Results are batched in the controller where supported, and are reported through
+ * the same {@code onPrinterFount} and {@link PrinterClientCallbacks#onSignalStrength} callbacks as
+ * the SDK scan.
+ *
+ * <p>Scan-only: printer requests go through a session's transport, never through a scanner.
+ */
+final class PlatformScanTransport implements ScanTransport {
+    // Controllers hold a small fixed number of filters; the service filter takes one of them.
+    private static final int MAX_ADDRESS_FILTERS = 15;
+
+    private final Context context;
+    private final PrinterClientCallbacks callbacks;
+    private final ScanBackend backend;
+    private final ScanCallback scanCallback = new ResultCallback();
+    private volatile BluetoothLeScanner scanner;
+
+    PlatformScanTransport(Context context, PrinterClientCallbacks callbacks, ScanBackend backend) {
+        this.context = context;
+        this.callbacks = callbacks;
+        this.backend = backend;
+    }
+
+    @Override
+    public void startScan() {
+        BluetoothManager manager = (BluetoothManager) context.getSystemService(Context.BLUETOOTH_SERVICE);
+        BluetoothAdapter adapter = manager == null ? null : manager.getAdapter();
+        BluetoothLeScanner leScanner = adapter == null ? null : adapter.getBluetoothLeScanner();
+        if (leScanner == null) {
+            // Null while Bluetooth is off.
+            throw new IllegalStateException("Bluetooth LE scanner unavailable");
+        }
+
+        ScanSettings.Builder settings = new ScanSettings.Builder().setScanMode(backend.getScanMode());
+        if (backend.getReportDelayMs() > 0 && adapter.isOffloadedScanBatchingSupported()) {
+            settings.setReportDelay(backend.getReportDelayMs());
+        }
+        stopScan();
+        leScanner.startScan(buildFilters(), settings.build(), scanCallback);
+        scanner = leScanner;
+    }
+
+    @Override
+    public void stopScan() {
+        if (scanner == null) {
+            return;
+        }
+        try {
+            scanner.stopScan(scanCallback);
+        } catch (IllegalStateException ignored) {
+            // Bluetooth was turned off, which already stopped the scan.
+        }
+        scanner = null;
+    }
+
+    private List<ScanFilter> buildFilters() {
+        List<ScanFilter> filters = new ArrayList<>();
+        filters.add(new ScanFilter.Builder().setServiceUuid(new ParcelUuid(Constants.SERVICE_UUID)).build());
+        for (KnownPrinter known : KnownPrinterStore.getInstance(context).getAll()) {
+            if (filters.size() > MAX_ADDRESS_FILTERS) {
+                break;
+            }
+            if (BluetoothAdapter.checkBluetoothAddress(known.getAddress())) {
+                filters.add(new ScanFilter.Builder().setDeviceAddress(known.getAddress()).build());
+            }
+        }
+        return filters;
+    }
+
+    private void report(ScanResult result) {
+        BluetoothDevice device = result.getDevice();
+        if (device == null || device.getAddress() == null) {
+            return;
+        }
+        ScanRecord record = result.getScanRecord();
+        String name = record == null ? null : record.getDeviceName();
+        if (name == null) {
+            name = device.getName();
+        }
+
+        PrinterDevice printerDevice = new PrinterDevice();
+        printerDevice.setAddress(device.getAddress());
+        printerDevice.setName(name);
+        callbacks.onPrinterFount(printerDevice);
+        callbacks.onSignalStrength(device.getAddress(), result.getRssi());
+    }
+
+    private final class ResultCallback extends ScanCallback {
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            report(result);
+        }
+
+        @Override
+        public void onBatchScanResults(List<ScanResult> results) {
+            for (ScanResult result : results) {
+                report(result);
+            }
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            // The platform has already stopped the scan; stopScan has nothing left to do.
+            scanner = null;
+            callbacks.onScanFailed(errorCode);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.sunmi.printerconfig;
+
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide per-printer circuit breaker. After {@link #FAILURE_THRESHOLD} consecutive failed
+ * attempts a printer is refused for {@link #OPEN_DURATION_MS}; the first request after that is a
+ * trial, and one more failure reopens the circuit at once. Any success closes it. While the trial is
+ * in flight every other request is refused, so parallel callers cannot all rush a recovering printer;
+ * a trial {@link #abandonTrial abandoned} without a result lets the next request be the trial instead.
+ */
+public final class PrinterCircuitBreaker {
+    static final int FAILURE_THRESHOLD = 5;
+    static final long OPEN_DURATION_MS = 60_000;
+
+    private static final PrinterCircuitBreaker INSTANCE = new PrinterCircuitBreaker();
+
+    private static final class State {
+        int consecutiveFailures;
+        long openUntilMs;
+        boolean trialInFlight;
+    }
+
+    private final Map<String, State> states = new HashMap<>();
+
+    private PrinterCircuitBreaker() {
+    }
+
+    public static PrinterCircuitBreaker getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return true if the request may go ahead. Once the circuit has been open, a true result makes the
+     *         caller the trial, which must end in {@link #recordSuccess}, {@link #recordFailure} or
+     *         {@link #abandonTrial}.
+     */
+    public synchronized boolean allowRequest(String address) {
+        State state = states.get(address);
+        if (state == null || state.consecutiveFailures < FAILURE_THRESHOLD) {
+            return true;
+        }
+        if (state.trialInFlight || state.openUntilMs > SystemClock.elapsedRealtime()) {
+            return false;
+        }
+        state.trialInFlight = true;
+        return true;
+    }
+
+    /**
+     * @return how long the printer stays refused, 1 while a trial request is in flight, or 0 when
+     *         requests are allowed
+     */
+    public synchronized long getRemainingOpenMs(String address) {
+        State state = states.get(address);
+        if (state == null) {
+            return 0;
+        }
+        long remainingMs = Math.max(0, state.openUntilMs - SystemClock.elapsedRealtime());
+        return state.trialInFlight ? Math.max(1, remainingMs) : remainingMs;
+    }
+
+    public synchronized boolean isTrialInFlight(String address) {
+        State state = states.get(address);
+        return state != null && state.trialInFlight;
+    }
+
+    /**
+     * Ends a trial that was cancelled before the printer answered either way.
+     */
+    public synchronized void abandonTrial(String address) {
+        State state = states.get(address);
+        if (state != null) {
+            state.trialInFlight = false;
+        }
+    }
+
+    public synchronized void recordSuccess(String address) {
+        states.remove(address);
+    }
+
+    /**
+     * @return true if this failure opened the circuit
+     */
+    public synchronized boolean recordFailure(String address) {
+        State state = states.get(address);
+        if (state == null) {
+            state = new State();
+            states.put(address, state);
+        }
+        state.consecutiveFailures++;
+        state.trialInFlight = false;
+        if (state.consecutiveFailures < FAILURE_THRESHOLD) {
+            return false;
+        }
+        state.openUntilMs = SystemClock.elapsedRealtime() + OPEN_DURATION_MS;
+        return true;
+    }
+
+    public synchronized void reset(String address) {
+        states.remove(address);
+    }
+}
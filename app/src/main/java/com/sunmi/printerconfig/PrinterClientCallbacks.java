@@ -0,0 +1,65 @@
+package com.sunmi.printerconfig;
+
+import com.sunmi.cloudprinter.bean.PrinterDevice;
+import com.sunmi.cloudprinter.bean.Router;
+import com.sunmi.cloudprinter.presenter.SunmiPrinterClient;
+
+/**
+ * No-op {@link SunmiPrinterClient.IPrinterClient} so helpers only override the callbacks they use.
+ */
+public class PrinterClientCallbacks implements SunmiPrinterClient.IPrinterClient {
+    @Override
+    public void onPrinterFount(PrinterDevice printerDevice) {
+    }
+
+    @Override
+    public void routerFound(Router router) {
+    }
+
+    @Override
+    public void onGetWifiListFinish() {
+    }
+
+    @Override
+    public void onGetWifiListFail() {
+    }
+
+    @Override
+    public void onSetWifiSuccess() {
+    }
+
+    @Override
+    public void wifiConfigSuccess() {
+    }
+
+    @Override
+    public void onWifiConfigFail() {
+    }
+
+    @Override
+    public void sendDataFail(int code, String msg) {
+    }
+
+    @Override
+    public void getSnRequestSuccess() {
+    }
+
+    @Override
+    public void onSnReceived(String sn) {
+    }
+
+    /**
+     * Not an SDK callback: the signal strength of a scanned advertisement from {@code address}, for
+     * transports that can see it. Arrives after the {@link #onPrinterFount} for the same advertisement,
+     * and also for devices the SDK did not report.
+     */
+    public void onSignalStrength(String address, int rssi) {
+    }
+
+    /**
+     * Not an SDK callback: the platform scanner stopped the scan on its own, with one of the
+     * {@code ScanCallback.SCAN_FAILED_*} codes. No more printers will be reported by it.
+     */
+    public void onScanFailed(int errorCode) {
+    }
+}
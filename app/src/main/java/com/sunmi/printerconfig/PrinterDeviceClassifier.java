@@ -1,20 +1,46 @@
 package com.sunmi.printerconfig;
 
-import java.util.Locale;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 
+/**
+ * Recognises printer families from advertised names using the bundled {@code printer_models.txt}
+ * rule table. Supporting a new model only needs a rule line.
+ */
 public final class PrinterDeviceClassifier {
+    private static final String RULES_RESOURCE = "/com/sunmi/printerconfig/printer_models.txt";
+
     private PrinterDeviceClassifier() {
     }
 
-    public static boolean isLikelySunmi(String deviceName) {
-        if (deviceName == null || deviceName.trim().isEmpty()) {
-            return false;
+    // Loaded on first use, off the startup path.
+    private static final class Rules {
+        static final PrinterModelMatcher MATCHER = load();
+
+        private static PrinterModelMatcher load() {
+            try (InputStream in = PrinterDeviceClassifier.class.getResourceAsStream(RULES_RESOURCE)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing bundled " + RULES_RESOURCE);
+                }
+                return PrinterModelMatcher.parse(new InputStreamReader(in, StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read " + RULES_RESOURCE, e);
+            }
         }
+    }
 
-        String normalizedName = deviceName.toUpperCase(Locale.ROOT);
-        return normalizedName.startsWith("NT311")
-            || normalizedName.contains("CLOUDPRINTER")
-            || normalizedName.contains("CLOUD PRINT")
-            || normalizedName.contains("SUNMI");
+    /**
+     * Does not allocate; prefer {@link DiscoveredPrinter#getModelFamily()}, which caches the result.
+     *
+     * @return the matched family, or null when the name does not look like a Sunmi printer
+     */
+    public static PrinterModelFamily classify(CharSequence deviceName) {
+        return Rules.MATCHER.match(deviceName);
+    }
+
+    public static boolean isLikelySunmi(String deviceName) {
+        return classify(deviceName) != null;
     }
 }
@@ -0,0 +1,31 @@
+package com.sunmi.printerconfig;
+
+import android.content.Context;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Finds where a printer that has just joined Wi-Fi can be reached on the LAN.
+ */
+public interface PrinterLocator {
+    interface Factory {
+        /**
+         * @param ssid the network the printer was just told to join
+         * @return a locator for the printer, or null when this phone is not on that network and
+         *         verification should be skipped
+         */
+        PrinterLocator create(Context context, String serialNumber, String bluetoothAddress, String ssid);
+    }
+
+    interface Callback {
+        /**
+         * Reports a host and print port that may belong to the printer. Called on any thread, possibly
+         * more than once for the same address.
+         */
+        void onCandidate(InetSocketAddress address);
+    }
+
+    void start(Callback callback);
+
+    void stop();
+}
@@ -0,0 +1,35 @@
+package com.sunmi.printerconfig;
+
+/**
+ * A printer family recognised from its advertised name. Instances come from the bundled rule
+ * table and are shared, so identity comparison is safe.
+ */
+public final class PrinterModelFamily {
+    private final String id;
+    private final String label;
+
+    PrinterModelFamily(String id, String label) {
+        this.id = id;
+        this.label = label;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Short model name for list rows; empty for brand-level rules that do not identify a model.
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    public boolean isGeneric() {
+        return label.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
@@ -0,0 +1,217 @@
+package com.sunmi.printerconfig;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Multi-pattern name matcher compiled from a rule table into an Aho-Corasick automaton with a full
+ * transition table, so a lookup is one pass over the name with no allocation and no case
+ * conversion beyond an array lookup per character.
+ *
+ * <p>Rule order is priority: when several rules match, the one listed first wins.
+ */
+final class PrinterModelMatcher {
+    private static final int ASCII_LIMIT = 128;
+    private static final String MATCH_PREFIX = "prefix";
+    private static final String MATCH_CONTAINS = "contains";
+
+    private final PrinterModelFamily[] ruleFamilies;
+    private final boolean[] rulePrefix;
+    private final int[] ruleLength;
+
+    // Folded ASCII character -> symbol; 0 stands for every character absent from all patterns.
+    private final int[] symbolOf = new int[ASCII_LIMIT];
+    private final int alphabetSize;
+    private final int[] transitions;
+    // Per state: rules whose pattern ends here, directly or through failure links, ascending.
+    private final int[][] outputs;
+
+    private PrinterModelMatcher(List<PrinterModelFamily> families, List<Boolean> prefix, List<String> patterns) {
+        int ruleCount = patterns.size();
+        ruleFamilies = families.toArray(new PrinterModelFamily[0]);
+        rulePrefix = new boolean[ruleCount];
+        ruleLength = new int[ruleCount];
+
+        int symbols = 1;
+        for (int rule = 0; rule < ruleCount; rule++) {
+            rulePrefix[rule] = prefix.get(rule);
+            String pattern = patterns.get(rule);
+            ruleLength[rule] = pattern.length();
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (symbolOf[c] == 0) {
+                    symbolOf[c] = symbols;
+                    if (c >= 'A' && c <= 'Z') {
+                        symbolOf[c + ('a' - 'A')] = symbols;
+                    }
+                    symbols++;
+                }
+            }
+        }
+        alphabetSize = symbols;
+
+        // Trie over the folded patterns; -1 marks a missing edge until the automaton is completed.
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> terminal = new ArrayList<>();
+        trie.add(newRow());
+        terminal.add(new ArrayList<>());
+        for (int rule = 0; rule < ruleCount; rule++) {
+            String pattern = patterns.get(rule);
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int symbol = symbolOf[pattern.charAt(i)];
+                if (trie.get(state)[symbol] < 0) {
+                    trie.get(state)[symbol] = trie.size();
+                    trie.add(newRow());
+                    terminal.add(new ArrayList<>());
+                }
+                state = trie.get(state)[symbol];
+            }
+            terminal.get(state).add(rule);
+        }
+
+        int stateCount = trie.size();
+        transitions = new int[stateCount * alphabetSize];
+        outputs = new int[stateCount][];
+        int[] failure = new int[stateCount];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+        outputs[0] = toSortedArray(terminal.get(0), new int[0]);
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            int next = trie.get(0)[symbol];
+            if (next < 0) {
+                transitions[symbol] = 0;
+            } else {
+                transitions[symbol] = next;
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        // Breadth-first, so every failure target is complete before it is read.
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] = toSortedArray(terminal.get(state), outputs[failure[state]]);
+            for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                int next = trie.get(state)[symbol];
+                int fallback = transitions[failure[state] * alphabetSize + symbol];
+                if (next < 0) {
+                    transitions[state * alphabetSize + symbol] = fallback;
+                } else {
+                    transitions[state * alphabetSize + symbol] = next;
+                    failure[next] = fallback;
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    private int[] newRow() {
+        int[] row = new int[alphabetSize];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static int[] toSortedArray(List<Integer> own, int[] inherited) {
+        int[] merged = Arrays.copyOf(inherited, inherited.length + own.size());
+        for (int i = 0; i < own.size(); i++) {
+            merged[inherited.length + i] = own.get(i);
+        }
+        Arrays.sort(merged);
+        return merged;
+    }
+
+    /**
+     * @return the highest-priority family whose rule matches {@code name}, or null
+     */
+    PrinterModelFamily match(CharSequence name) {
+        if (name == null) {
+            return null;
+        }
+        int length = name.length();
+        int start = 0;
+        while (start < length && Character.isWhitespace(name.charAt(start))) {
+            start++;
+        }
+
+        int state = 0;
+        int best = Integer.MAX_VALUE;
+        for (int i = start; i < length && best != 0; i++) {
+            char c = name.charAt(i);
+            state = transitions[state * alphabetSize + (c < ASCII_LIMIT ? symbolOf[c] : 0)];
+            for (int rule : outputs[state]) {
+                if (rule >= best) {
+                    break;
+                }
+                if (!rulePrefix[rule] || i - ruleLength[rule] + 1 == start) {
+                    best = rule;
+                    break;
+                }
+            }
+        }
+        return best == Integer.MAX_VALUE ? null : ruleFamilies[best];
+    }
+
+    /**
+     * Parses {@code family | label | prefix|contains | pattern} lines; blank lines and {@code #}
+     * comments are ignored.
+     *
+     * @throws IllegalArgumentException with the offending line number for malformed rules
+     */
+    static PrinterModelMatcher parse(Reader reader) throws IOException {
+        List<PrinterModelFamily> families = new ArrayList<>();
+        List<Boolean> prefix = new ArrayList<>();
+        List<String> patterns = new ArrayList<>();
+        Map<String, PrinterModelFamily> familiesById = new HashMap<>();
+
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+
+            String[] columns = trimmed.split("\\|", -1);
+            if (columns.length != 4) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected 4 columns");
+            }
+            String id = columns[0].trim();
+            String label = columns[1].trim();
+            String match = columns[2].trim();
+            String pattern = columns[3].trim().toUpperCase(Locale.ROOT);
+            if (id.isEmpty() || pattern.isEmpty()) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": family and pattern are required");
+            }
+            if (!MATCH_PREFIX.equals(match) && !MATCH_CONTAINS.equals(match)) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": unknown match type " + match);
+            }
+            for (int i = 0; i < pattern.length(); i++) {
+                if (pattern.charAt(i) >= ASCII_LIMIT) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": patterns must be ASCII");
+                }
+            }
+
+            PrinterModelFamily family = familiesById.get(id);
+            if (family == null) {
+                family = new PrinterModelFamily(id, label);
+                familiesById.put(id, family);
+            } else if (!family.getLabel().equals(label)) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": conflicting label for " + id);
+            }
+            families.add(family);
+            prefix.add(MATCH_PREFIX.equals(match));
+            patterns.add(pattern);
+        }
+        return new PrinterModelMatcher(families, prefix, patterns);
+    }
+}
@@ -0,0 +1,226 @@
+package com.sunmi.printerconfig;
+
+import com.sunmi.cloudprinter.bean.PrinterDevice;
+import com.sunmi.cloudprinter.bean.Router;
+import com.sunmi.cloudprinter.presenter.SunmiPrinterClient;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * One BLE session with one printer, shared by every screen that works with that address.
+ *
+ * <p>The SDK client reports to a single callback, so the session fans each callback out to all
+ * current users. Obtain instances from {@link PrinterSessionManager#acquire} and hand them back with
+ * {@link #release} once done.
+ */
+public final class PrinterSession implements SunmiPrinterClient.IPrinterClient {
+    private final PrinterSessionManager manager;
+    private final String address;
+    private final PrinterTransport client;
+    private final List<SunmiPrinterClient.IPrinterClient> listeners = new CopyOnWriteArrayList<>();
+    private volatile String serialNumber;
+    private volatile PrinterModelFamily modelFamily;
+    private final long[] phaseStartedAtMs = new long[ProvisioningMetrics.Phase.values().length];
+    int refCount = 0;
+
+    PrinterSession(PrinterSessionManager manager, String address) {
+        this.manager = manager;
+        this.address = address;
+        this.client = manager.createTransport(this);
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * Serial number from the last successful handshake, or null until {@code onSnReceived}.
+     */
+    public String getSerialNumber() {
+        return serialNumber;
+    }
+
+    public boolean isHandshakeComplete() {
+        return serialNumber != null;
+    }
+
+    /**
+     * Model family of the printer, or null until a user that knows its name has set it. Phase
+     * durations are learned per family.
+     */
+    public PrinterModelFamily getModelFamily() {
+        return modelFamily;
+    }
+
+    public void setModelFamily(PrinterModelFamily modelFamily) {
+        this.modelFamily = modelFamily;
+    }
+
+    public void requestSerialNumber() {
+        beginPhase(ProvisioningMetrics.Phase.HANDSHAKE);
+        client.getPrinterSn(address);
+    }
+
+    public void requestWifiList() {
+        beginPhase(ProvisioningMetrics.Phase.WIFI_LIST);
+        client.getPrinterWifiList(address);
+    }
+
+    public void setWifi(byte[] essid, String password) {
+        beginPhase(ProvisioningMetrics.Phase.WIFI_CONFIG);
+        client.setPrinterWifi(address, essid, password == null ? "" : password);
+    }
+
+    // A retry of an unanswered request keeps the first attempt's start, so the sample spans the whole wait.
+    private synchronized void beginPhase(ProvisioningMetrics.Phase phase) {
+        if (phaseStartedAtMs[phase.ordinal()] == 0) {
+            phaseStartedAtMs[phase.ordinal()] = ProvisioningMetrics.now();
+        }
+    }
+
+    private synchronized void finishPhase(ProvisioningMetrics.Phase phase, boolean success) {
+        long startedAtMs = phaseStartedAtMs[phase.ordinal()];
+        if (startedAtMs != 0) {
+            phaseStartedAtMs[phase.ordinal()] = 0;
+            ProvisioningMetrics.getInstance().record(phase, startedAtMs, success);
+            if (success) {
+                manager.getTimeoutPolicy().recordSample(phase, modelFamily, ProvisioningMetrics.now() - startedAtMs);
+            }
+        }
+    }
+
+    /**
+     * Ends {@code phase} once its caller has stopped retrying. If the printer never answered, the time
+     * since the first attempt is learned as a sample: the reply would have taken at least that long, so
+     * a slow site pushes its timeouts up instead of only ever being measured by its fast replies.
+     */
+    public synchronized void giveUpPhase(ProvisioningMetrics.Phase phase) {
+        long startedAtMs = phaseStartedAtMs[phase.ordinal()];
+        if (startedAtMs != 0) {
+            phaseStartedAtMs[phase.ordinal()] = 0;
+            ProvisioningMetrics.getInstance().record(phase, startedAtMs, false);
+            manager.getTimeoutPolicy().recordSample(phase, modelFamily, ProvisioningMetrics.now() - startedAtMs);
+        }
+    }
+
+    // Nobody is waiting for these replies any more; how long they would have taken is unknown.
+    synchronized void failPendingPhases() {
+        for (ProvisioningMetrics.Phase phase : ProvisioningMetrics.Phase.values()) {
+            finishPhase(phase, false);
+        }
+    }
+
+    /**
+     * Stops delivering callbacks to {@code listener}; the BLE link stays up for the manager's grace period.
+     */
+    public void release(SunmiPrinterClient.IPrinterClient listener) {
+        manager.release(this, listener, false);
+    }
+
+    /**
+     * Like {@link #release} but tears the link down at once if nobody else is using it.
+     */
+    public void releaseAndDisconnect(SunmiPrinterClient.IPrinterClient listener) {
+        manager.release(this, listener, true);
+    }
+
+    void addListener(SunmiPrinterClient.IPrinterClient listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    void removeListener(SunmiPrinterClient.IPrinterClient listener) {
+        listeners.remove(listener);
+    }
+
+    void disconnect() {
+        failPendingPhases();
+        listeners.clear();
+        serialNumber = null;
+        try {
+            client.disconnect(address);
+        } catch (Throwable ignored) {
+        }
+    }
+
+    @Override
+    public void onPrinterFount(PrinterDevice printerDevice) {
+        for (SunmiPrinterClient.IPrinterClient listener : listeners) {
+            listener.onPrinterFount(printerDevice);
+        }
+    }
+
+    @Override
+    public void routerFound(Router router) {
+        for (SunmiPrinterClient.IPrinterClient listener : listeners) {
+            listener.routerFound(router);
+        }
+    }
+
+    @Override
+    public void onGetWifiListFinish() {
+        finishPhase(ProvisioningMetrics.Phase.WIFI_LIST, true);
+        for (SunmiPrinterClient.IPrinterClient listener : listeners) {
+            listener.onGetWifiListFinish();
+        }
+    }
+
+    @Override
+    public void onGetWifiListFail() {
+        finishPhase(ProvisioningMetrics.Phase.WIFI_LIST, false);
+        for (SunmiPrinterClient.IPrinterClient listener : listeners) {
+            listener.onGetWifiListFail();
+        }
+    }
+
+    @Override
+    public void onSetWifiSuccess() {
+        for (SunmiPrinterClient.IPrinterClient listener : listeners) {
+            listener.onSetWifiSuccess();
+        }
+    }
+
+    @Override
+    public void wifiConfigSuccess() {
+        finishPhase(ProvisioningMetrics.Phase.WIFI_CONFIG, true);
+        for (SunmiPrinterClient.IPrinterClient listener : listeners) {
+            listener.wifiConfigSuccess();
+        }
+    }
+
+    @Override
+    public void onWifiConfigFail() {
+        finishPhase(ProvisioningMetrics.Phase.WIFI_CONFIG, false);
+        for (SunmiPrinterClient.IPrinterClient listener : listeners) {
+            listener.onWifiConfigFail();
+        }
+    }
+
+    @Override
+    public void sendDataFail(int code, String msg) {
+        // The link may be gone; make the next user redo the handshake instead of trusting it.
+        serialNumber = null;
+        failPendingPhases();
+        for (SunmiPrinterClient.IPrinterClient listener : listeners) {
+            listener.sendDataFail(code, msg);
+        }
+    }
+
+    @Override
+    public void getSnRequestSuccess() {
+        for (SunmiPrinterClient.IPrinterClient listener : listeners) {
+            listener.getSnRequestSuccess();
+        }
+    }
+
+    @Override
+    public void onSnReceived(String sn) {
+        serialNumber = sn == null ? "" : sn;
+        finishPhase(ProvisioningMetrics.Phase.HANDSHAKE, true);
+        for (SunmiPrinterClient.IPrinterClient listener : listeners) {
+            listener.onSnReceived(sn);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.sunmi.printerconfig;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.sunmi.cloudprinter.presenter.SunmiPrinterClient;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * App-scoped owner of one {@link PrinterSession} per printer address.
+ *
+ * <p>Sessions are reference-counted so the BLE link and the {@code getPrinterSn} handshake survive the
+ * hand-off from {@link MainActivity} to {@link WifiConfigActivity}. When the last user releases a
+ * session it stays connected for an idle grace period ({@link #setIdleGracePeriodMs}), then is
+ * disconnected. The SDK client cannot be
+ * reused after {@code disconnect}, so a torn-down session is never handed out again.
+ */
+public final class PrinterSessionManager {
+    static final long DEFAULT_IDLE_GRACE_PERIOD_MS = 30_000;
+    private static final String SETTINGS_PREFS = "settings";
+    private static final String SETTING_SCAN_BACKEND = "scan_backend";
+
+    private static PrinterSessionManager instance;
+
+    private final ReceiverSafeContext context;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, PrinterSession> sessions = new HashMap<>();
+    private final Map<String, Runnable> pendingTeardowns = new HashMap<>();
+    private final PhaseTimeoutPolicy timeoutPolicy;
+    private PrinterTransport.Factory transportFactory = SdkPrinterTransport.FACTORY;
+    private ScanBackend scanBackend;
+    private int transportGeneration = 0;
+    private long idleGracePeriodMs = DEFAULT_IDLE_GRACE_PERIOD_MS;
+
+    private PrinterSessionManager(Context context) {
+        this.context = new ReceiverSafeContext(context.getApplicationContext());
+        scanBackend = ScanBackend.fromName(settings().getString(SETTING_SCAN_BACKEND, null));
+        timeoutPolicy = PhaseTimeoutPolicy.getInstance(this.context);
+    }
+
+    public static synchronized PrinterSessionManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new PrinterSessionManager(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Learns from every session's completed phases; ask it for the timeout of each request.
+     */
+    public PhaseTimeoutPolicy getTimeoutPolicy() {
+        return timeoutPolicy;
+    }
+
+    /**
+     * Replaces the transport for sessions and scanners created from now on, for example with a fake
+     * in automated runs. Sessions in use keep theirs; idle ones waiting out their grace period are
+     * torn down now, so the next acquire of that printer does not reconnect over the old transport.
+     */
+    public synchronized void setTransportFactory(PrinterTransport.Factory transportFactory) {
+        this.transportFactory = transportFactory == null ? SdkPrinterTransport.FACTORY : transportFactory;
+        transportGeneration++;
+        for (Map.Entry<String, Runnable> pending : pendingTeardowns.entrySet()) {
+            handler.removeCallbacks(pending.getValue());
+            PrinterSession session = sessions.remove(pending.getKey());
+            if (session != null) {
+                handler.post(session::disconnect);
+            }
+        }
+        pendingTeardowns.clear();
+    }
+
+    /**
+     * How long a session nobody uses stays connected, in case the same printer is opened again. Applies
+     * to sessions released from now on; 0 disconnects them as soon as the main thread gets to it.
+     */
+    public synchronized void setIdleGracePeriodMs(long idleGracePeriodMs) {
+        this.idleGracePeriodMs = Math.max(0, idleGracePeriodMs);
+    }
+
+    public synchronized long getIdleGracePeriodMs() {
+        return idleGracePeriodMs;
+    }
+
+    public synchronized boolean isUsingSdkTransport() {
+        return transportFactory == SdkPrinterTransport.FACTORY;
+    }
+
+    /**
+     * Changes whenever the transport factory or scan backend does, so long-lived scanners know to
+     * rebuild their transport.
+     */
+    public synchronized int getTransportGeneration() {
+        return transportGeneration;
+    }
+
+    /**
+     * A new transport reporting to {@code callbacks}; every printer-facing client in the app is made here,
+     * and each is recorded in {@link SdkCallTrace}.
+     */
+    public synchronized PrinterTransport createTransport(SunmiPrinterClient.IPrinterClient callbacks) {
+        PrinterTransport.Factory factory = transportFactory;
+        return TracingPrinterTransport.wrap(callbacks, traced -> factory.create(context, traced));
+    }
+
+    /**
+     * Chooses where scanners created from now on get their results, and remembers the choice across
+     * restarts. Scans already running keep their backend.
+     */
+    public synchronized void setScanBackend(ScanBackend scanBackend) {
+        this.scanBackend = scanBackend;
+        transportGeneration++;
+        settings().edit().putString(SETTING_SCAN_BACKEND, scanBackend.name()).apply();
+    }
+
+    public synchronized ScanBackend getScanBackend() {
+        return scanBackend;
+    }
+
+    /**
+     * A transport to scan with, reporting to {@code callbacks}. With a platform backend selected it is
+     * a {@link PlatformScanTransport}; otherwise, and whenever the transport factory has been replaced
+     * so fakes see scans too, it is a printer transport from the factory like any other.
+     */
+    public synchronized ScanTransport createScanTransport(PrinterClientCallbacks callbacks) {
+        if (scanBackend.isPlatform() && isUsingSdkTransport()) {
+            ScanBackend backend = scanBackend;
+            return TracingPrinterTransport.wrapScanner(callbacks, traced -> new PlatformScanTransport(context, traced, backend));
+        }
+        return createTransport(callbacks);
+    }
+
+    private SharedPreferences settings() {
+        return context.getSharedPreferences(SETTINGS_PREFS, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Returns the session for {@code address}, creating it if needed, and subscribes {@code listener}
+     * to its callbacks. Every call must be balanced by a release on the returned session.
+     */
+    public synchronized PrinterSession acquire(String address, SunmiPrinterClient.IPrinterClient listener) {
+        Runnable teardown = pendingTeardowns.remove(address);
+        if (teardown != null) {
+            handler.removeCallbacks(teardown);
+        }
+
+        PrinterSession session = sessions.get(address);
+        if (session == null) {
+            session = new PrinterSession(this, address);
+            sessions.put(address, session);
+        }
+        session.refCount++;
+        session.addListener(listener);
+        return session;
+    }
+
+    public synchronized PrinterSession peek(String address) {
+        return sessions.get(address);
+    }
+
+    synchronized void release(PrinterSession session, SunmiPrinterClient.IPrinterClient listener, boolean disconnectNow) {
+        if (sessions.get(session.getAddress()) != session || session.refCount == 0) {
+            return;
+        }
+        session.removeListener(listener);
+        session.refCount--;
+        if (session.refCount > 0) {
+            return;
+        }
+        // A later user must not inherit the start of a request it never made.
+        session.failPendingPhases();
+
+        if (disconnectNow) {
+            sessions.remove(session.getAddress());
+            handler.post(session::disconnect);
+            return;
+        }
+
+        Runnable teardown = () -> tearDownIfIdle(session);
+        pendingTeardowns.put(session.getAddress(), teardown);
+        handler.postDelayed(teardown, idleGracePeriodMs);
+    }
+
+    private void tearDownIfIdle(PrinterSession session) {
+        synchronized (this) {
+            pendingTeardowns.remove(session.getAddress());
+            if (session.refCount > 0 || sessions.get(session.getAddress()) != session) {
+                return;
+            }
+            sessions.remove(session.getAddress());
+        }
+        session.disconnect();
+    }
+}
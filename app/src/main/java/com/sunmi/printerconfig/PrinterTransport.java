@@ -0,0 +1,25 @@
+package com.sunmi.printerconfig;
+
+import com.sunmi.cloudprinter.presenter.SunmiPrinterClient;
+
+/**
+ * The printer requests the app makes. Results come back through the
+ * {@link SunmiPrinterClient.IPrinterClient} the transport was created with, exactly as the SDK
+ * reports them, so callers cannot tell a real printer from a fake one.
+ */
+public interface PrinterTransport extends ScanTransport {
+    interface Factory {
+        PrinterTransport create(ReceiverSafeContext context, SunmiPrinterClient.IPrinterClient callbacks);
+    }
+
+    void getPrinterSn(String address);
+
+    void getPrinterWifiList(String address);
+
+    void setPrinterWifi(String address, byte[] essid, String password);
+
+    /**
+     * Drops the link to {@code address}. The transport cannot be used for it afterwards.
+     */
+    void disconnect(String address);
+}
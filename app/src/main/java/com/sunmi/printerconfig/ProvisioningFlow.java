@@ -0,0 +1,967 @@
+package com.sunmi.printerconfig;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.os.Trace;
+
+import com.sunmi.cloudprinter.bean.PrinterDevice;
+import com.sunmi.cloudprinter.bean.Router;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The single-printer provisioning flow as one explicit state machine:
+ * {@code IDLE -> SCANNING -> CONNECTING -> LISTING_WIFI -> READY -> CONFIGURING -> VERIFYING -> DONE},
+ * with {@code FAILED} reachable from every active state.
+ *
+ * <p>All flow state is confined to one worker thread. Commands from the screens and SDK callbacks are
+ * posted to it, and every timer of the flow (scan checks, handshake, Wi-Fi list and Wi-Fi push
+ * timeouts, retry delays, the reachability deadline) runs on its handler. Screens never touch that state; they observe immutable
+ * {@link Snapshot}s delivered on the main thread, where only the latest one is delivered if several
+ * pile up within a frame.
+ */
+public final class ProvisioningFlow {
+    // Defaults until PhaseTimeoutPolicy has learned how long these take; BulkProvisioningQueue uses
+    // them too.
+    static final long PRINTER_CONNECTION_TIMEOUT_MS = 10_000;
+    static final long WIFI_LIST_TIMEOUT_MS = 15_000;
+    static final long WIFI_CONFIG_TIMEOUT_MS = 25_000;
+    // Most printers join, get an address and start the print server within this. Advisory only: a
+    // printer not seen by then is still reported configured, with a note.
+    private static final long REACHABILITY_TIMEOUT_MS = 20_000;
+
+    public enum State {
+        IDLE,
+        SCANNING,
+        CONNECTING,
+        LISTING_WIFI,
+        // Connected with the network list shown; waiting for the user to pick one.
+        READY,
+        CONFIGURING,
+        // Credentials accepted; waiting for the printer to show up on the LAN.
+        VERIFYING,
+        DONE,
+        FAILED
+    }
+
+    public interface Observer {
+        void onFlowSnapshot(Snapshot snapshot);
+    }
+
+    /**
+     * Immutable view of the flow, built on the worker thread.
+     */
+    public static final class Snapshot {
+        private final State state;
+        private final State failedState;
+        private final int attemptId;
+        private final String printerAddress;
+        private final String serialNumber;
+        private final String message;
+        private final List<Router> routers;
+        private final int routerGeneration;
+        private final boolean wifiListFailed;
+        private final boolean wifiPushAcknowledged;
+        private final int retryAttempt;
+        private final int retryMaxAttempts;
+        private final long timeToOnlineMs;
+        private final String lanHost;
+
+        private Snapshot(ProvisioningFlow flow) {
+            state = flow.state;
+            failedState = flow.failedState;
+            attemptId = flow.attemptId;
+            printerAddress = flow.printerAddress;
+            serialNumber = flow.serialNumber;
+            message = flow.message;
+            routers = Collections.unmodifiableList(new ArrayList<>(flow.receivedRouters));
+            routerGeneration = flow.routerGeneration;
+            wifiListFailed = flow.wifiListFailed;
+            wifiPushAcknowledged = flow.wifiPushAcknowledged;
+            retryAttempt = flow.retryAttempt;
+            retryMaxAttempts = flow.retryMaxAttempts;
+            timeToOnlineMs = flow.timeToOnlineMs;
+            lanHost = flow.lanHost;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * The state the flow was in when it moved to {@link State#FAILED}; null otherwise.
+         */
+        public State getFailedState() {
+            return failedState;
+        }
+
+        /**
+         * Id of the attempt the flow is currently serving, as returned by {@link #startScan} or
+         * {@link #connect}, so an observer can tell its own attempt from an earlier one. Opening a printer
+         * that is not already the flow's printer also starts a new attempt.
+         */
+        public int getAttemptId() {
+            return attemptId;
+        }
+
+        /**
+         * Printer the flow is working with, or null while idle or scanning.
+         */
+        public String getPrinterAddress() {
+            return printerAddress;
+        }
+
+        /**
+         * Serial number read by this attempt's handshake, or null if none ran yet.
+         */
+        public String getSerialNumber() {
+            return serialNumber;
+        }
+
+        /**
+         * User-facing failure text for {@link State#FAILED}, or for {@link State#DONE} a note that the
+         * printer was not seen on the LAN; null otherwise.
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * Every router reported for the current printer, in arrival order and including duplicates.
+         * The list only grows until {@link #getRouterGeneration} changes.
+         */
+        public List<Router> getRouters() {
+            return routers;
+        }
+
+        public int getRouterGeneration() {
+            return routerGeneration;
+        }
+
+        public boolean isWifiListFailed() {
+            return wifiListFailed;
+        }
+
+        /**
+         * True once the printer has accepted the credentials and is joining the network.
+         */
+        public boolean isWifiPushAcknowledged() {
+            return wifiPushAcknowledged;
+        }
+
+        /**
+         * Attempt number of the retry in progress for the current state, or 0 on the first attempt.
+         */
+        public int getRetryAttempt() {
+            return retryAttempt;
+        }
+
+        public int getRetryMaxAttempts() {
+            return retryMaxAttempts;
+        }
+
+        /**
+         * Milliseconds from {@code wifiConfigSuccess} until the printer answered on its print port, or -1
+         * if that was not verified.
+         */
+        public long getTimeToOnlineMs() {
+            return timeToOnlineMs;
+        }
+
+        /**
+         * LAN address the printer answered on, or null if that was not verified.
+         */
+        public String getLanHost() {
+            return lanHost;
+        }
+    }
+
+    private static ProvisioningFlow instance;
+
+    private final Context context;
+    private final PrinterSessionManager sessionManager;
+    private final Handler timers;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Observer> observers = new CopyOnWriteArrayList<>();
+    private final AtomicReference<Snapshot> latestSnapshot = new AtomicReference<>();
+    private final AtomicBoolean deliveryScheduled = new AtomicBoolean(false);
+    private final AtomicInteger nextAttemptId = new AtomicInteger();
+    private volatile PrinterLocator.Factory locatorFactory = NsdPrinterLocator.FACTORY;
+
+    // Worker-thread state.
+    private State state = State.IDLE;
+    private State failedState;
+    private String message;
+    private ScanTransport scanClient;
+    private int scanClientGeneration;
+    private volatile DiscoveryPipeline discoveryPipeline;
+    private ScanTerminationPolicy scanPolicy;
+    private long scanStartedAtMs;
+    private boolean firstDeviceRecorded = false;
+
+    private int attemptId = 0;
+    private String printerAddress;
+    private String printerAdvertisedName;
+    private String serialNumber;
+    private PrinterSession session;
+    private SessionCallbacks sessionCallbacks;
+    private RetryingCall handshakeCall;
+    private RetryingCall wifiListCall;
+    private RetryingCall wifiConfigCall;
+    private final List<Router> receivedRouters = new ArrayList<>();
+    private final RouterIndex routerIndex;
+    private int routerGeneration = 0;
+    private boolean wifiListFailed = false;
+    private boolean wifiPushAcknowledged = false;
+    private String pendingSsid;
+    private int retryAttempt = 0;
+    private int retryMaxAttempts = 0;
+    private boolean listNetworks = true;
+    private ReachabilityVerifier reachabilityVerifier;
+    private long verificationStartedAtMs;
+    private long timeToOnlineMs = -1;
+    private String lanHost;
+
+    private final Runnable scanCheckRunnable = this::checkScan;
+    private final Runnable deliverRunnable = this::deliver;
+
+    private final RetryingCall.Listener handshakeRetryListener = new CallListener(State.CONNECTING) {
+        @Override
+        public void onGaveUp(RetryingCall.Failure failure) {
+            handshakeCall = null;
+            giveUpPhase(ProvisioningMetrics.Phase.HANDSHAKE);
+            fail(State.CONNECTING, describeHandshakeFailure(failure));
+            // A failed link is not worth keeping warm; the next tap starts a fresh session.
+            releaseSession(true);
+            publish();
+        }
+    };
+
+    private final RetryingCall.Listener wifiListRetryListener = new CallListener(State.LISTING_WIFI) {
+        @Override
+        public void onGaveUp(RetryingCall.Failure failure) {
+            wifiListFailed = true;
+            giveUpPhase(ProvisioningMetrics.Phase.WIFI_LIST);
+            if (state == State.LISTING_WIFI) {
+                moveTo(State.READY);
+            }
+            publish();
+        }
+    };
+
+    private final ReachabilityVerifier.Listener reachabilityListener = new ReachabilityVerifier.Listener() {
+        @Override
+        public void onReachable(InetSocketAddress address, long elapsedMs) {
+            reachabilityVerifier = null;
+            ProvisioningMetrics.getInstance().record(ProvisioningMetrics.Phase.TIME_TO_ONLINE, verificationStartedAtMs, true);
+            timeToOnlineMs = elapsedMs;
+            lanHost = address.getHostString();
+            releaseSession(false);
+            moveTo(State.DONE);
+            publish();
+        }
+
+        @Override
+        public void onUnreachable() {
+            reachabilityVerifier = null;
+            ProvisioningMetrics.getInstance().record(ProvisioningMetrics.Phase.TIME_TO_ONLINE, verificationStartedAtMs, false);
+            // The printer already confirmed the credentials. Not seeing it is no proof it failed: mDNS may
+            // be filtered, the phone may be on another VLAN, or the printer may still be joining. So say
+            // so, but succeed.
+            releaseSession(false);
+            moveTo(State.DONE);
+            message = context.getString(R.string.printer_not_seen_yet, REACHABILITY_TIMEOUT_MS / 1000);
+            publish();
+        }
+    };
+
+    private final RetryingCall.Listener wifiConfigRetryListener = new CallListener(State.CONFIGURING) {
+        @Override
+        public void onGaveUp(RetryingCall.Failure failure) {
+            giveUpPhase(ProvisioningMetrics.Phase.WIFI_CONFIG);
+            fail(State.CONFIGURING, describeConfigurationFailure(failure));
+            publish();
+        }
+    };
+
+    private ProvisioningFlow(Context context) {
+        this.context = context.getApplicationContext();
+        sessionManager = PrinterSessionManager.getInstance(this.context);
+        routerIndex = new RouterIndex(this.context.getString(R.string.unknown_device));
+        HandlerThread workerThread = new HandlerThread("provisioning-flow");
+        workerThread.start();
+        timers = new Handler(workerThread.getLooper());
+        latestSnapshot.set(new Snapshot(this));
+    }
+
+    public static synchronized ProvisioningFlow getInstance(Context context) {
+        if (instance == null) {
+            instance = new ProvisioningFlow(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Creates the SDK scan client in the background so the first scan does not pay for it. Call once
+     * Bluetooth permissions are granted; later calls do nothing.
+     */
+    public void warmUp() {
+        timers.post(() -> {
+            if (scanClient != null) {
+                return;
+            }
+            Trace.beginSection("ProvisioningFlow.warmUp");
+            try {
+                scanClient();
+            } finally {
+                Trace.endSection();
+            }
+            ProvisioningMetrics.getInstance().recordStartupMilestone("scan_client_ready");
+        });
+    }
+
+    /**
+     * Replaces how a freshly configured printer is looked for on the LAN. A factory returning null skips
+     * the check, so the flow moves straight from {@link State#CONFIGURING} to {@link State#DONE}. A null
+     * factory restores the mDNS lookup.
+     */
+    public void setLocatorFactory(PrinterLocator.Factory factory) {
+        locatorFactory = factory == null ? NsdPrinterLocator.FACTORY : factory;
+    }
+
+    /**
+     * Subscribes {@code observer} and immediately delivers the current snapshot. Main thread only.
+     */
+    public void addObserver(Observer observer) {
+        if (!observers.contains(observer)) {
+            observers.add(observer);
+        }
+        observer.onFlowSnapshot(latestSnapshot.get());
+    }
+
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    /**
+     * The most recently published snapshot. Safe to call from any thread.
+     */
+    public Snapshot getSnapshot() {
+        return latestSnapshot.get();
+    }
+
+    /**
+     * Abandons whatever the flow was doing and scans, feeding results into {@code pipeline} until
+     * {@code policy} decides the scan has seen enough.
+     *
+     * @return the attempt id that snapshots of this scan will carry
+     */
+    public int startScan(DiscoveryPipeline pipeline, ScanTerminationPolicy policy) {
+        int id = nextAttemptId.incrementAndGet();
+        timers.post(() -> {
+            stopScanning();
+            abandonPrinter();
+            attemptId = id;
+            discoveryPipeline = pipeline;
+            scanPolicy = policy;
+            scanStartedAtMs = ProvisioningMetrics.now();
+            firstDeviceRecorded = false;
+            scanPolicy.onScanStarted(SystemClock.elapsedRealtime());
+            try {
+                scanClient().startScan();
+                moveTo(State.SCANNING);
+                scheduleScanCheck();
+            } catch (Throwable t) {
+                discoveryPipeline = null;
+                fail(State.SCANNING, context.getString(R.string.error, context.getString(R.string.printer_scan_failed)));
+            }
+            publish();
+        });
+        return id;
+    }
+
+    public void stopScan() {
+        timers.post(() -> {
+            if (state == State.SCANNING) {
+                stopScanning();
+                moveTo(State.IDLE);
+                publish();
+            }
+        });
+    }
+
+    /**
+     * Lets the scan policy see what the screen shows. Safe to call from any thread.
+     */
+    public void onDiscoverySnapshot(DiscoverySnapshot snapshot) {
+        timers.post(() -> {
+            if (state != State.SCANNING) {
+                return;
+            }
+            if (snapshot.getLiveCount() > 0 && !firstDeviceRecorded) {
+                firstDeviceRecorded = true;
+                ProvisioningMetrics.getInstance().record(ProvisioningMetrics.Phase.SCAN_FIRST_DEVICE, scanStartedAtMs, true);
+            }
+            scanPolicy.onSnapshot(snapshot, SystemClock.elapsedRealtime());
+            scheduleScanCheck();
+        });
+    }
+
+    /**
+     * Stops any scan and runs the {@code getPrinterSn} handshake with {@code address}, then lists its
+     * networks unless {@code listNetworks} is false.
+     *
+     * @param handshakePending true when {@code getPrinterSn} is already outstanding on this printer's
+     *                         session (for example from a speculative handshake); its result is awaited
+     *                         instead of sending another request
+     * @return the attempt id that snapshots of this attempt will carry
+     */
+    public int connect(String address, String advertisedName, boolean handshakePending, boolean listNetworks) {
+        int id = nextAttemptId.incrementAndGet();
+        // Acquired on the caller's thread so a session being handed over is never left unreferenced.
+        SessionCallbacks callbacks = new SessionCallbacks();
+        PrinterSession acquired = sessionManager.acquire(address, callbacks);
+        timers.post(() -> {
+            stopScanning();
+            abandonPrinter();
+            attach(id, address, advertisedName, acquired, callbacks);
+            this.listNetworks = listNetworks;
+            if (acquired.isHandshakeComplete()) {
+                // Still connected from a recent visit; the handshake does not need repeating.
+                onHandshakeComplete(acquired.getSerialNumber());
+                publish();
+                return;
+            }
+
+            moveTo(State.CONNECTING);
+            handshakeCall = new RetryingCall(
+                address,
+                "getPrinterSn",
+                RetryPolicy.defaults(),
+                phaseTimeoutMs(ProvisioningMetrics.Phase.HANDSHAKE, PRINTER_CONNECTION_TIMEOUT_MS),
+                timers,
+                acquired::requestSerialNumber,
+                handshakeRetryListener
+            );
+            handshakeCall.start(handshakePending);
+            publish();
+        });
+        return id;
+    }
+
+    /**
+     * Makes {@code address} the flow's printer without a handshake, or, if it already is, refreshes its
+     * network list when the cached copy has expired.
+     */
+    public void openPrinter(String address) {
+        timers.post(() -> {
+            if (address.equals(printerAddress) && session != null) {
+                if (state == State.READY) {
+                    RouterListCache.Entry cached = RouterListCache.getInstance().get(address);
+                    if (cached == null || !cached.isFresh()) {
+                        requestWifiList();
+                        publish();
+                    }
+                }
+                return;
+            }
+
+            stopScanning();
+            abandonPrinter();
+            SessionCallbacks callbacks = new SessionCallbacks();
+            attach(nextAttemptId.incrementAndGet(), address, null, sessionManager.acquire(address, callbacks), callbacks);
+            listNetworks = true;
+            loadNetworks();
+            publish();
+        });
+    }
+
+    /**
+     * Pushes Wi-Fi credentials to the current printer.
+     *
+     * @return false, with nothing sent, unless the latest snapshot shows {@code address} connected with
+     *         no push running. If the flow moves on before the push starts, the push is dropped and the
+     *         flow's current state is published again.
+     */
+    public boolean configure(String address, byte[] essid, String password, String ssidLabel) {
+        Snapshot latest = latestSnapshot.get();
+        if (!address.equals(latest.getPrinterAddress()) || !isIdleOnPrinter(latest.getState())) {
+            return false;
+        }
+        timers.post(() -> {
+            if (session == null || !address.equals(printerAddress) || !isIdleOnPrinter(state)) {
+                publish();
+                return;
+            }
+
+            pendingSsid = ssidLabel;
+            wifiPushAcknowledged = false;
+            timeToOnlineMs = -1;
+            lanHost = null;
+            moveTo(State.CONFIGURING);
+            PrinterSession current = session;
+            wifiConfigCall = new RetryingCall(
+                address,
+                "setPrinterWifi",
+                RetryPolicy.defaults(),
+                phaseTimeoutMs(ProvisioningMetrics.Phase.WIFI_CONFIG, WIFI_CONFIG_TIMEOUT_MS),
+                timers,
+                () -> current.setWifi(essid, password),
+                wifiConfigRetryListener
+            );
+            wifiConfigCall.start();
+            publish();
+        });
+        return true;
+    }
+
+    /**
+     * Lets go of {@code address} if it is the flow's printer and returns to idle. The BLE link stays
+     * up for the session manager's grace period.
+     */
+    public void close(String address) {
+        timers.post(() -> {
+            if (address == null || !address.equals(printerAddress)) {
+                return;
+            }
+            abandonPrinter();
+            moveTo(State.IDLE);
+            publish();
+        });
+    }
+
+    private static boolean isIdleOnPrinter(State state) {
+        return state == State.LISTING_WIFI || state == State.READY || state == State.FAILED;
+    }
+
+    private void moveTo(State next) {
+        state = next;
+        failedState = null;
+        message = null;
+        retryAttempt = 0;
+        retryMaxAttempts = 0;
+    }
+
+    private void fail(State from, String failureMessage) {
+        moveTo(State.FAILED);
+        failedState = from;
+        message = failureMessage;
+    }
+
+    // Rebuilt when the scan backend or transport was switched since the last scan.
+    private ScanTransport scanClient() {
+        int generation = sessionManager.getTransportGeneration();
+        if (scanClient == null || scanClientGeneration != generation) {
+            scanClient = sessionManager.createScanTransport(new ScanCallbacks());
+            scanClientGeneration = generation;
+        }
+        return scanClient;
+    }
+
+    private void scheduleScanCheck() {
+        timers.removeCallbacks(scanCheckRunnable);
+        long delay = Math.max(0, scanPolicy.nextCheckAtMs() - SystemClock.elapsedRealtime());
+        timers.postDelayed(scanCheckRunnable, delay);
+    }
+
+    private void checkScan() {
+        if (state != State.SCANNING) {
+            return;
+        }
+        if (scanPolicy.check(SystemClock.elapsedRealtime()) == null) {
+            scheduleScanCheck();
+            return;
+        }
+        stopScanning();
+        moveTo(State.IDLE);
+        publish();
+    }
+
+    private void stopScanning() {
+        timers.removeCallbacks(scanCheckRunnable);
+        if (state != State.SCANNING) {
+            return;
+        }
+        if (!firstDeviceRecorded) {
+            firstDeviceRecorded = true;
+            ProvisioningMetrics.getInstance().record(ProvisioningMetrics.Phase.SCAN_FIRST_DEVICE, scanStartedAtMs, false);
+        }
+        DiscoveryPipeline pipeline = discoveryPipeline;
+        discoveryPipeline = null;
+        if (pipeline != null) {
+            pipeline.stop();
+        }
+        try {
+            scanClient.stopScan();
+        } catch (Throwable ignored) {
+        }
+    }
+
+    private void attach(int id, String address, String advertisedName, PrinterSession acquired, SessionCallbacks callbacks) {
+        attemptId = id;
+        printerAddress = address;
+        printerAdvertisedName = advertisedName;
+        serialNumber = null;
+        session = acquired;
+        sessionCallbacks = callbacks;
+        PrinterModelFamily family = advertisedName == null ? null : PrinterDeviceClassifier.classify(advertisedName);
+        if (family != null) {
+            acquired.setModelFamily(family);
+        }
+        receivedRouters.clear();
+        routerIndex.clear();
+        routerGeneration++;
+        wifiListFailed = false;
+        wifiPushAcknowledged = false;
+        pendingSsid = null;
+        timeToOnlineMs = -1;
+        lanHost = null;
+    }
+
+    private void abandonPrinter() {
+        cancelCalls();
+        releaseSession(false);
+        printerAddress = null;
+        printerAdvertisedName = null;
+        serialNumber = null;
+        receivedRouters.clear();
+        routerIndex.clear();
+        routerGeneration++;
+    }
+
+    private void cancelCalls() {
+        if (handshakeCall != null) {
+            handshakeCall.cancel();
+            handshakeCall = null;
+        }
+        if (wifiListCall != null) {
+            wifiListCall.cancel();
+            wifiListCall = null;
+        }
+        if (wifiConfigCall != null) {
+            wifiConfigCall.cancel();
+            wifiConfigCall = null;
+        }
+        if (reachabilityVerifier != null) {
+            reachabilityVerifier.cancel();
+            reachabilityVerifier = null;
+        }
+    }
+
+    private void giveUpPhase(ProvisioningMetrics.Phase phase) {
+        if (session != null) {
+            session.giveUpPhase(phase);
+        }
+    }
+
+    private void releaseSession(boolean disconnectNow) {
+        if (session == null) {
+            return;
+        }
+        if (disconnectNow) {
+            session.releaseAndDisconnect(sessionCallbacks);
+        } else {
+            session.release(sessionCallbacks);
+        }
+        session = null;
+        sessionCallbacks = null;
+    }
+
+    private void verifyReachability() {
+        String sn = serialNumber != null ? serialNumber : SerialNumberCache.getInstance().get(printerAddress);
+        PrinterLocator locator = locatorFactory.create(context, sn, printerAddress, pendingSsid);
+        if (locator == null) {
+            releaseSession(false);
+            moveTo(State.DONE);
+            return;
+        }
+        moveTo(State.VERIFYING);
+        verificationStartedAtMs = ProvisioningMetrics.now();
+        reachabilityVerifier = new ReachabilityVerifier(timers, locator, REACHABILITY_TIMEOUT_MS);
+        reachabilityVerifier.start(verificationStartedAtMs, reachabilityListener);
+    }
+
+    private void onHandshakeComplete(String sn) {
+        serialNumber = sn;
+        KnownPrinterStore.getInstance(context).recordHandshake(printerAddress, printerAdvertisedName, sn);
+        SerialNumberCache.getInstance().put(printerAddress, sn);
+        if (listNetworks) {
+            loadNetworks();
+        } else {
+            moveTo(State.READY);
+        }
+    }
+
+    // Stale-while-revalidate: a cached list is usable at once; a refresh merges into it if it expired.
+    private void loadNetworks() {
+        RouterListCache.Entry cached = RouterListCache.getInstance().get(printerAddress);
+        if (cached != null) {
+            addRouters(cached.getRouters());
+            if (cached.isFresh()) {
+                moveTo(State.READY);
+                return;
+            }
+        }
+        requestWifiList();
+    }
+
+    private void requestWifiList() {
+        wifiListFailed = false;
+        moveTo(State.LISTING_WIFI);
+        if (wifiListCall != null) {
+            wifiListCall.cancel();
+        }
+        wifiListCall = new RetryingCall(
+            printerAddress,
+            "getPrinterWifiList",
+            RetryPolicy.defaults(),
+            phaseTimeoutMs(ProvisioningMetrics.Phase.WIFI_LIST, WIFI_LIST_TIMEOUT_MS),
+            timers,
+            session::requestWifiList,
+            wifiListRetryListener
+        );
+        wifiListCall.start();
+    }
+
+    private long phaseTimeoutMs(ProvisioningMetrics.Phase phase, long defaultMs) {
+        return sessionManager.getTimeoutPolicy().getTimeoutMs(phase, session.getModelFamily(), defaultMs);
+    }
+
+    private void addRouters(List<Router> routers) {
+        for (Router router : routers) {
+            receivedRouters.add(router);
+            routerIndex.merge(router);
+        }
+    }
+
+    // The SDK does not say which request failed; blame the one in progress.
+    private RetryingCall activeCall() {
+        if (wifiConfigCall != null && wifiConfigCall.isActive()) {
+            return wifiConfigCall;
+        }
+        if (wifiListCall != null && wifiListCall.isActive()) {
+            return wifiListCall;
+        }
+        return handshakeCall != null && handshakeCall.isActive() ? handshakeCall : null;
+    }
+
+    private String describeHandshakeFailure(RetryingCall.Failure failure) {
+        switch (failure.getKind()) {
+            case TIMEOUT:
+                return context.getString(R.string.printer_connection_timeout);
+            case CIRCUIT_OPEN:
+                return describeOpenCircuit();
+            case SEND_DATA_FAIL:
+                if (failure.getMessage() != null) {
+                    return context.getString(R.string.wifi_push_error_with_code, failure.getCode(), failure.getMessage());
+                }
+                return context.getString(R.string.printer_connection_failed);
+            default:
+                return context.getString(R.string.printer_connection_failed);
+        }
+    }
+
+    private String describeConfigurationFailure(RetryingCall.Failure failure) {
+        switch (failure.getKind()) {
+            case TIMEOUT:
+                return context.getString(R.string.printer_wifi_config_timeout);
+            case CIRCUIT_OPEN:
+                return describeOpenCircuit();
+            case SEND_DATA_FAIL:
+                if (failure.getMessage() != null) {
+                    return context.getString(R.string.wifi_push_error_with_code, failure.getCode(), failure.getMessage());
+                }
+                return context.getString(R.string.wifi_push_failed_try_24g);
+            default:
+                return context.getString(R.string.wifi_push_failed_try_24g);
+        }
+    }
+
+    private String describeOpenCircuit() {
+        long seconds = (PrinterCircuitBreaker.getInstance().getRemainingOpenMs(printerAddress) + 999) / 1000;
+        return context.getString(R.string.printer_circuit_open, seconds);
+    }
+
+    private void publish() {
+        latestSnapshot.set(new Snapshot(this));
+        if (deliveryScheduled.compareAndSet(false, true)) {
+            mainHandler.post(deliverRunnable);
+        }
+    }
+
+    private void deliver() {
+        deliveryScheduled.set(false);
+        Snapshot snapshot = latestSnapshot.get();
+        for (Observer observer : observers) {
+            observer.onFlowSnapshot(snapshot);
+        }
+    }
+
+    private abstract class CallListener implements RetryingCall.Listener {
+        private final State owner;
+
+        CallListener(State owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void onRetryScheduled(RetryingCall.Failure failure, int nextAttempt, int maxAttempts, long delayMs) {
+            // A background list refresh must not show its retries over a running Wi-Fi push.
+            if (state == owner) {
+                retryAttempt = nextAttempt;
+                retryMaxAttempts = maxAttempts;
+                publish();
+            }
+        }
+    }
+
+    private final class ScanCallbacks extends PrinterClientCallbacks {
+        @Override
+        public void onPrinterFount(PrinterDevice printerDevice) {
+            DiscoveryPipeline pipeline = discoveryPipeline;
+            if (printerDevice == null || pipeline == null) {
+                return;
+            }
+            String address = printerDevice.getAddress();
+            if (address == null || address.trim().isEmpty()) {
+                return;
+            }
+            pipeline.submit(address, printerDevice.getName());
+        }
+
+        @Override
+        public void onSignalStrength(String address, int rssi) {
+            DiscoveryPipeline pipeline = discoveryPipeline;
+            if (pipeline != null) {
+                pipeline.submitSignalStrength(address, rssi);
+            }
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            timers.post(() -> {
+                if (state != State.SCANNING) {
+                    return;
+                }
+                stopScanning();
+                fail(State.SCANNING, context.getString(R.string.error, context.getString(R.string.printer_scan_failed_code, errorCode)));
+                publish();
+            });
+        }
+    }
+
+    /**
+     * One instance per attached session, so callbacks still queued from an abandoned session are
+     * recognised and dropped.
+     */
+    private final class SessionCallbacks extends PrinterClientCallbacks {
+        private void post(Runnable event) {
+            timers.post(() -> {
+                if (sessionCallbacks == this) {
+                    event.run();
+                }
+            });
+        }
+
+        @Override
+        public void onSnReceived(String sn) {
+            post(() -> {
+                if (state == State.CONNECTING && handshakeCall != null && handshakeCall.isActive()) {
+                    handshakeCall.succeed();
+                    handshakeCall = null;
+                    onHandshakeComplete(sn);
+                    publish();
+                }
+            });
+        }
+
+        @Override
+        public void routerFound(Router router) {
+            post(() -> {
+                addRouters(Collections.singletonList(router));
+                publish();
+            });
+        }
+
+        @Override
+        public void onGetWifiListFinish() {
+            post(() -> {
+                if (wifiListCall == null || !wifiListCall.isActive()) {
+                    return;
+                }
+                wifiListCall.succeed();
+                if (!routerIndex.isEmpty()) {
+                    RouterListCache.getInstance().put(printerAddress, routerIndex.getRouters());
+                }
+                if (state == State.LISTING_WIFI) {
+                    moveTo(State.READY);
+                }
+                publish();
+            });
+        }
+
+        @Override
+        public void onGetWifiListFail() {
+            post(() -> {
+                if (wifiListCall != null) {
+                    wifiListCall.fail(RetryPolicy.FailureKind.WIFI_LIST_FAIL, 0, null);
+                }
+            });
+        }
+
+        @Override
+        public void onSetWifiSuccess() {
+            post(() -> {
+                if (state == State.CONFIGURING) {
+                    wifiPushAcknowledged = true;
+                    publish();
+                }
+            });
+        }
+
+        @Override
+        public void wifiConfigSuccess() {
+            post(() -> {
+                if (wifiConfigCall == null || !wifiConfigCall.isActive()) {
+                    return;
+                }
+                wifiConfigCall.succeed();
+                wifiConfigCall = null;
+                // The name was recorded at handshake time; it may be unknown here.
+                KnownPrinterStore.getInstance(context).recordConfigured(printerAddress, null, pendingSsid);
+                cancelCalls();
+                verifyReachability();
+                publish();
+            });
+        }
+
+        @Override
+        public void onWifiConfigFail() {
+            post(() -> {
+                if (wifiConfigCall != null) {
+                    wifiConfigCall.fail(RetryPolicy.FailureKind.WIFI_CONFIG_FAIL, 0, null);
+                }
+            });
+        }
+
+        @Override
+        public void sendDataFail(int code, String msg) {
+            post(() -> {
+                RetryingCall call = activeCall();
+                if (call != null) {
+                    call.fail(RetryPolicy.FailureKind.SEND_DATA_FAIL, code, msg == null ? "Unknown" : msg);
+                }
+            });
+        }
+    }
+}
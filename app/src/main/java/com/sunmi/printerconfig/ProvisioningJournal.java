@@ -0,0 +1,104 @@
+package com.sunmi.printerconfig;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Append-only, fsync'd record of bulk provisioning progress.
+ *
+ * <p>Each line is {@code epochMillis \t EVENT \t address \t detail}. Replaying the file after a crash
+ * yields the printers already configured so a resumed run skips them. A torn final line left by a
+ * kill mid-write is ignored on replay.
+ */
+public final class ProvisioningJournal {
+    public static final String EVENT_STARTED = "STARTED";
+    public static final String EVENT_CONFIGURED = "CONFIGURED";
+    public static final String EVENT_FAILED = "FAILED";
+
+    private final File file;
+    private final Set<String> configuredAddresses = new HashSet<>();
+    private final Map<String, Integer> failureCounts = new HashMap<>();
+
+    public ProvisioningJournal(File file) {
+        this.file = file;
+    }
+
+    public synchronized void replay() throws IOException {
+        configuredAddresses.clear();
+        failureCounts.clear();
+        if (!file.exists()) {
+            return;
+        }
+
+        try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 4);
+                if (fields.length < 3) {
+                    continue;
+                }
+                apply(fields[1], fields[2]);
+            }
+        }
+    }
+
+    public synchronized void append(String event, String address, String detail) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+
+        String sanitizedDetail = detail == null ? "" : detail.replace('\t', ' ').replace('\n', ' ');
+        String line = System.currentTimeMillis() + "\t" + event + "\t" + address + "\t" + sanitizedDetail + "\n";
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+
+        apply(event, address);
+    }
+
+    private void apply(String event, String address) {
+        if (EVENT_CONFIGURED.equals(event)) {
+            configuredAddresses.add(address);
+        } else if (EVENT_FAILED.equals(event)) {
+            Integer count = failureCounts.get(address);
+            failureCounts.put(address, count == null ? 1 : count + 1);
+        }
+    }
+
+    public synchronized boolean isConfigured(String address) {
+        return configuredAddresses.contains(address);
+    }
+
+    public synchronized Set<String> getConfiguredAddresses() {
+        return Collections.unmodifiableSet(new HashSet<>(configuredAddresses));
+    }
+
+    /**
+     * Failures recorded per address, across every run since the journal was last cleared.
+     */
+    public synchronized Map<String, Integer> getFailureCounts() {
+        return Collections.unmodifiableMap(new HashMap<>(failureCounts));
+    }
+
+    public synchronized void clear() {
+        configuredAddresses.clear();
+        failureCounts.clear();
+        if (file.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.sunmi.printerconfig;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide latency histograms for each provisioning phase, split by outcome.
+ *
+ * <p>Timestamps come from {@link SystemClock#elapsedRealtime()}, which is monotonic and keeps counting
+ * in deep sleep, so wall-clock changes never distort a sample.
+ */
+public final class ProvisioningMetrics {
+    public enum Phase {
+        SCAN_FIRST_DEVICE("scan start -> first device"),
+        HANDSHAKE("getPrinterSn -> onSnReceived"),
+        WIFI_LIST("getPrinterWifiList -> onGetWifiListFinish"),
+        WIFI_CONFIG("setPrinterWifi -> wifiConfigSuccess"),
+        TIME_TO_ONLINE("wifiConfigSuccess -> reachable on LAN");
+
+        private final String description;
+
+        Phase(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private static final int MAX_RETRY_LOG_LINES = 32;
+    // Stand-in for the process start time before API 24, when the platform does not report it.
+    private static final long CLASS_LOADED_AT_MS = SystemClock.elapsedRealtime();
+
+    private static final ProvisioningMetrics INSTANCE = new ProvisioningMetrics();
+
+    private final Map<Phase, LatencyHistogram> successes = new EnumMap<>(Phase.class);
+    private final Map<Phase, LatencyHistogram> failures = new EnumMap<>(Phase.class);
+    private final AtomicLong discoveryEvents = new AtomicLong();
+    private final AtomicLong discoveryFlushes = new AtomicLong();
+    private final AtomicLong retriesScheduled = new AtomicLong();
+    private final AtomicLong recoveredByRetry = new AtomicLong();
+    private final AtomicLong retriesExhausted = new AtomicLong();
+    private final AtomicLong circuitsOpened = new AtomicLong();
+    private final ArrayDeque<String> retryLog = new ArrayDeque<>();
+    private final Map<String, Long> startupMilestones = new LinkedHashMap<>();
+
+    private ProvisioningMetrics() {
+        for (Phase phase : Phase.values()) {
+            successes.put(phase, new LatencyHistogram());
+            failures.put(phase, new LatencyHistogram());
+        }
+    }
+
+    public static ProvisioningMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    public static long now() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    public void record(Phase phase, long startedAtMs, boolean success) {
+        (success ? successes : failures).get(phase).record(now() - startedAtMs);
+    }
+
+    public void recordDiscoveryFlush(int coalescedEvents) {
+        discoveryFlushes.incrementAndGet();
+        discoveryEvents.addAndGet(coalescedEvents);
+    }
+
+    public void recordRetryScheduled(String operation, String failure, int nextAttempt, long delayMs) {
+        retriesScheduled.incrementAndGet();
+        logRetry(String.format(Locale.ROOT, "%s: %s, attempt %d in %d ms", operation, failure, nextAttempt, delayMs));
+    }
+
+    public void recordRetryOutcome(String operation, int attempts, boolean success) {
+        if (success && attempts > 1) {
+            recoveredByRetry.incrementAndGet();
+            logRetry(String.format(Locale.ROOT, "%s: recovered after %d attempts", operation, attempts));
+        } else if (!success) {
+            retriesExhausted.incrementAndGet();
+            logRetry(String.format(Locale.ROOT, "%s: gave up after %d attempts", operation, attempts));
+        }
+    }
+
+    public void recordCircuitOpened(String address) {
+        circuitsOpened.incrementAndGet();
+        logRetry("circuit opened for " + address);
+    }
+
+    /**
+     * Records how long after process start {@code milestone} was reached. Only the first time counts,
+     * so later activity launches in a warm process do not overwrite the cold-start figures.
+     */
+    public void recordStartupMilestone(String milestone) {
+        long sinceStart = now() - processStartMs();
+        synchronized (startupMilestones) {
+            if (!startupMilestones.containsKey(milestone)) {
+                startupMilestones.put(milestone, sinceStart);
+            }
+        }
+    }
+
+    /**
+     * Milliseconds after process start at which {@code milestone} was first reached, or -1 if it has not been.
+     */
+    long getStartupMilestoneMs(String milestone) {
+        synchronized (startupMilestones) {
+            Long sinceStart = startupMilestones.get(milestone);
+            return sinceStart == null ? -1 : sinceStart;
+        }
+    }
+
+    private static long processStartMs() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return Process.getStartElapsedRealtime();
+        }
+        return CLASS_LOADED_AT_MS;
+    }
+
+    private void logRetry(String line) {
+        synchronized (retryLog) {
+            if (retryLog.size() == MAX_RETRY_LOG_LINES) {
+                retryLog.removeFirst();
+            }
+            retryLog.addLast(now() + " " + line);
+        }
+    }
+
+    public LatencyHistogram getHistogram(Phase phase, boolean success) {
+        return (success ? successes : failures).get(phase);
+    }
+
+    public void reset() {
+        for (Phase phase : Phase.values()) {
+            successes.get(phase).reset();
+            failures.get(phase).reset();
+        }
+        discoveryEvents.set(0);
+        discoveryFlushes.set(0);
+        retriesScheduled.set(0);
+        recoveredByRetry.set(0);
+        retriesExhausted.set(0);
+        circuitsOpened.set(0);
+        synchronized (retryLog) {
+            retryLog.clear();
+        }
+    }
+
+    /**
+     * Human-readable summary followed by raw bucket counts, suitable for export.
+     */
+    public String buildReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "%-18s %6s %6s %7s %7s %7s %7s%n",
+            "phase", "ok", "fail", "p50", "p95", "p99", "max"));
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram ok = successes.get(phase);
+            report.append(String.format(Locale.ROOT, "%-18s %6d %6d %7d %7d %7d %7d%n",
+                phase.name().toLowerCase(Locale.ROOT),
+                ok.getCount(),
+                failures.get(phase).getCount(),
+                ok.getPercentileMs(50),
+                ok.getPercentileMs(95),
+                ok.getPercentileMs(99),
+                ok.getMaxMs()));
+        }
+        report.append("(successful samples, milliseconds)\n");
+
+        long flushes = discoveryFlushes.get();
+        report.append(String.format(Locale.ROOT, "%ndiscovery: %d events in %d flushes (%.1f per flush)%n",
+            discoveryEvents.get(), flushes, flushes == 0 ? 0d : discoveryEvents.get() / (double) flushes));
+        report.append(String.format(Locale.ROOT, "retries: %d scheduled, %d recovered, %d gave up, %d circuits opened%n",
+            retriesScheduled.get(), recoveredByRetry.get(), retriesExhausted.get(), circuitsOpened.get()));
+        synchronized (retryLog) {
+            for (String line : retryLog) {
+                report.append("  ").append(line).append('\n');
+            }
+        }
+        synchronized (startupMilestones) {
+            report.append("startup (ms since process start):");
+            for (Map.Entry<String, Long> milestone : startupMilestones.entrySet()) {
+                report.append(' ').append(milestone.getKey()).append('=').append(milestone.getValue());
+            }
+            report.append('\n');
+        }
+
+        for (Phase phase : Phase.values()) {
+            report.append("\n# ").append(phase.name().toLowerCase(Locale.ROOT))
+                .append(": ").append(phase.getDescription()).append('\n');
+            report.append("outcome,upper_bound_ms,count\n");
+            appendBuckets(report, "ok", successes.get(phase));
+            appendBuckets(report, "fail", failures.get(phase));
+        }
+        return report.toString();
+    }
+
+    private static void appendBuckets(StringBuilder report, String outcome, LatencyHistogram histogram) {
+        StringBuilder buckets = new StringBuilder();
+        histogram.appendBuckets(buckets);
+        for (String line : buckets.toString().split("\n")) {
+            if (!line.isEmpty()) {
+                report.append(outcome).append(',').append(line).append('\n');
+            }
+        }
+    }
+}
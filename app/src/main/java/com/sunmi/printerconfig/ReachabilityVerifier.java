@@ -0,0 +1,146 @@
+package com.sunmi.printerconfig;
+
+import android.os.Handler;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Confirms that a printer which accepted Wi-Fi credentials actually came online: addresses reported by
+ * a {@link PrinterLocator} are probed with a TCP connect to the print port until one accepts or the
+ * deadline passes.
+ *
+ * <p>State lives on the caller's {@link Handler}; the blocking connects run on a private thread and
+ * their results are posted back. Single-use.
+ */
+final class ReachabilityVerifier {
+    static final int PRINT_PORT = 9100;
+    private static final int CONNECT_TIMEOUT_MS = 2_000;
+    private static final long RETRY_INTERVAL_MS = 1_500;
+
+    interface Listener {
+        void onReachable(InetSocketAddress address, long timeToOnlineMs);
+
+        void onUnreachable();
+    }
+
+    private final Handler handler;
+    private final PrinterLocator locator;
+    private final long timeoutMs;
+    private final ExecutorService probeExecutor = Executors.newSingleThreadExecutor();
+    private final Set<InetSocketAddress> candidates = new LinkedHashSet<>();
+
+    private Listener listener;
+    private long startedAtMs;
+    private boolean probing = false;
+    private int probedCount = 0;
+    private boolean finished = false;
+
+    private final Runnable probeRunnable = this::probeCandidates;
+    private final Runnable deadlineRunnable = this::onDeadline;
+
+    ReachabilityVerifier(Handler handler, PrinterLocator locator, long timeoutMs) {
+        this.handler = handler;
+        this.locator = locator;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * @param startedAtMs when the printer acknowledged the credentials; time to online counts from here
+     */
+    void start(long startedAtMs, Listener listener) {
+        this.startedAtMs = startedAtMs;
+        this.listener = listener;
+        handler.postDelayed(deadlineRunnable, timeoutMs);
+        try {
+            locator.start(address -> handler.post(() -> onCandidate(address)));
+        } catch (RuntimeException e) {
+            // Discovery is unavailable; the deadline reports the printer as unreachable.
+        }
+    }
+
+    void cancel() {
+        if (!finished) {
+            finish();
+        }
+    }
+
+    private void onCandidate(InetSocketAddress address) {
+        if (finished || !candidates.add(address)) {
+            return;
+        }
+        handler.removeCallbacks(probeRunnable);
+        probeCandidates();
+    }
+
+    private void probeCandidates() {
+        if (finished || probing || candidates.isEmpty()) {
+            return;
+        }
+        probing = true;
+        List<InetSocketAddress> round = new ArrayList<>(candidates);
+        probedCount = round.size();
+        probeExecutor.execute(() -> {
+            InetSocketAddress reached = null;
+            for (InetSocketAddress address : round) {
+                if (canConnect(address)) {
+                    reached = address;
+                    break;
+                }
+            }
+            InetSocketAddress result = reached;
+            handler.post(() -> onProbeFinished(result));
+        });
+    }
+
+    private void onProbeFinished(InetSocketAddress reached) {
+        probing = false;
+        if (finished) {
+            return;
+        }
+        if (reached != null) {
+            finish();
+            listener.onReachable(reached, ProvisioningMetrics.now() - startedAtMs);
+        } else if (candidates.size() > probedCount) {
+            probeCandidates();
+        } else {
+            // The printer may be on the network before its print server listens.
+            handler.postDelayed(probeRunnable, RETRY_INTERVAL_MS);
+        }
+    }
+
+    private void onDeadline() {
+        if (finished) {
+            return;
+        }
+        finish();
+        listener.onUnreachable();
+    }
+
+    private void finish() {
+        finished = true;
+        handler.removeCallbacks(probeRunnable);
+        handler.removeCallbacks(deadlineRunnable);
+        probeExecutor.shutdownNow();
+        try {
+            locator.stop();
+        } catch (RuntimeException ignored) {
+        }
+    }
+
+    private static boolean canConnect(InetSocketAddress address) {
+        try (Socket socket = new Socket()) {
+            socket.connect(address, CONNECT_TIMEOUT_MS);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.sunmi.printerconfig;
+
+import java.util.Random;
+
+/**
+ * Decides whether a failed SDK call is worth repeating and how long to wait first.
+ *
+ * <p>Delays grow exponentially from {@code baseDelayMs} up to {@code maxDelayMs} with "equal
+ * jitter": half the step is fixed and half random, so phones retrying the same printer do not
+ * fall into lockstep while every retry still waits at least a little.
+ */
+public final class RetryPolicy {
+    public enum FailureKind {
+        TIMEOUT,
+        SEND_DATA_FAIL,
+        WIFI_LIST_FAIL,
+        WIFI_CONFIG_FAIL,
+        CIRCUIT_OPEN
+    }
+
+    // sendDataFail codes: 0 and 1 come from the SDK's own connect path; the negative ones are
+    // library.Code values from the BLE layer.
+    private static final int CODE_ILLEGAL_ARGUMENT = -3;
+    private static final int CODE_BLE_NOT_SUPPORTED = -4;
+    private static final int CODE_BLUETOOTH_DISABLED = -5;
+    private static final int CODE_REQUEST_DENIED = -9;
+
+    private static final RetryPolicy DEFAULT = new RetryPolicy(3, 2, 1_000, 8_000);
+
+    private final int maxAttempts;
+    private final int maxWifiConfigFailAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+
+    /**
+     * @param maxAttempts               total attempts, including the first, for retryable failures
+     * @param maxWifiConfigFailAttempts cap for {@code onWifiConfigFail}, which usually means wrong
+     *                                  credentials and rarely clears on its own
+     */
+    public RetryPolicy(int maxAttempts, int maxWifiConfigFailAttempts, long baseDelayMs, long maxDelayMs) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.maxWifiConfigFailAttempts = Math.max(1, Math.min(maxWifiConfigFailAttempts, this.maxAttempts));
+        this.baseDelayMs = Math.max(0, baseDelayMs);
+        this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+    }
+
+    public static RetryPolicy defaults() {
+        return DEFAULT;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param attemptsMade attempts already made, including the one that just failed
+     */
+    public boolean shouldRetry(FailureKind kind, int code, int attemptsMade) {
+        switch (kind) {
+            case CIRCUIT_OPEN:
+                return false;
+            case WIFI_CONFIG_FAIL:
+                return attemptsMade < maxWifiConfigFailAttempts;
+            case SEND_DATA_FAIL:
+                if (isPermanent(code)) {
+                    return false;
+                }
+                return attemptsMade < maxAttempts;
+            default:
+                return attemptsMade < maxAttempts;
+        }
+    }
+
+    /**
+     * Conditions a retry cannot fix: the radio is off or unsupported, or the request itself is bad.
+     */
+    public static boolean isPermanent(int sendDataFailCode) {
+        return sendDataFailCode == CODE_ILLEGAL_ARGUMENT
+            || sendDataFailCode == CODE_BLE_NOT_SUPPORTED
+            || sendDataFailCode == CODE_BLUETOOTH_DISABLED
+            || sendDataFailCode == CODE_REQUEST_DENIED;
+    }
+
+    /**
+     * @param attemptsMade attempts already made (1 before the first retry)
+     */
+    public long delayBeforeRetryMs(int attemptsMade, Random random) {
+        int exponent = Math.min(Math.max(attemptsMade - 1, 0), 20);
+        long step = Math.min(maxDelayMs, baseDelayMs << exponent);
+        long half = step / 2;
+        return half + (half == 0 ? 0 : (long) (random.nextDouble() * (step - half)));
+    }
+}
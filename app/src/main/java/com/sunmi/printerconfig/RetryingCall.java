@@ -0,0 +1,226 @@
+package com.sunmi.printerconfig;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.Random;
+
+/**
+ * One logical SDK request (a handshake, Wi-Fi list or Wi-Fi push) that is retried under a
+ * {@link RetryPolicy} and gated by the printer's {@link PrinterCircuitBreaker}.
+ *
+ * <p>The caller issues the SDK call in {@link Operation#attempt} and forwards the SDK outcome to
+ * {@link #succeed} or {@link #fail}; each attempt is bounded by {@code timeoutMs}. Every decision is
+ * reported to the {@link Listener} and counted in {@link ProvisioningMetrics}. Timeouts and retries run
+ * on the given handler (the main looper by default), and all methods must be called on its thread; a
+ * call is single-use.
+ */
+public final class RetryingCall {
+    private static final Random JITTER = new Random();
+
+    public interface Operation {
+        void attempt();
+    }
+
+    public interface Listener {
+        void onRetryScheduled(Failure failure, int nextAttempt, int maxAttempts, long delayMs);
+
+        void onGaveUp(Failure failure);
+    }
+
+    public static final class Failure {
+        private final RetryPolicy.FailureKind kind;
+        private final int code;
+        private final String message;
+
+        Failure(RetryPolicy.FailureKind kind, int code, String message) {
+            this.kind = kind;
+            this.code = code;
+            this.message = message;
+        }
+
+        public RetryPolicy.FailureKind getKind() {
+            return kind;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        /**
+         * SDK-provided text for {@code sendDataFail}; null for other kinds.
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return kind == RetryPolicy.FailureKind.SEND_DATA_FAIL ? kind + "(" + code + ")" : kind.toString();
+        }
+    }
+
+    private final String address;
+    private final String operationName;
+    private final RetryPolicy policy;
+    private final long timeoutMs;
+    private final Operation operation;
+    private final Listener listener;
+    private final PrinterCircuitBreaker circuitBreaker = PrinterCircuitBreaker.getInstance();
+    private final Handler handler;
+
+    private int attemptsMade = 0;
+    private boolean active = false;
+    // Whether this call was admitted as the circuit breaker's trial request.
+    private boolean trial = false;
+    private boolean retryScheduled = false;
+
+    private final Runnable timeoutRunnable = this::onTimeout;
+    private final Runnable retryRunnable = this::runAttempt;
+
+    public RetryingCall(
+        String address,
+        String operationName,
+        RetryPolicy policy,
+        long timeoutMs,
+        Operation operation,
+        Listener listener
+    ) {
+        this(address, operationName, policy, timeoutMs, new Handler(Looper.getMainLooper()), operation, listener);
+    }
+
+    public RetryingCall(
+        String address,
+        String operationName,
+        RetryPolicy policy,
+        long timeoutMs,
+        Handler handler,
+        Operation operation,
+        Listener listener
+    ) {
+        this.address = address;
+        this.operationName = operationName;
+        this.policy = policy;
+        this.timeoutMs = timeoutMs;
+        this.handler = handler;
+        this.operation = operation;
+        this.listener = listener;
+    }
+
+    public void start() {
+        start(false);
+    }
+
+    /**
+     * @param firstAttemptInFlight true when the first SDK request was already issued elsewhere (for
+     *                             example by a speculative handshake); only its result is awaited
+     */
+    public void start(boolean firstAttemptInFlight) {
+        if (active || attemptsMade > 0) {
+            return;
+        }
+        active = true;
+        boolean allowed;
+        synchronized (circuitBreaker) {
+            allowed = circuitBreaker.allowRequest(address);
+            trial = allowed && circuitBreaker.isTrialInFlight(address);
+        }
+        if (!allowed) {
+            giveUp(new Failure(RetryPolicy.FailureKind.CIRCUIT_OPEN, 0, null));
+            return;
+        }
+        if (firstAttemptInFlight) {
+            attemptsMade = 1;
+            handler.postDelayed(timeoutRunnable, timeoutMs);
+        } else {
+            runAttempt();
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public int getAttemptsMade() {
+        return attemptsMade;
+    }
+
+    public void succeed() {
+        if (!active) {
+            return;
+        }
+        active = false;
+        handler.removeCallbacks(timeoutRunnable);
+        trial = false;
+        circuitBreaker.recordSuccess(address);
+        ProvisioningMetrics.getInstance().recordRetryOutcome(operationName, attemptsMade, true);
+    }
+
+    public void fail(RetryPolicy.FailureKind kind, int code, String message) {
+        if (!active) {
+            return;
+        }
+        handler.removeCallbacks(timeoutRunnable);
+        if (retryScheduled) {
+            // A late failure from an attempt that already timed out; the retry is already scheduled.
+            return;
+        }
+
+        Failure failure = new Failure(kind, code, message);
+        trial = false;
+        boolean opened = circuitBreaker.recordFailure(address);
+        if (opened) {
+            ProvisioningMetrics.getInstance().recordCircuitOpened(address);
+            giveUp(failure);
+            return;
+        }
+        if (!policy.shouldRetry(kind, code, attemptsMade)) {
+            giveUp(failure);
+            return;
+        }
+
+        long delayMs = policy.delayBeforeRetryMs(attemptsMade, JITTER);
+        ProvisioningMetrics.getInstance().recordRetryScheduled(operationName, failure.toString(), attemptsMade + 1, delayMs);
+        listener.onRetryScheduled(failure, attemptsMade + 1, policy.getMaxAttempts(), delayMs);
+        retryScheduled = true;
+        handler.postDelayed(retryRunnable, delayMs);
+    }
+
+    public void cancel() {
+        if (trial) {
+            // Cancelled before the printer answered; let the next request be the trial.
+            trial = false;
+            circuitBreaker.abandonTrial(address);
+        }
+        active = false;
+        retryScheduled = false;
+        handler.removeCallbacks(timeoutRunnable);
+        handler.removeCallbacks(retryRunnable);
+    }
+
+    private void runAttempt() {
+        retryScheduled = false;
+        if (!active) {
+            return;
+        }
+        attemptsMade++;
+        handler.postDelayed(timeoutRunnable, timeoutMs);
+        try {
+            operation.attempt();
+        } catch (Throwable t) {
+            fail(RetryPolicy.FailureKind.SEND_DATA_FAIL, 0, null);
+        }
+    }
+
+    private void onTimeout() {
+        fail(RetryPolicy.FailureKind.TIMEOUT, 0, null);
+    }
+
+    private void giveUp(Failure failure) {
+        active = false;
+        retryScheduled = false;
+        handler.removeCallbacks(retryRunnable);
+        ProvisioningMetrics.getInstance().recordRetryOutcome(operationName, attemptsMade, false);
+        listener.onGaveUp(failure);
+    }
+}
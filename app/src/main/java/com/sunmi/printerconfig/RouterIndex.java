@@ -0,0 +1,196 @@
+package com.sunmi.printerconfig;
+
+import com.sunmi.cloudprinter.bean.Router;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Networks reported by a printer, one entry per ESSID, kept sorted strongest signal first.
+ *
+ * <p>Busy sites report the same network once per access point. Reports are merged by the raw ESSID
+ * bytes: the strongest access point wins and the display name is decoded only once. Each merge
+ * reports the single insert or move it caused so the spinner can update in place.
+ *
+ * <p>The SDK's {@link Router} objects are shared with the list they came from, which other threads read,
+ * so the index merges into copies of its own and hands out copies in {@link #getRouters}.
+ */
+public final class RouterIndex {
+    public interface Listener {
+        void onRouterInserted(int position, Entry entry);
+
+        void onRouterMoved(int fromPosition, int toPosition, Entry entry);
+    }
+
+    public static final class Entry {
+        private final EssidKey key;
+        private final String displayName;
+        private Router router;
+        private int accessPointCount = 1;
+
+        Entry(EssidKey key, String displayName, Router router) {
+            this.key = key;
+            this.displayName = displayName;
+            this.router = router;
+        }
+
+        public Router getRouter() {
+            return router;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public int getAccessPointCount() {
+            return accessPointCount;
+        }
+
+        Object getKey() {
+            return key;
+        }
+    }
+
+    private static final class EssidKey {
+        private final byte[] bytes;
+        private final int hash;
+
+        EssidKey(byte[] bytes) {
+            this.bytes = bytes == null ? new byte[0] : bytes;
+            this.hash = Arrays.hashCode(this.bytes);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof EssidKey && Arrays.equals(bytes, ((EssidKey) other).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<EssidKey, Entry> byEssid = new HashMap<>();
+    private final String unnamedLabel;
+    private Listener listener;
+
+    public RouterIndex(String unnamedLabel) {
+        this.unnamedLabel = unnamedLabel;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public Entry get(int position) {
+        return entries.get(position);
+    }
+
+    /**
+     * Position of the entry with the same ESSID as {@code key}'s entry, or -1 if it is gone.
+     */
+    public int positionOf(Object key) {
+        Entry entry = byEssid.get(key);
+        return entry == null ? -1 : entries.indexOf(entry);
+    }
+
+    public List<Router> getRouters() {
+        List<Router> routers = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            routers.add(copyOf(entry.router));
+        }
+        return routers;
+    }
+
+    public void clear() {
+        entries.clear();
+        byEssid.clear();
+    }
+
+    public void merge(Router router) {
+        EssidKey key = new EssidKey(router.getEssid());
+        Entry existing = byEssid.get(key);
+        if (existing == null) {
+            Entry entry = new Entry(key, displayNameOf(router, unnamedLabel), copyOf(router));
+            byEssid.put(key, entry);
+            int position = insertionPoint(router.getRssi());
+            entries.add(position, entry);
+            if (listener != null) {
+                listener.onRouterInserted(position, entry);
+            }
+            return;
+        }
+
+        existing.accessPointCount++;
+        boolean hasPwd = existing.router.isHasPwd() || router.isHasPwd();
+        if (router.getRssi() <= existing.router.getRssi()) {
+            existing.router.setHasPwd(hasPwd);
+            return;
+        }
+
+        // A stronger access point for a known network: keep it and move the entry up if needed.
+        Router stronger = copyOf(router);
+        stronger.setHasPwd(hasPwd);
+        existing.router = stronger;
+        int from = entries.indexOf(existing);
+        entries.remove(from);
+        int to = insertionPoint(router.getRssi());
+        entries.add(to, existing);
+        if (from != to && listener != null) {
+            listener.onRouterMoved(from, to, existing);
+        }
+    }
+
+    private static Router copyOf(Router router) {
+        Router copy = new Router();
+        copy.setName(router.getName());
+        copy.setHasPwd(router.isHasPwd());
+        copy.setPwd(router.getPwd());
+        copy.setRssi(router.getRssi());
+        copy.setEssid(router.getEssid());
+        return copy;
+    }
+
+    // First position whose signal is weaker, so equal signals keep arrival order.
+    private int insertionPoint(int rssi) {
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries.get(mid).router.getRssi() >= rssi) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    static String displayNameOf(Router router, String unnamedLabel) {
+        String name = router.getName();
+        if (name != null && !name.trim().isEmpty()) {
+            return name.trim();
+        }
+
+        byte[] essid = router.getEssid();
+        if (essid == null || essid.length == 0) {
+            return unnamedLabel;
+        }
+
+        return new String(essid, StandardCharsets.UTF_8).trim();
+    }
+}
@@ -0,0 +1,61 @@
+package com.sunmi.printerconfig;
+
+import android.os.SystemClock;
+
+import com.sunmi.cloudprinter.bean.Router;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide cache of the Wi-Fi networks each printer last reported.
+ *
+ * <p>Entries are served even after they expire (stale-while-revalidate): callers show the cached list
+ * at once and only ask the printer again when {@link Entry#isFresh} is false.
+ */
+public final class RouterListCache {
+    private static final long TTL_MS = 5 * 60_000;
+
+    private static final RouterListCache INSTANCE = new RouterListCache();
+
+    public static final class Entry {
+        private final List<Router> routers;
+        private final long fetchedAtMs;
+
+        Entry(List<Router> routers, long fetchedAtMs) {
+            this.routers = routers;
+            this.fetchedAtMs = fetchedAtMs;
+        }
+
+        public List<Router> getRouters() {
+            return routers;
+        }
+
+        public boolean isFresh() {
+            return SystemClock.elapsedRealtime() - fetchedAtMs < TTL_MS;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private RouterListCache() {
+    }
+
+    public static RouterListCache getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized Entry get(String address) {
+        return entries.get(address);
+    }
+
+    public synchronized void put(String address, List<Router> routers) {
+        entries.put(address, new Entry(
+            Collections.unmodifiableList(new ArrayList<>(routers)),
+            SystemClock.elapsedRealtime()
+        ));
+    }
+}
@@ -0,0 +1,51 @@
+package com.sunmi.printerconfig;
+
+import android.bluetooth.le.ScanSettings;
+
+/**
+ * Where printer discovery comes from: the Sunmi SDK's own scan, or the platform LE scanner in one of
+ * its power modes (see {@link PlatformScanTransport}).
+ */
+public enum ScanBackend {
+    SDK(-1, 0),
+    PLATFORM_LOW_POWER(ScanSettings.SCAN_MODE_LOW_POWER, 2_000),
+    PLATFORM_BALANCED(ScanSettings.SCAN_MODE_BALANCED, 1_000),
+    // Batching would undo the point of scanning at full duty cycle.
+    PLATFORM_LOW_LATENCY(ScanSettings.SCAN_MODE_LOW_LATENCY, 0);
+
+    private final int scanMode;
+    private final long reportDelayMs;
+
+    ScanBackend(int scanMode, long reportDelayMs) {
+        this.scanMode = scanMode;
+        this.reportDelayMs = reportDelayMs;
+    }
+
+    public boolean isPlatform() {
+        return this != SDK;
+    }
+
+    /**
+     * One of the {@code ScanSettings.SCAN_MODE_*} constants; meaningless for {@link #SDK}.
+     */
+    int getScanMode() {
+        return scanMode;
+    }
+
+    /**
+     * How long the controller may hold results before delivering them as one batch, when it can
+     * batch in hardware.
+     */
+    long getReportDelayMs() {
+        return reportDelayMs;
+    }
+
+    static ScanBackend fromName(String name) {
+        for (ScanBackend backend : values()) {
+            if (backend.name().equals(name)) {
+                return backend;
+            }
+        }
+        return SDK;
+    }
+}
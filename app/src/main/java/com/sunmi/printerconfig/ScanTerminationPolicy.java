@@ -0,0 +1,30 @@
+package com.sunmi.printerconfig;
+
+/**
+ * Decides when a printer scan has seen enough to stop.
+ *
+ * <p>Times are caller-supplied monotonic milliseconds, so implementations hold no clock of their own
+ * and can be driven by a fake one.
+ */
+public interface ScanTerminationPolicy {
+    enum StopReason {
+        TIMEOUT,
+        EXPECTED_COUNT_REACHED,
+        QUIET_PERIOD,
+        TARGET_FOUND
+    }
+
+    void onScanStarted(long nowMs);
+
+    void onSnapshot(DiscoverySnapshot snapshot, long nowMs);
+
+    /**
+     * @return why the scan should stop now, or null to keep scanning
+     */
+    StopReason check(long nowMs);
+
+    /**
+     * Earliest time at which {@link #check} may change its answer without a new snapshot.
+     */
+    long nextCheckAtMs();
+}
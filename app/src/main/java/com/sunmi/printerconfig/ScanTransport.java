@@ -0,0 +1,12 @@
+package com.sunmi.printerconfig;
+
+/**
+ * Printer discovery. Found printers come back through {@code onPrinterFount} on the callbacks the
+ * transport was created with, and a scan that the platform aborts through
+ * {@link PrinterClientCallbacks#onScanFailed}.
+ */
+public interface ScanTransport {
+    void startScan();
+
+    void stopScan();
+}
@@ -0,0 +1,131 @@
+package com.sunmi.printerconfig;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Flight recorder of printer traffic: every request the app makes of a {@link PrinterTransport} and
+ * every SDK callback it gets back, with time, thread and printer address, so a failed or slow session
+ * in the field can be replayed from an exported file instead of a Toast.
+ *
+ * <p>The last {@link #CAPACITY} entries are kept in a fixed ring. Writers claim a slot with one atomic
+ * increment and never lock or allocate; each slot carries a sequence stamp that the exporter checks
+ * before and after copying it, so an entry overwritten mid-copy is skipped rather than torn. Under heavy
+ * contention an entry can be lost when two writers a full lap apart share a slot. Always on.
+ */
+public final class SdkCallTrace {
+    static final int CAPACITY = 4096;
+    private static final int MASK = CAPACITY - 1;
+    // Stamp of a slot being written.
+    private static final long WRITING = -1;
+
+    public static final String DIRECTION_CALL = ">";
+    public static final String DIRECTION_CALLBACK = "<";
+
+    private static final SdkCallTrace INSTANCE = new SdkCallTrace();
+
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicLongArray stamps = new AtomicLongArray(CAPACITY);
+    private final AtomicLongArray timesNs = new AtomicLongArray(CAPACITY);
+    private final AtomicLongArray codes = new AtomicLongArray(CAPACITY);
+    private final AtomicReferenceArray<String> directions = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicReferenceArray<String> events = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicReferenceArray<String> threads = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicReferenceArray<String> addresses = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicReferenceArray<String> details = new AtomicReferenceArray<>(CAPACITY);
+
+    // Package-private so tests can start from an empty ring.
+    SdkCallTrace() {
+        for (int i = 0; i < CAPACITY; i++) {
+            stamps.set(i, WRITING);
+        }
+    }
+
+    public static SdkCallTrace getInstance() {
+        return INSTANCE;
+    }
+
+    public void call(String event, String address, String detail) {
+        record(DIRECTION_CALL, event, address, 0, detail);
+    }
+
+    public void callback(String event, String address, int code, String detail) {
+        record(DIRECTION_CALLBACK, event, address, code, detail);
+    }
+
+    /**
+     * @param event   a constant method name, so recording never builds a string
+     * @param address the printer concerned, or null when the entry is not about one printer
+     * @param detail  free text such as a device name or error message, or null
+     */
+    void record(String direction, String event, String address, int code, String detail) {
+        long sequence = nextSequence.getAndIncrement();
+        int slot = (int) (sequence & MASK);
+        stamps.set(slot, WRITING);
+        timesNs.lazySet(slot, System.nanoTime());
+        codes.lazySet(slot, code);
+        directions.lazySet(slot, direction);
+        events.lazySet(slot, event);
+        threads.lazySet(slot, Thread.currentThread().getName());
+        addresses.lazySet(slot, address);
+        details.lazySet(slot, detail);
+        stamps.lazySet(slot, sequence);
+    }
+
+    /**
+     * Oldest entry first, one per line: wall-clock time, milliseconds since the first exported entry,
+     * direction ({@code >} request, {@code <} callback), thread, event, address, code and detail.
+     */
+    public String export() {
+        long exportedAtNs = System.nanoTime();
+        long exportedAtMs = System.currentTimeMillis();
+        long end = nextSequence.get();
+        long start = Math.max(0, end - CAPACITY);
+        SimpleDateFormat wallClock = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.ROOT);
+
+        StringBuilder out = new StringBuilder();
+        int exported = 0;
+        long firstNs = Long.MIN_VALUE;
+        for (long sequence = start; sequence < end; sequence++) {
+            int slot = (int) (sequence & MASK);
+            if (stamps.get(slot) != sequence) {
+                continue;
+            }
+            long timeNs = timesNs.get(slot);
+            long code = codes.get(slot);
+            String direction = directions.get(slot);
+            String event = events.get(slot);
+            String thread = threads.get(slot);
+            String address = addresses.get(slot);
+            String detail = details.get(slot);
+            if (stamps.get(slot) != sequence) {
+                // Overwritten while being copied.
+                continue;
+            }
+            if (firstNs == Long.MIN_VALUE) {
+                firstNs = timeNs;
+            }
+            long wallMs = exportedAtMs - (exportedAtNs - timeNs) / 1_000_000;
+            out.append(wallClock.format(new Date(wallMs)))
+                .append(String.format(Locale.ROOT, " %+9.1f ", (timeNs - firstNs) / 1e6))
+                .append(direction).append(' ')
+                .append('[').append(thread).append("] ")
+                .append(event)
+                .append(' ').append(address == null ? "-" : address);
+            if (code != 0) {
+                out.append(" code=").append(code);
+            }
+            if (detail != null) {
+                out.append(" \"").append(detail).append('"');
+            }
+            out.append('\n');
+            exported++;
+        }
+        out.insert(0, String.format(Locale.ROOT, "# %d entries recorded, %d exported%n", end, exported));
+        return out.toString();
+    }
+}
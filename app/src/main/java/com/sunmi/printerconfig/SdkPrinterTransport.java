@@ -0,0 +1,70 @@
+package com.sunmi.printerconfig;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.sunmi.cloudprinter.presenter.SunmiPrinterClient;
+
+/**
+ * {@link PrinterTransport} backed by the Sunmi BLE SDK.
+ */
+final class SdkPrinterTransport implements PrinterTransport {
+    static final Factory FACTORY = SdkPrinterTransport::new;
+
+    private final SunmiPrinterClient client;
+
+    private SdkPrinterTransport(ReceiverSafeContext context, SunmiPrinterClient.IPrinterClient callbacks) {
+        client = callbacks instanceof PrinterClientCallbacks
+            ? new SignalReportingClient(context, (PrinterClientCallbacks) callbacks)
+            : new SunmiPrinterClient(context, callbacks);
+    }
+
+    @Override
+    public void startScan() {
+        client.startScan();
+    }
+
+    @Override
+    public void stopScan() {
+        client.stopScan();
+    }
+
+    @Override
+    public void getPrinterSn(String address) {
+        client.getPrinterSn(address);
+    }
+
+    @Override
+    public void getPrinterWifiList(String address) {
+        client.getPrinterWifiList(address);
+    }
+
+    @Override
+    public void setPrinterWifi(String address, byte[] essid, String password) {
+        client.setPrinterWifi(address, essid, password);
+    }
+
+    @Override
+    public void disconnect(String address) {
+        client.disconnect(address);
+    }
+
+    /**
+     * The SDK drops the RSSI of the scan callbacks it receives; this hands it on.
+     */
+    private static final class SignalReportingClient extends SunmiPrinterClient {
+        private final PrinterClientCallbacks callbacks;
+
+        SignalReportingClient(ReceiverSafeContext context, PrinterClientCallbacks callbacks) {
+            super(context, callbacks);
+            this.callbacks = callbacks;
+        }
+
+        @Override
+        public void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord) {
+            super.onLeScan(device, rssi, scanRecord);
+            if (device != null && device.getAddress() != null) {
+                callbacks.onSignalStrength(device.getAddress(), rssi);
+            }
+        }
+    }
+}
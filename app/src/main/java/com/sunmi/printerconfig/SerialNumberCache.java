@@ -0,0 +1,41 @@
+package com.sunmi.printerconfig;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide MAC to serial-number map filled by every successful {@code getPrinterSn}, so a printer
+ * is asked at most once per app run. Bounded; least recently used entries go first.
+ */
+public final class SerialNumberCache {
+    private static final int MAX_ENTRIES = 512;
+
+    private static final SerialNumberCache INSTANCE = new SerialNumberCache();
+
+    private final Map<String, String> serials = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private SerialNumberCache() {
+    }
+
+    public static SerialNumberCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the cached serial, or null if this printer has not completed a handshake this run
+     */
+    public synchronized String get(String address) {
+        return serials.get(address);
+    }
+
+    public synchronized void put(String address, String serialNumber) {
+        if (address != null && serialNumber != null && !serialNumber.isEmpty()) {
+            serials.put(address, serialNumber);
+        }
+    }
+}
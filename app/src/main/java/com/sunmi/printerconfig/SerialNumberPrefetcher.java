@@ -0,0 +1,178 @@
+package com.sunmi.printerconfig;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads serial numbers of discovered printers in the background so identical units can be told
+ * apart in the list before one is picked.
+ *
+ * <p>At most {@code maxConcurrent} handshakes run at once, each bounded by {@code timeoutMs} and
+ * disconnected as soon as it finishes so idle links do not pile up. Results go to
+ * {@link SerialNumberCache}. Only names the classifier recognises are queued, since other devices
+ * would just burn a slot until the timeout. Main thread only.
+ */
+final class SerialNumberPrefetcher {
+    interface Listener {
+        void onSerialNumber(String address, String serialNumber);
+    }
+
+    private final PrinterSessionManager sessionManager;
+    private final Listener listener;
+    private final int maxConcurrent;
+    private final long timeoutMs;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final ArrayDeque<String> queue = new ArrayDeque<>();
+    // Everything queued, running or finished since the last reset, so nothing is asked twice.
+    private final Set<String> seen = new HashSet<>();
+    private final Map<String, Task> running = new HashMap<>();
+    private boolean enabled = false;
+
+    SerialNumberPrefetcher(PrinterSessionManager sessionManager, Listener listener, int maxConcurrent, long timeoutMs) {
+        this.sessionManager = sessionManager;
+        this.listener = listener;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.timeoutMs = timeoutMs;
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            cancelAll();
+        }
+    }
+
+    /**
+     * Queues printers from {@code snapshot} whose serial is not known yet; cached serials are
+     * reported straight away.
+     */
+    void onSnapshot(DiscoverySnapshot snapshot) {
+        if (!enabled) {
+            return;
+        }
+        SerialNumberCache cache = SerialNumberCache.getInstance();
+        for (DiscoveredPrinter printer : snapshot.getPrinters()) {
+            String address = printer.getAddress();
+            if (!printer.getSerialNumber().isEmpty() || printer.isCached() || !printer.isLikelySunmi()
+                || !seen.add(address)) {
+                continue;
+            }
+            String cached = cache.get(address);
+            if (cached != null) {
+                listener.onSerialNumber(address, cached);
+            } else {
+                queue.addLast(address);
+            }
+        }
+        startQueued();
+    }
+
+    boolean isHandshakeInFlight(String address) {
+        Task task = running.get(address);
+        return task != null && task.requested;
+    }
+
+    /**
+     * Stops prefetching because the user picked {@code address}. That printer's session is released
+     * without disconnecting (the caller must already hold its own reference); the others are dropped
+     * so they do not compete for the radio.
+     */
+    void handOff(String address) {
+        Task claimed = running.remove(address);
+        cancelAll();
+        if (claimed != null) {
+            claimed.finish(false);
+        }
+    }
+
+    /**
+     * Drops queued and running work; serials already read stay cached.
+     */
+    void cancelAll() {
+        queue.clear();
+        seen.clear();
+        for (Task task : running.values().toArray(new Task[0])) {
+            running.remove(task.address);
+            task.finish(true);
+        }
+    }
+
+    private void startQueued() {
+        while (running.size() < maxConcurrent && !queue.isEmpty()) {
+            String address = queue.pollFirst();
+            Task task = new Task(address);
+            running.put(address, task);
+            task.start();
+        }
+    }
+
+    private void complete(Task task, String serialNumber) {
+        if (running.get(task.address) != task) {
+            return;
+        }
+        running.remove(task.address);
+        task.finish(true);
+        if (serialNumber != null && !serialNumber.isEmpty()) {
+            SerialNumberCache.getInstance().put(task.address, serialNumber);
+            listener.onSerialNumber(task.address, serialNumber);
+        }
+        startQueued();
+    }
+
+    private final class Task extends PrinterClientCallbacks {
+        final String address;
+        PrinterSession session;
+        boolean requested = false;
+        private final Runnable timeout = () -> complete(this, null);
+
+        Task(String address) {
+            this.address = address;
+        }
+
+        void start() {
+            boolean inUse = sessionManager.peek(address) != null;
+            session = sessionManager.acquire(address, this);
+            if (session.isHandshakeComplete()) {
+                handler.post(() -> complete(this, session.getSerialNumber()));
+                return;
+            }
+            handler.postDelayed(timeout, timeoutMs);
+            if (inUse) {
+                // Someone else owns this link and may be mid-handshake; listen rather than ask again.
+                return;
+            }
+            requested = true;
+            try {
+                session.requestSerialNumber();
+            } catch (Throwable t) {
+                handler.post(() -> complete(this, null));
+            }
+        }
+
+        void finish(boolean disconnect) {
+            handler.removeCallbacks(timeout);
+            if (disconnect) {
+                session.releaseAndDisconnect(this);
+            } else {
+                session.release(this);
+            }
+        }
+
+        @Override
+        public void onSnReceived(String sn) {
+            handler.post(() -> complete(this, sn == null ? "" : sn));
+        }
+
+        @Override
+        public void sendDataFail(int code, String msg) {
+            handler.post(() -> complete(this, null));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.sunmi.printerconfig;
+
+/**
+ * Sliding-window mean of the last {@link #SIZE} RSSI readings of one device, so a single reflected or
+ * blocked advertisement does not reorder the list. Plain Java; constant time per reading.
+ */
+final class SignalWindow {
+    static final int SIZE = 8;
+
+    private final int[] samples = new int[SIZE];
+    private int count = 0;
+    private int next = 0;
+    private int sum = 0;
+
+    void add(int rssi) {
+        if (count == SIZE) {
+            sum -= samples[next];
+        } else {
+            count++;
+        }
+        samples[next] = rssi;
+        sum += rssi;
+        next = (next + 1) % SIZE;
+    }
+
+    int getSampleCount() {
+        return count;
+    }
+
+    /**
+     * @return the mean in dBm, rounded, or {@link DiscoveredPrinter#NO_SIGNAL} before the first reading
+     */
+    int getSmoothedRssi() {
+        return count == 0 ? DiscoveredPrinter.NO_SIGNAL : Math.round(sum / (float) count);
+    }
+}
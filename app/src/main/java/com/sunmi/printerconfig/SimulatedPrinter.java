@@ -0,0 +1,147 @@
+package com.sunmi.printerconfig;
+
+import com.sunmi.cloudprinter.bean.Router;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One fake printer in a {@link SimulatedPrinterFleet}: what it advertises, which networks it reports,
+ * which password it accepts, and the failures queued up for its next requests. Safe to script from a
+ * test thread while the fleet is answering requests.
+ */
+public final class SimulatedPrinter {
+    // Queued in place of a sendDataFail code when the request should get no answer at all.
+    private static final int NO_REPLY = Integer.MIN_VALUE;
+
+    private final String address;
+    private final String name;
+    private final String serialNumber;
+    private final List<Router> routers = new ArrayList<>();
+    private final Map<SimulatedPrinterFleet.Stage, ArrayDeque<Integer>> injectedFailures =
+        new EnumMap<>(SimulatedPrinterFleet.Stage.class);
+    private int rssi = -60;
+    private boolean inRange = true;
+    private boolean wifiListFails = false;
+    private String acceptedPassword;
+
+    public SimulatedPrinter(String address, String name, String serialNumber) {
+        this.address = address;
+        this.name = name;
+        this.serialNumber = serialNumber;
+        for (SimulatedPrinterFleet.Stage stage : SimulatedPrinterFleet.Stage.values()) {
+            injectedFailures.put(stage, new ArrayDeque<>());
+        }
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSerialNumber() {
+        return serialNumber;
+    }
+
+    public synchronized SimulatedPrinter addRouter(String ssid, int routerRssi, boolean hasPassword) {
+        Router router = new Router();
+        router.setName(ssid);
+        router.setEssid(ssid.getBytes(StandardCharsets.UTF_8));
+        router.setRssi(routerRssi);
+        router.setHasPwd(hasPassword);
+        routers.add(router);
+        return this;
+    }
+
+    synchronized List<Router> getRouters() {
+        return Collections.unmodifiableList(new ArrayList<>(routers));
+    }
+
+    /**
+     * Signal strength of its advertisements in dBm, before the fleet's per-advertisement jitter.
+     */
+    public synchronized SimulatedPrinter setRssi(int rssi) {
+        this.rssi = rssi;
+        return this;
+    }
+
+    synchronized int getRssi() {
+        return rssi;
+    }
+
+    /**
+     * Out of range, the printer stops advertising and connects fail with code 0, as the SDK reports
+     * a connect that times out.
+     */
+    public synchronized SimulatedPrinter setInRange(boolean inRange) {
+        this.inRange = inRange;
+        return this;
+    }
+
+    synchronized boolean isInRange() {
+        return inRange;
+    }
+
+    /**
+     * Makes every Wi-Fi list request end in {@code onGetWifiListFail}.
+     */
+    public synchronized SimulatedPrinter setWifiListFails(boolean wifiListFails) {
+        this.wifiListFails = wifiListFails;
+        return this;
+    }
+
+    synchronized boolean isWifiListFails() {
+        return wifiListFails;
+    }
+
+    /**
+     * Joining Wi-Fi fails with {@code onWifiConfigFail} unless the password is this one; null accepts
+     * any password.
+     */
+    public synchronized SimulatedPrinter setAcceptedPassword(String acceptedPassword) {
+        this.acceptedPassword = acceptedPassword;
+        return this;
+    }
+
+    synchronized boolean accepts(String password) {
+        return acceptedPassword == null || acceptedPassword.equals(password);
+    }
+
+    /**
+     * Answers the next request reaching {@code stage} with {@code sendDataFail(code, ...)}. Only
+     * {@link SimulatedPrinterFleet.Stage#CONNECT} and the three request stages take injections.
+     */
+    public synchronized SimulatedPrinter failNext(SimulatedPrinterFleet.Stage stage, int code) {
+        injectedFailures.get(stage).addLast(code);
+        return this;
+    }
+
+    /**
+     * Swallows the next request reaching {@code stage} without any callback, so the caller's timeout
+     * has to fire.
+     */
+    public synchronized SimulatedPrinter dropNext(SimulatedPrinterFleet.Stage stage) {
+        injectedFailures.get(stage).addLast(NO_REPLY);
+        return this;
+    }
+
+    /**
+     * @return the next injected sendDataFail code for {@code stage}, {@link #NO_REPLY} for a dropped
+     *         request, or null to answer normally
+     */
+    synchronized Integer takeInjectedFailure(SimulatedPrinterFleet.Stage stage) {
+        return injectedFailures.get(stage).pollFirst();
+    }
+
+    static boolean isNoReply(int injected) {
+        return injected == NO_REPLY;
+    }
+}
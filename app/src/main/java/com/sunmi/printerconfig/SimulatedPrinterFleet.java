@@ -0,0 +1,351 @@
+package com.sunmi.printerconfig;
+
+import com.sunmi.cloudprinter.bean.PrinterDevice;
+import com.sunmi.cloudprinter.bean.Router;
+import com.sunmi.cloudprinter.presenter.SunmiPrinterClient;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process stand-in for a room full of printers, installed with
+ * {@link PrinterSessionManager#setTransportFactory}. Every transport it creates answers through the
+ * {@link SunmiPrinterClient.IPrinterClient} contract in the order the SDK does: advertisements while
+ * scanning, a connect before the first request to an address, {@code getSnRequestSuccess} then
+ * {@code onSnReceived}, {@code routerFound} per network then {@code onGetWifiListFinish}, and
+ * {@code onSetWifiSuccess} followed by {@code wifiConfigSuccess} or {@code onWifiConfigFail} once the
+ * printer has tried to join.
+ *
+ * <p>Each {@link Stage} waits for a sample from its {@link LatencyDistribution}, and failures can be
+ * injected per printer or at a fleet-wide rate. Callbacks arrive on one private thread, like the SDK's,
+ * and nothing here needs a {@code Looper}, so the fleet also drives code under test on a plain JVM.
+ *
+ * <p>Simulated printers never join a real network, so install {@link #LOCATOR_FACTORY} with
+ * {@link ProvisioningFlow#setLocatorFactory} alongside the fleet; it skips the LAN check.
+ */
+public final class SimulatedPrinterFleet implements PrinterTransport.Factory {
+    /**
+     * Reports no locator for any printer, so the flow goes from {@code wifiConfigSuccess} straight to
+     * done instead of looking for a simulated printer on the LAN.
+     */
+    public static final PrinterLocator.Factory LOCATOR_FACTORY = (context, serialNumber, bluetoothAddress, ssid) -> null;
+
+    public enum Stage {
+        /** Interval between two advertisements of one printer while scanning. */
+        ADVERTISEMENT,
+        /** Link set-up before the first request to an address, and again after a failure. */
+        CONNECT,
+        SERIAL_NUMBER,
+        WIFI_LIST,
+        SET_WIFI,
+        /** From {@code onSetWifiSuccess} until the printer reports whether it joined the network. */
+        WIFI_JOIN
+    }
+
+    // What the SDK reports when a connect or write fails; RetryPolicy treats it as retryable.
+    static final int CODE_CONNECT_FAILED = 0;
+    private static final String CONNECT_FAILED_MESSAGE = "Simulated connection failure";
+    private static final int RSSI_JITTER_DB = 4;
+    private static final long MIN_ADVERTISEMENT_INTERVAL_MS = 20;
+
+    private final Random random;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "simulated-printers");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, SimulatedPrinter> printers = new LinkedHashMap<>();
+    private final Map<Stage, LatencyDistribution> latencies = new EnumMap<>(Stage.class);
+    private double sendDataFailRate = 0;
+    private int sendDataFailCode = CODE_CONNECT_FAILED;
+
+    /**
+     * @param seed seeds latency samples, RSSI jitter and random failures, so a run can be repeated
+     */
+    public SimulatedPrinterFleet(long seed) {
+        random = new Random(seed);
+        for (Stage stage : Stage.values()) {
+            latencies.put(stage, LatencyDistribution.ZERO);
+        }
+        latencies.put(Stage.ADVERTISEMENT, LatencyDistribution.fixed(100));
+    }
+
+    /**
+     * {@code printerCount} printers with a few networks each and latencies roughly like the field
+     * percentiles, for trying the app without hardware.
+     */
+    public static SimulatedPrinterFleet demo(int printerCount) {
+        SimulatedPrinterFleet fleet = new SimulatedPrinterFleet(System.nanoTime());
+        fleet.setLatency(Stage.ADVERTISEMENT, LatencyDistribution.uniform(100, 1_000))
+            .setLatency(Stage.CONNECT, LatencyDistribution.logNormal(800, 2_500))
+            .setLatency(Stage.SERIAL_NUMBER, LatencyDistribution.logNormal(300, 1_200))
+            .setLatency(Stage.WIFI_LIST, LatencyDistribution.logNormal(1_500, 4_000))
+            .setLatency(Stage.SET_WIFI, LatencyDistribution.logNormal(400, 1_500))
+            .setLatency(Stage.WIFI_JOIN, LatencyDistribution.logNormal(6_000, 15_000));
+        for (int i = 1; i <= printerCount; i++) {
+            // 0x5A sets the locally administered bit, so these never collide with a real printer.
+            String address = String.format(Locale.ROOT, "5A:1A:00:00:%02X:%02X", (i >> 8) & 0xFF, i & 0xFF);
+            fleet.add(new SimulatedPrinter(address, String.format(Locale.ROOT, "CloudPrint_SUNMI_%04d", i),
+                String.format(Locale.ROOT, "N4SIM%07d", i))
+                .setRssi(-45 - 6 * ((i - 1) % 8))
+                .addRouter("Shop-WiFi", -48, true)
+                .addRouter("Shop-Guest", -61, false)
+                .addRouter("Backoffice", -74, true));
+        }
+        return fleet;
+    }
+
+    public synchronized SimulatedPrinter add(SimulatedPrinter printer) {
+        printers.put(printer.getAddress(), printer);
+        return printer;
+    }
+
+    public synchronized SimulatedPrinter get(String address) {
+        return printers.get(address);
+    }
+
+    public synchronized List<SimulatedPrinter> getPrinters() {
+        return new ArrayList<>(printers.values());
+    }
+
+    public synchronized SimulatedPrinterFleet setLatency(Stage stage, LatencyDistribution latency) {
+        latencies.put(stage, latency);
+        return this;
+    }
+
+    /**
+     * Fails each connect and request with {@code sendDataFail(code, ...)} with the given probability,
+     * on top of anything injected into single printers.
+     */
+    public synchronized SimulatedPrinterFleet setSendDataFailRate(double probability, int code) {
+        sendDataFailRate = Math.max(0, Math.min(1, probability));
+        sendDataFailCode = code;
+        return this;
+    }
+
+    /**
+     * Stops the simulator thread; transports created earlier stop answering.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public PrinterTransport create(ReceiverSafeContext context, SunmiPrinterClient.IPrinterClient callbacks) {
+        return new SimulatedTransport(callbacks);
+    }
+
+    private synchronized long sampleMs(Stage stage) {
+        return Math.max(0, latencies.get(stage).sampleMs(random));
+    }
+
+    private synchronized boolean randomFailure() {
+        return sendDataFailRate > 0 && random.nextDouble() < sendDataFailRate;
+    }
+
+    private synchronized int getSendDataFailCode() {
+        return sendDataFailCode;
+    }
+
+    private synchronized int jitteredRssi(SimulatedPrinter printer) {
+        return printer.getRssi() + random.nextInt(2 * RSSI_JITTER_DB + 1) - RSSI_JITTER_DB;
+    }
+
+    private void schedule(long delayMs, Runnable task) {
+        try {
+            scheduler.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // Shut down: the fleet no longer answers.
+        }
+    }
+
+    private interface Answer {
+        void deliver(SimulatedPrinter printer);
+    }
+
+    /**
+     * One client's view of the fleet. Like the SDK client it keeps a link per address; work scheduled
+     * before {@link #stopScan} or {@link #disconnect} is dropped when it comes due.
+     */
+    private final class SimulatedTransport implements PrinterTransport {
+        private final SunmiPrinterClient.IPrinterClient callbacks;
+        private final Map<String, Integer> linkGenerations = new HashMap<>();
+        private final Set<String> connected = new HashSet<>();
+        private int scanGeneration = 0;
+
+        SimulatedTransport(SunmiPrinterClient.IPrinterClient callbacks) {
+            this.callbacks = callbacks;
+        }
+
+        @Override
+        public void startScan() {
+            int generation;
+            synchronized (this) {
+                generation = ++scanGeneration;
+            }
+            for (SimulatedPrinter printer : getPrinters()) {
+                schedule(sampleMs(Stage.ADVERTISEMENT), () -> advertise(printer, generation));
+            }
+        }
+
+        @Override
+        public synchronized void stopScan() {
+            scanGeneration++;
+        }
+
+        private void advertise(SimulatedPrinter printer, int generation) {
+            synchronized (this) {
+                if (generation != scanGeneration) {
+                    return;
+                }
+            }
+            if (printer.isInRange()) {
+                PrinterDevice device = new PrinterDevice();
+                device.setAddress(printer.getAddress());
+                device.setName(printer.getName());
+                callbacks.onPrinterFount(device);
+                if (callbacks instanceof PrinterClientCallbacks) {
+                    ((PrinterClientCallbacks) callbacks).onSignalStrength(printer.getAddress(), jitteredRssi(printer));
+                }
+            }
+            long intervalMs = Math.max(MIN_ADVERTISEMENT_INTERVAL_MS, sampleMs(Stage.ADVERTISEMENT));
+            schedule(intervalMs, () -> advertise(printer, generation));
+        }
+
+        @Override
+        public void getPrinterSn(String address) {
+            request(address, Stage.SERIAL_NUMBER, printer -> {
+                callbacks.getSnRequestSuccess();
+                callbacks.onSnReceived(printer.getSerialNumber());
+            });
+        }
+
+        @Override
+        public void getPrinterWifiList(String address) {
+            request(address, Stage.WIFI_LIST, printer -> {
+                if (printer.isWifiListFails()) {
+                    callbacks.onGetWifiListFail();
+                    return;
+                }
+                for (Router router : printer.getRouters()) {
+                    callbacks.routerFound(router);
+                }
+                callbacks.onGetWifiListFinish();
+            });
+        }
+
+        @Override
+        public void setPrinterWifi(String address, byte[] essid, String password) {
+            request(address, Stage.SET_WIFI, printer -> {
+                // Read first: a caller may disconnect from inside onSetWifiSuccess.
+                int generation = linkGeneration(address);
+                callbacks.onSetWifiSuccess();
+                schedule(sampleMs(Stage.WIFI_JOIN), () -> {
+                    if (linkGeneration(address) != generation) {
+                        return;
+                    }
+                    if (printer.accepts(password)) {
+                        callbacks.wifiConfigSuccess();
+                    } else {
+                        callbacks.onWifiConfigFail();
+                    }
+                });
+            });
+        }
+
+        @Override
+        public synchronized void disconnect(String address) {
+            connected.remove(address);
+            linkGenerations.put(address, linkGeneration(address) + 1);
+        }
+
+        private synchronized int linkGeneration(String address) {
+            Integer generation = linkGenerations.get(address);
+            return generation == null ? 0 : generation;
+        }
+
+        private synchronized boolean isConnected(String address) {
+            return connected.contains(address);
+        }
+
+        private synchronized void setConnected(String address, boolean isConnected) {
+            if (isConnected) {
+                connected.add(address);
+            } else {
+                connected.remove(address);
+            }
+        }
+
+        private void request(String address, Stage stage, Answer answer) {
+            int generation = linkGeneration(address);
+            if (isConnected(address)) {
+                schedule(sampleMs(stage), () -> respond(address, generation, stage, answer));
+                return;
+            }
+            schedule(sampleMs(Stage.CONNECT), () -> {
+                if (linkGeneration(address) != generation) {
+                    return;
+                }
+                SimulatedPrinter printer = get(address);
+                if (printer == null || !printer.isInRange()) {
+                    callbacks.sendDataFail(CODE_CONNECT_FAILED, CONNECT_FAILED_MESSAGE);
+                    return;
+                }
+                if (failInjected(address, printer, Stage.CONNECT)) {
+                    return;
+                }
+                setConnected(address, true);
+                schedule(sampleMs(stage), () -> respond(address, generation, stage, answer));
+            });
+        }
+
+        private void respond(String address, int generation, Stage stage, Answer answer) {
+            if (linkGeneration(address) != generation) {
+                return;
+            }
+            SimulatedPrinter printer = get(address);
+            if (printer == null || !printer.isInRange()) {
+                setConnected(address, false);
+                callbacks.sendDataFail(CODE_CONNECT_FAILED, CONNECT_FAILED_MESSAGE);
+                return;
+            }
+            if (!failInjected(address, printer, stage)) {
+                answer.deliver(printer);
+            }
+        }
+
+        /**
+         * @return true when an injected or random failure took the place of the answer
+         */
+        private boolean failInjected(String address, SimulatedPrinter printer, Stage stage) {
+            Integer injected = printer.takeInjectedFailure(stage);
+            if (injected != null && SimulatedPrinter.isNoReply(injected)) {
+                return true;
+            }
+            int code;
+            if (injected != null) {
+                code = injected;
+            } else if (randomFailure()) {
+                code = getSendDataFailCode();
+            } else {
+                return false;
+            }
+            // The SDK drops the link after a failed write; the next request connects again.
+            setConnected(address, false);
+            callbacks.sendDataFail(code, "Simulated failure in " + stage.name().toLowerCase(Locale.ROOT));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.sunmi.printerconfig;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Opt-in: once a single likely-Sunmi printer has been the only candidate in range for
+ * {@link #STABLE_WINDOW_MS}, starts its {@code getPrinterSn} handshake in the background so a tap on
+ * it can go straight to Wi-Fi setup.
+ *
+ * <p>The connector holds its own reference on the {@link PrinterSession}. A tap on the same printer
+ * takes the session over through {@link #handOff}; anything else cancels it and drops the link so
+ * it cannot compete with the printer the user actually chose. Main thread only.
+ */
+final class SpeculativeConnector {
+    static final long STABLE_WINDOW_MS = 1_500;
+    private static final long HANDSHAKE_TIMEOUT_MS = 10_000;
+    // An unclaimed warm link is dropped after this long.
+    private static final long MAX_HOLD_MS = 30_000;
+
+    private final PrinterSessionManager sessionManager;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // Printers whose speculative handshake failed in the current scan are not retried.
+    private final Set<String> failedAddresses = new HashSet<>();
+
+    private boolean enabled = false;
+    private String candidateAddress;
+    private long candidateSinceMs;
+    private PrinterSession session;
+    private Callbacks callbacks;
+    private boolean handshakeInFlight = false;
+
+    private final Runnable stabilityCheck = this::startIfStable;
+    private final Runnable handshakeTimeout = this::onHandshakeFailed;
+    private final Runnable holdExpired = this::cancel;
+
+    SpeculativeConnector(PrinterSessionManager sessionManager) {
+        this.sessionManager = sessionManager;
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            cancel();
+        }
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    void onScanStarted() {
+        cancel();
+        failedAddresses.clear();
+    }
+
+    void onSnapshot(DiscoverySnapshot snapshot) {
+        if (!enabled || session != null) {
+            return;
+        }
+
+        String soleCandidate = null;
+        for (DiscoveredPrinter printer : snapshot.getPrinters()) {
+            if (printer.isCached() || !printer.isLikelySunmi()) {
+                continue;
+            }
+            if (soleCandidate != null) {
+                clearCandidate();
+                return;
+            }
+            soleCandidate = printer.getAddress();
+        }
+
+        if (soleCandidate == null || failedAddresses.contains(soleCandidate)) {
+            clearCandidate();
+        } else if (!soleCandidate.equals(candidateAddress)) {
+            candidateAddress = soleCandidate;
+            candidateSinceMs = SystemClock.elapsedRealtime();
+            handler.removeCallbacks(stabilityCheck);
+            handler.postDelayed(stabilityCheck, STABLE_WINDOW_MS);
+        }
+    }
+
+    /**
+     * True while a speculative {@code getPrinterSn} for {@code address} is outstanding; a caller that
+     * subscribes to the same session should wait for its result rather than asking again.
+     */
+    boolean isHandshakeInFlight(String address) {
+        return handshakeInFlight && session != null && session.getAddress().equals(address);
+    }
+
+    /**
+     * Called when the user picks {@code address}, after the caller has acquired its own reference on
+     * that printer's session. A matching speculative session is handed over; any other is cancelled.
+     */
+    void handOff(String address) {
+        if (session != null && session.getAddress().equals(address)) {
+            PrinterSession claimed = session;
+            Callbacks claimedCallbacks = callbacks;
+            reset();
+            claimed.release(claimedCallbacks);
+        } else {
+            cancel();
+        }
+    }
+
+    void cancel() {
+        PrinterSession abandoned = session;
+        Callbacks abandonedCallbacks = callbacks;
+        reset();
+        if (abandoned != null) {
+            abandoned.releaseAndDisconnect(abandonedCallbacks);
+        }
+    }
+
+    private void reset() {
+        handler.removeCallbacks(stabilityCheck);
+        handler.removeCallbacks(handshakeTimeout);
+        handler.removeCallbacks(holdExpired);
+        candidateAddress = null;
+        session = null;
+        callbacks = null;
+        handshakeInFlight = false;
+    }
+
+    private void clearCandidate() {
+        candidateAddress = null;
+        handler.removeCallbacks(stabilityCheck);
+    }
+
+    private void startIfStable() {
+        if (!enabled || session != null || candidateAddress == null
+            || SystemClock.elapsedRealtime() - candidateSinceMs < STABLE_WINDOW_MS) {
+            return;
+        }
+
+        boolean inUse = sessionManager.peek(candidateAddress) != null;
+        callbacks = new Callbacks();
+        session = sessionManager.acquire(candidateAddress, callbacks);
+        handler.postDelayed(holdExpired, MAX_HOLD_MS);
+        if (session.isHandshakeComplete()) {
+            return;
+        }
+        handshakeInFlight = true;
+        handler.postDelayed(handshakeTimeout, HANDSHAKE_TIMEOUT_MS);
+        if (inUse) {
+            // Another user of this link (e.g. the serial prefetcher) is already asking.
+            return;
+        }
+        try {
+            session.requestSerialNumber();
+        } catch (Throwable t) {
+            onHandshakeFailed();
+        }
+    }
+
+    private void onHandshakeSucceeded() {
+        handshakeInFlight = false;
+        handler.removeCallbacks(handshakeTimeout);
+    }
+
+    private void onHandshakeFailed() {
+        if (session == null) {
+            return;
+        }
+        failedAddresses.add(session.getAddress());
+        cancel();
+    }
+
+    // One instance per speculative session, so results posted after a cancel are recognisably stale.
+    private final class Callbacks extends PrinterClientCallbacks {
+        private boolean isCurrent() {
+            return callbacks == this && handshakeInFlight;
+        }
+
+        @Override
+        public void onSnReceived(String sn) {
+            handler.post(() -> {
+                if (isCurrent()) {
+                    onHandshakeSucceeded();
+                }
+            });
+        }
+
+        @Override
+        public void sendDataFail(int code, String msg) {
+            handler.post(() -> {
+                if (isCurrent()) {
+                    onHandshakeFailed();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.sunmi.printerconfig;
+
+import com.sunmi.cloudprinter.bean.PrinterDevice;
+import com.sunmi.cloudprinter.bean.Router;
+import com.sunmi.cloudprinter.presenter.SunmiPrinterClient;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Records every request made of a {@link PrinterTransport} and every callback it delivers in
+ * {@link SdkCallTrace}, then passes them on unchanged. Callbacks that do not name a printer are
+ * attributed to the last address this transport was asked about. Passwords are never recorded.
+ * {@link #wrapScanner} does the same for a {@link ScanTransport} that can only scan.
+ */
+final class TracingPrinterTransport implements PrinterTransport {
+    /**
+     * Creates the wrapped transport around the callbacks that trace on its behalf.
+     */
+    interface DelegateFactory {
+        PrinterTransport create(PrinterClientCallbacks tracedCallbacks);
+    }
+
+    interface ScanDelegateFactory {
+        ScanTransport create(PrinterClientCallbacks tracedCallbacks);
+    }
+
+    private final SdkCallTrace trace = SdkCallTrace.getInstance();
+    private final TracingCallbacks tracedCallbacks;
+    private final PrinterTransport delegate;
+    private final TracingScanner scanner;
+
+    private TracingPrinterTransport(SunmiPrinterClient.IPrinterClient callbacks, DelegateFactory factory) {
+        tracedCallbacks = new TracingCallbacks(callbacks);
+        delegate = factory.create(tracedCallbacks);
+        scanner = new TracingScanner(delegate);
+    }
+
+    static PrinterTransport wrap(SunmiPrinterClient.IPrinterClient callbacks, DelegateFactory factory) {
+        return new TracingPrinterTransport(callbacks, factory);
+    }
+
+    static ScanTransport wrapScanner(SunmiPrinterClient.IPrinterClient callbacks, ScanDelegateFactory factory) {
+        return new TracingScanner(factory.create(new TracingCallbacks(callbacks)));
+    }
+
+    @Override
+    public void startScan() {
+        scanner.startScan();
+    }
+
+    @Override
+    public void stopScan() {
+        scanner.stopScan();
+    }
+
+    @Override
+    public void getPrinterSn(String address) {
+        tracedCallbacks.lastAddress = address;
+        trace.call("getPrinterSn", address, null);
+        try {
+            delegate.getPrinterSn(address);
+        } catch (RuntimeException e) {
+            throw failed("getPrinterSn", address, e);
+        }
+    }
+
+    @Override
+    public void getPrinterWifiList(String address) {
+        tracedCallbacks.lastAddress = address;
+        trace.call("getPrinterWifiList", address, null);
+        try {
+            delegate.getPrinterWifiList(address);
+        } catch (RuntimeException e) {
+            throw failed("getPrinterWifiList", address, e);
+        }
+    }
+
+    @Override
+    public void setPrinterWifi(String address, byte[] essid, String password) {
+        tracedCallbacks.lastAddress = address;
+        trace.call("setPrinterWifi", address, essid == null ? null : new String(essid, StandardCharsets.UTF_8));
+        try {
+            delegate.setPrinterWifi(address, essid, password);
+        } catch (RuntimeException e) {
+            throw failed("setPrinterWifi", address, e);
+        }
+    }
+
+    @Override
+    public void disconnect(String address) {
+        trace.call("disconnect", address, null);
+        try {
+            delegate.disconnect(address);
+        } catch (RuntimeException e) {
+            throw failed("disconnect", address, e);
+        }
+    }
+
+    private static RuntimeException failed(String event, String address, RuntimeException e) {
+        SdkCallTrace.getInstance().callback(event + " threw", address, 0, e.toString());
+        return e;
+    }
+
+    private static final class TracingScanner implements ScanTransport {
+        private final SdkCallTrace trace = SdkCallTrace.getInstance();
+        private final ScanTransport delegate;
+
+        TracingScanner(ScanTransport delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void startScan() {
+            trace.call("startScan", null, null);
+            try {
+                delegate.startScan();
+            } catch (RuntimeException e) {
+                throw failed("startScan", null, e);
+            }
+        }
+
+        @Override
+        public void stopScan() {
+            trace.call("stopScan", null, null);
+            try {
+                delegate.stopScan();
+            } catch (RuntimeException e) {
+                throw failed("stopScan", null, e);
+            }
+        }
+    }
+
+    private static final class TracingCallbacks extends PrinterClientCallbacks {
+        private final SdkCallTrace trace = SdkCallTrace.getInstance();
+        private final SunmiPrinterClient.IPrinterClient callbacks;
+        // The printer last asked about, for callbacks that carry no address; always null for scanners.
+        volatile String lastAddress;
+
+        TracingCallbacks(SunmiPrinterClient.IPrinterClient callbacks) {
+            this.callbacks = callbacks;
+        }
+
+        @Override
+        public void onPrinterFount(PrinterDevice printerDevice) {
+            trace.callback("onPrinterFount", printerDevice.getAddress(), 0, printerDevice.getName());
+            callbacks.onPrinterFount(printerDevice);
+        }
+
+        @Override
+        public void routerFound(Router router) {
+            trace.callback("routerFound", lastAddress, 0, router.getName());
+            callbacks.routerFound(router);
+        }
+
+        @Override
+        public void onGetWifiListFinish() {
+            trace.callback("onGetWifiListFinish", lastAddress, 0, null);
+            callbacks.onGetWifiListFinish();
+        }
+
+        @Override
+        public void onGetWifiListFail() {
+            trace.callback("onGetWifiListFail", lastAddress, 0, null);
+            callbacks.onGetWifiListFail();
+        }
+
+        @Override
+        public void onSetWifiSuccess() {
+            trace.callback("onSetWifiSuccess", lastAddress, 0, null);
+            callbacks.onSetWifiSuccess();
+        }
+
+        @Override
+        public void wifiConfigSuccess() {
+            trace.callback("wifiConfigSuccess", lastAddress, 0, null);
+            callbacks.wifiConfigSuccess();
+        }
+
+        @Override
+        public void onWifiConfigFail() {
+            trace.callback("onWifiConfigFail", lastAddress, 0, null);
+            callbacks.onWifiConfigFail();
+        }
+
+        @Override
+        public void sendDataFail(int code, String msg) {
+            trace.callback("sendDataFail", lastAddress, code, msg);
+            callbacks.sendDataFail(code, msg);
+        }
+
+        @Override
+        public void getSnRequestSuccess() {
+            trace.callback("getSnRequestSuccess", lastAddress, 0, null);
+            callbacks.getSnRequestSuccess();
+        }
+
+        @Override
+        public void onSnReceived(String sn) {
+            trace.callback("onSnReceived", lastAddress, 0, sn);
+            callbacks.onSnReceived(sn);
+        }
+
+        // Not an SDK callback, and one per advertisement, so passed on without tracing.
+        @Override
+        public void onSignalStrength(String address, int rssi) {
+            if (callbacks instanceof PrinterClientCallbacks) {
+                ((PrinterClientCallbacks) callbacks).onSignalStrength(address, rssi);
+            }
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            trace.callback("onScanFailed", null, errorCode, null);
+            if (callbacks instanceof PrinterClientCallbacks) {
+                ((PrinterClientCallbacks) callbacks).onScanFailed(errorCode);
+            }
+        }
+    }
+}
@@ -2,8 +2,6 @@ package com.sunmi.printerconfig;
 
 import android.bluetooth.BluetoothDevice;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
@@ -17,17 +15,13 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.sunmi.cloudprinter.bean.PrinterDevice;
 import com.sunmi.cloudprinter.bean.Router;
-import com.sunmi.cloudprinter.presenter.SunmiPrinterClient;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
-public class WifiConfigActivity extends AppCompatActivity implements SunmiPrinterClient.IPrinterClient {
-    private static final int WIFI_CONFIG_TIMEOUT_MS = 25_000;
-
+public class WifiConfigActivity extends AppCompatActivity implements ProvisioningFlow.Observer {
     private String printerAddress;
     private String printerName;
 
@@ -40,18 +34,19 @@ public class WifiConfigActivity extends AppCompatActivity implements SunmiPrinte
     private ProgressBar progressBar;
     private TextView statusText;
 
-    private SunmiPrinterClient sunmiPrinterClient;
+    private ProvisioningFlow provisioningFlow;
 
     private ArrayAdapter<String> wifiAdapter;
-    private final List<Router> availableRouters = new ArrayList<>();
+    private final List<String> wifiOptions = new ArrayList<>();
+    private RouterIndex routerIndex;
+    private Object selectedRouterKey;
+    private boolean manualEntryChosen = false;
+    private boolean wifiOptionsChanged = false;
     private boolean waitingForWifiConfigResult = false;
-
-    private final Handler wifiConfigTimeoutHandler = new Handler(Looper.getMainLooper());
-    private final Runnable wifiConfigTimeoutRunnable = () -> {
-        if (waitingForWifiConfigResult) {
-            handleConfigurationFailure(getString(R.string.printer_wifi_config_timeout));
-        }
-    };
+    // How much of the flow's router list has been merged into routerIndex.
+    private int routerGeneration = -1;
+    private int mergedRouterCount = 0;
+    private ProvisioningFlow.State flowState;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -90,10 +85,7 @@ public class WifiConfigActivity extends AppCompatActivity implements SunmiPrinte
         progressBar = findViewById(R.id.progressBar);
         statusText = findViewById(R.id.statusText);
 
-        sunmiPrinterClient = new SunmiPrinterClient(
-            new ReceiverSafeContext(getApplicationContext()),
-            this
-        );
+        provisioningFlow = ProvisioningFlow.getInstance(this);
 
         printerNameText.setText(getString(R.string.connected_to, printerName));
 
@@ -120,25 +112,27 @@ public class WifiConfigActivity extends AppCompatActivity implements SunmiPrinte
 
             configurePrinter(selectedRouter, password);
         });
+
+        provisioningFlow.addObserver(this);
     }
 
     @Override
     protected void onStart() {
         super.onStart();
-        loadNetworksFromPrinter();
+        // Attaches the printer if the flow is elsewhere, or refreshes an expired network list.
+        provisioningFlow.openPrinter(printerAddress);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        waitingForWifiConfigResult = false;
-        wifiConfigTimeoutHandler.removeCallbacks(wifiConfigTimeoutRunnable);
-
-        if (sunmiPrinterClient != null && printerAddress != null && !printerAddress.isEmpty()) {
-            try {
-                sunmiPrinterClient.disconnect(printerAddress);
-            } catch (Throwable ignored) {
-            }
+        if (provisioningFlow == null) {
+            return;
+        }
+        provisioningFlow.removeObserver(this);
+        // A configuration change recreates the screen; only leaving it ends the flow.
+        if (isFinishing()) {
+            provisioningFlow.close(printerAddress);
         }
     }
 
@@ -159,7 +153,25 @@ public class WifiConfigActivity extends AppCompatActivity implements SunmiPrinte
     }
 
     private void setupWifiSpinner() {
-        wifiAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, new ArrayList<>());
+        routerIndex = new RouterIndex(getString(R.string.unknown_device));
+        routerIndex.setListener(new RouterIndex.Listener() {
+            @Override
+            public void onRouterInserted(int position, RouterIndex.Entry entry) {
+                wifiOptions.add(position, entry.getDisplayName());
+                wifiOptionsChanged = true;
+            }
+
+            @Override
+            public void onRouterMoved(int fromPosition, int toPosition, RouterIndex.Entry entry) {
+                wifiOptions.remove(fromPosition);
+                wifiOptions.add(toPosition, entry.getDisplayName());
+                wifiOptionsChanged = true;
+            }
+        });
+
+        // The adapter shows wifiOptions directly, so router updates edit it in place instead of rebuilding it.
+        wifiOptions.add(getString(R.string.manual_entry_option));
+        wifiAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, wifiOptions);
         wifiAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         wifiSpinner.setAdapter(wifiAdapter);
 
@@ -167,6 +179,14 @@ public class WifiConfigActivity extends AppCompatActivity implements SunmiPrinte
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
                 boolean manualSelected = isManualEntrySelected(position);
+                if (manualSelected) {
+                    selectedRouterKey = null;
+                    // Only a deliberate choice while networks are listed should stick.
+                    manualEntryChosen = !routerIndex.isEmpty();
+                } else if (position < routerIndex.size()) {
+                    selectedRouterKey = routerIndex.get(position).getKey();
+                    manualEntryChosen = false;
+                }
                 manualSsidContainer.setVisibility(manualSelected ? View.VISIBLE : View.GONE);
                 if (!manualSelected) {
                     manualSsidInput.setText("");
@@ -179,13 +199,13 @@ public class WifiConfigActivity extends AppCompatActivity implements SunmiPrinte
             }
         });
 
-        updateWifiSpinner();
+        restoreSelection();
     }
 
     private Router resolveSelectedRouter() {
         int selectedPosition = wifiSpinner.getSelectedItemPosition();
 
-        if (selectedPosition < 0 || selectedPosition >= availableRouters.size()) {
+        if (selectedPosition < 0 || selectedPosition >= routerIndex.size()) {
             return null;
         }
 
@@ -193,47 +213,52 @@ public class WifiConfigActivity extends AppCompatActivity implements SunmiPrinte
             return null;
         }
 
-        return availableRouters.get(selectedPosition);
+        return routerIndex.get(selectedPosition).getRouter();
     }
 
     private boolean isManualEntrySelected(int position) {
         return wifiAdapter != null && position == wifiAdapter.getCount() - 1;
     }
 
-    private void updateWifiSpinner() {
-        List<String> options = new ArrayList<>();
-        for (Router router : availableRouters) {
-            options.add(getRouterDisplayName(router));
+    private void mergeRouters(List<Router> routers) {
+        for (Router router : routers) {
+            routerIndex.merge(router);
+        }
+        if (wifiOptionsChanged) {
+            wifiOptionsChanged = false;
+            wifiAdapter.notifyDataSetChanged();
         }
-        options.add(getString(R.string.manual_entry_option));
+        restoreSelection();
+    }
 
-        wifiAdapter.clear();
-        wifiAdapter.addAll(options);
+    private void clearRouters() {
+        routerIndex.clear();
+        wifiOptions.subList(0, wifiOptions.size() - 1).clear();
         wifiAdapter.notifyDataSetChanged();
-
-        if (!availableRouters.isEmpty()) {
-            wifiSpinner.setSelection(0);
-            manualSsidContainer.setVisibility(View.GONE);
-            configureButton.setEnabled(true);
-        } else {
-            wifiSpinner.setSelection(wifiAdapter.getCount() - 1);
-            manualSsidContainer.setVisibility(View.VISIBLE);
-            configureButton.setEnabled(true);
-        }
+        selectedRouterKey = null;
+        manualEntryChosen = false;
+        restoreSelection();
     }
 
-    private String getRouterDisplayName(Router router) {
-        String name = router.getName();
-        if (name != null && !name.trim().isEmpty()) {
-            return name.trim();
+    // Keeps the selected network selected while entries are inserted or reordered around it.
+    private void restoreSelection() {
+        int manualPosition = wifiOptions.size() - 1;
+        int target = selectedRouterKey == null ? -1 : routerIndex.positionOf(selectedRouterKey);
+        if (target < 0) {
+            if (manualEntryChosen || routerIndex.isEmpty()) {
+                selectedRouterKey = null;
+                target = manualPosition;
+            } else {
+                selectedRouterKey = routerIndex.get(0).getKey();
+                target = 0;
+            }
         }
 
-        byte[] essid = router.getEssid();
-        if (essid == null || essid.length == 0) {
-            return getString(R.string.unknown_device);
+        if (wifiSpinner.getSelectedItemPosition() != target) {
+            wifiSpinner.setSelection(target);
         }
-
-        return new String(essid, StandardCharsets.UTF_8).trim();
+        manualSsidContainer.setVisibility(target == manualPosition ? View.VISIBLE : View.GONE);
+        configureButton.setEnabled(!waitingForWifiConfigResult);
     }
 
     private Router buildManualRouter(String ssid) {
@@ -244,130 +269,118 @@ public class WifiConfigActivity extends AppCompatActivity implements SunmiPrinte
         return router;
     }
 
-    private void loadNetworksFromPrinter() {
-        configureButton.setEnabled(false);
-        progressBar.setVisibility(View.VISIBLE);
-        statusText.setText(R.string.printer_wifi_scanning);
-
-        availableRouters.clear();
-        updateWifiSpinner();
-
-        try {
-            sunmiPrinterClient.getPrinterWifiList(printerAddress);
-        } catch (Throwable t) {
-            progressBar.setVisibility(View.GONE);
-            statusText.setText(R.string.printer_wifi_scan_failed);
-            configureButton.setEnabled(true);
-        }
-    }
-
     private void configurePrinter(Router router, String password) {
         waitingForWifiConfigResult = true;
-        wifiConfigTimeoutHandler.removeCallbacks(wifiConfigTimeoutRunnable);
-        wifiConfigTimeoutHandler.postDelayed(wifiConfigTimeoutRunnable, WIFI_CONFIG_TIMEOUT_MS);
-
         configureButton.setEnabled(false);
         progressBar.setVisibility(View.VISIBLE);
         statusText.setText(R.string.sending_wifi_to_printer);
 
-        try {
-            sunmiPrinterClient.setPrinterWifi(printerAddress, router.getEssid(), password == null ? "" : password);
-        } catch (Throwable t) {
-            handleConfigurationFailure(getString(R.string.wifi_push_failed_try_24g));
+        String ssidLabel = RouterIndex.displayNameOf(router, getString(R.string.unknown_device));
+        if (!provisioningFlow.configure(printerAddress, router.getEssid(), password, ssidLabel)) {
+            onConfigureRejected();
         }
     }
 
-    private void handleConfigurationSuccess() {
+    // The flow was busy with something else, so no credentials were sent.
+    private void onConfigureRejected() {
         waitingForWifiConfigResult = false;
-        wifiConfigTimeoutHandler.removeCallbacks(wifiConfigTimeoutRunnable);
-
-        runOnUiThread(() -> {
-            progressBar.setVisibility(View.GONE);
-            configureButton.setEnabled(true);
-            statusText.setText(R.string.success);
-            Toast.makeText(this, R.string.success, Toast.LENGTH_LONG).show();
-            finish();
-        });
-    }
-
-    private void handleConfigurationFailure(String message) {
-        waitingForWifiConfigResult = false;
-        wifiConfigTimeoutHandler.removeCallbacks(wifiConfigTimeoutRunnable);
-
-        runOnUiThread(() -> {
-            progressBar.setVisibility(View.GONE);
-            configureButton.setEnabled(true);
-            statusText.setText(getString(R.string.error, message));
-            Toast.makeText(this, message, Toast.LENGTH_LONG).show();
-        });
-    }
-
-    @Override
-    public void onPrinterFount(PrinterDevice printerDevice) {
-        // Not used in this activity.
+        progressBar.setVisibility(View.GONE);
+        configureButton.setEnabled(true);
+        statusText.setText(R.string.printer_not_ready_for_wifi);
+        Toast.makeText(this, R.string.printer_not_ready_for_wifi, Toast.LENGTH_SHORT).show();
     }
 
     @Override
-    public void routerFound(Router router) {
-        runOnUiThread(() -> {
-            availableRouters.add(router);
-            updateWifiSpinner();
-        });
-    }
-
-    @Override
-    public void onGetWifiListFinish() {
-        runOnUiThread(() -> {
-            progressBar.setVisibility(View.GONE);
-            configureButton.setEnabled(true);
-
-            if (availableRouters.isEmpty()) {
-                statusText.setText(R.string.printer_wifi_no_networks_found);
-                manualSsidContainer.setVisibility(View.VISIBLE);
-            } else {
-                statusText.setText(getString(R.string.wifi_networks_found, availableRouters.size()));
+    public void onFlowSnapshot(ProvisioningFlow.Snapshot snapshot) {
+        if (!printerAddress.equals(snapshot.getPrinterAddress())) {
+            // The flow has not attached this printer yet, or has moved on, dropping any push we asked for.
+            if (waitingForWifiConfigResult) {
+                onConfigureRejected();
             }
-        });
-    }
-
-    @Override
-    public void onGetWifiListFail() {
-        runOnUiThread(() -> {
-            progressBar.setVisibility(View.GONE);
-            configureButton.setEnabled(true);
-            statusText.setText(R.string.printer_wifi_scan_failed);
-            manualSsidContainer.setVisibility(View.VISIBLE);
-        });
-    }
-
-    @Override
-    public void onSetWifiSuccess() {
-        runOnUiThread(() -> statusText.setText(R.string.configuring));
-    }
-
-    @Override
-    public void wifiConfigSuccess() {
-        handleConfigurationSuccess();
-    }
-
-    @Override
-    public void onWifiConfigFail() {
-        handleConfigurationFailure(getString(R.string.wifi_push_failed_try_24g));
-    }
+            return;
+        }
 
-    @Override
-    public void sendDataFail(int code, String msg) {
-        String failureMessage = getString(R.string.wifi_push_error_with_code, code, msg == null ? "Unknown" : msg);
-        handleConfigurationFailure(failureMessage);
-    }
+        if (snapshot.getRouterGeneration() != routerGeneration) {
+            routerGeneration = snapshot.getRouterGeneration();
+            mergedRouterCount = 0;
+            clearRouters();
+        }
+        List<Router> routers = snapshot.getRouters();
+        if (routers.size() > mergedRouterCount) {
+            mergeRouters(routers.subList(mergedRouterCount, routers.size()));
+            mergedRouterCount = routers.size();
+        }
 
-    @Override
-    public void getSnRequestSuccess() {
-        // Not used in this activity.
+        ProvisioningFlow.State previousState = flowState;
+        flowState = snapshot.getState();
+        waitingForWifiConfigResult = flowState == ProvisioningFlow.State.CONFIGURING
+            || flowState == ProvisioningFlow.State.VERIFYING;
+        switch (flowState) {
+            case LISTING_WIFI:
+                progressBar.setVisibility(View.VISIBLE);
+                configureButton.setEnabled(!routerIndex.isEmpty());
+                if (snapshot.getRetryAttempt() > 0) {
+                    statusText.setText(getString(R.string.retrying_attempt, snapshot.getRetryAttempt(), snapshot.getRetryMaxAttempts()));
+                } else {
+                    statusText.setText(routerIndex.isEmpty() ? R.string.printer_wifi_scanning : R.string.printer_wifi_refreshing);
+                }
+                break;
+            case READY:
+                showWifiListResult(snapshot.isWifiListFailed());
+                break;
+            case CONFIGURING:
+                configureButton.setEnabled(false);
+                progressBar.setVisibility(View.VISIBLE);
+                if (snapshot.getRetryAttempt() > 0) {
+                    statusText.setText(getString(R.string.retrying_attempt, snapshot.getRetryAttempt(), snapshot.getRetryMaxAttempts()));
+                } else {
+                    statusText.setText(snapshot.isWifiPushAcknowledged() ? R.string.configuring : R.string.sending_wifi_to_printer);
+                }
+                break;
+            case VERIFYING:
+                configureButton.setEnabled(false);
+                progressBar.setVisibility(View.VISIBLE);
+                statusText.setText(R.string.verifying_printer_online);
+                break;
+            case DONE:
+                if (previousState != ProvisioningFlow.State.DONE) {
+                    progressBar.setVisibility(View.GONE);
+                    String success;
+                    if (snapshot.getLanHost() != null) {
+                        success = getString(R.string.success_online, snapshot.getLanHost(), snapshot.getTimeToOnlineMs() / 1000d);
+                    } else if (snapshot.getMessage() != null) {
+                        success = getString(R.string.success_with_note, snapshot.getMessage());
+                    } else {
+                        success = getString(R.string.success);
+                    }
+                    statusText.setText(success);
+                    Toast.makeText(this, success, Toast.LENGTH_LONG).show();
+                    finish();
+                }
+                break;
+            case FAILED:
+                progressBar.setVisibility(View.GONE);
+                configureButton.setEnabled(true);
+                if (previousState != ProvisioningFlow.State.FAILED) {
+                    statusText.setText(getString(R.string.error, snapshot.getMessage()));
+                    Toast.makeText(this, snapshot.getMessage(), Toast.LENGTH_LONG).show();
+                }
+                break;
+            default:
+                break;
+        }
     }
 
-    @Override
-    public void onSnReceived(String sn) {
-        // Not used in this activity.
+    private void showWifiListResult(boolean listFailed) {
+        progressBar.setVisibility(View.GONE);
+        configureButton.setEnabled(true);
+        if (!routerIndex.isEmpty()) {
+            statusText.setText(listFailed
+                ? getString(R.string.printer_wifi_refresh_failed)
+                : getString(R.string.wifi_networks_found, routerIndex.size()));
+            return;
+        }
+        statusText.setText(listFailed ? R.string.printer_wifi_scan_failed : R.string.printer_wifi_no_networks_found);
+        manualSsidContainer.setVisibility(View.VISIBLE);
     }
 }
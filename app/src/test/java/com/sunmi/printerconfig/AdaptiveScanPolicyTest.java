@@ -0,0 +1,127 @@
+package com.sunmi.printerconfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class AdaptiveScanPolicyTest {
+    private static final long MAX_SCAN_MS = 30_000;
+    private static final long MIN_SCAN_MS = 2_000;
+    private static final long QUIET_PERIOD_MS = 4_000;
+
+    // The policy has no clock of its own; this is the fake one every call is driven by.
+    private long nowMs;
+    private final List<DiscoveredPrinter> printers = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        nowMs = 1_000_000;
+    }
+
+    private AdaptiveScanPolicy start(long quietPeriodMs, int expectedCount, Set<String> addresses, Set<String> serials) {
+        AdaptiveScanPolicy policy =
+            new AdaptiveScanPolicy(MAX_SCAN_MS, MIN_SCAN_MS, quietPeriodMs, expectedCount, addresses, serials);
+        policy.onScanStarted(nowMs);
+        return policy;
+    }
+
+    private void discover(AdaptiveScanPolicy policy, DiscoveredPrinter printer) {
+        printers.add(printer);
+        int live = 0;
+        for (DiscoveredPrinter each : printers) {
+            if (!each.isCached()) {
+                live++;
+            }
+        }
+        policy.onSnapshot(new DiscoverySnapshot(new ArrayList<>(printers), live, 1), nowMs);
+    }
+
+    private void advance(long ms) {
+        nowMs += ms;
+    }
+
+    @Test
+    public void emptySiteScansForTheFullWindow() {
+        AdaptiveScanPolicy policy = start(QUIET_PERIOD_MS, 0, null, null);
+
+        advance(MAX_SCAN_MS - 1);
+        assertNull(policy.check(nowMs));
+        assertEquals(nowMs + 1, policy.nextCheckAtMs());
+
+        advance(1);
+        assertEquals(ScanTerminationPolicy.StopReason.TIMEOUT, policy.check(nowMs));
+    }
+
+    @Test
+    public void targetAddressStopsOnlyAfterTheMinimumScanTime() {
+        AdaptiveScanPolicy policy = start(0, 0, Collections.singleton("5a:1a:00:00:00:01"), null);
+
+        advance(500);
+        discover(policy, new DiscoveredPrinter("5A:1A:00:00:00:01", "NT311"));
+        assertNull(policy.check(nowMs));
+        assertEquals(nowMs - 500 + MIN_SCAN_MS, policy.nextCheckAtMs());
+
+        advance(MIN_SCAN_MS - 500);
+        assertEquals(ScanTerminationPolicy.StopReason.TARGET_FOUND, policy.check(nowMs));
+    }
+
+    @Test
+    public void targetSerialIsMatchedButCachedEntriesAreNot() {
+        AdaptiveScanPolicy policy = start(0, 0, null, Collections.singleton("N411000001"));
+
+        discover(policy, new DiscoveredPrinter("5A:1A:00:00:00:01", "NT311", "N411000001", true));
+        advance(MIN_SCAN_MS);
+        assertNull(policy.check(nowMs));
+
+        discover(policy, new DiscoveredPrinter("5A:1A:00:00:00:02", "NT311", "N411000001", false));
+        assertEquals(ScanTerminationPolicy.StopReason.TARGET_FOUND, policy.check(nowMs));
+    }
+
+    @Test
+    public void expectedCountIgnoresDevicesThatAreNotPrinters() {
+        AdaptiveScanPolicy policy = start(0, 2, null, null);
+        advance(MIN_SCAN_MS);
+
+        discover(policy, new DiscoveredPrinter("5A:1A:00:00:00:01", "NT311"));
+        discover(policy, new DiscoveredPrinter("00:11:22:33:44:55", "Headphones"));
+        assertNull(policy.check(nowMs));
+
+        discover(policy, new DiscoveredPrinter("5A:1A:00:00:00:02", "Sunmi NT211"));
+        assertEquals(ScanTerminationPolicy.StopReason.EXPECTED_COUNT_REACHED, policy.check(nowMs));
+    }
+
+    @Test
+    public void quietPeriodRestartsWithEachNewPrinter() {
+        AdaptiveScanPolicy policy = start(QUIET_PERIOD_MS, 0, null, null);
+
+        advance(1_000);
+        discover(policy, new DiscoveredPrinter("5A:1A:00:00:00:01", "NT311"));
+        advance(3_000);
+        discover(policy, new DiscoveredPrinter("5A:1A:00:00:00:02", "NT311"));
+        assertEquals(nowMs + QUIET_PERIOD_MS, policy.nextCheckAtMs());
+
+        advance(QUIET_PERIOD_MS - 1);
+        assertNull(policy.check(nowMs));
+        advance(1);
+        assertEquals(ScanTerminationPolicy.StopReason.QUIET_PERIOD, policy.check(nowMs));
+    }
+
+    @Test
+    public void restartForgetsThePreviousScan() {
+        AdaptiveScanPolicy policy = start(0, 1, null, null);
+        discover(policy, new DiscoveredPrinter("5A:1A:00:00:00:01", "NT311"));
+        advance(MIN_SCAN_MS);
+        assertEquals(ScanTerminationPolicy.StopReason.EXPECTED_COUNT_REACHED, policy.check(nowMs));
+
+        policy.onScanStarted(nowMs);
+        advance(MIN_SCAN_MS);
+        assertNull(policy.check(nowMs));
+    }
+}
@@ -0,0 +1,96 @@
+package com.sunmi.printerconfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+public class DeviceRegistryTest {
+    private static final long MAC = 0x5A1A0000ABCDL;
+
+    private static String address(int index) {
+        return String.format(Locale.ROOT, "5A:1A:00:00:%02X:%02X", index >> 8, index & 0xFF);
+    }
+
+    @Test
+    public void parsesEverySupportedSpelling() {
+        assertEquals(MAC, DeviceRegistry.parseMac("5A:1A:00:00:AB:CD"));
+        assertEquals(MAC, DeviceRegistry.parseMac("5a:1a:00:00:ab:cd"));
+        assertEquals(MAC, DeviceRegistry.parseMac("5A-1A-00-00-AB-CD"));
+        assertEquals(MAC, DeviceRegistry.parseMac("5A1A0000ABCD"));
+        assertEquals(MAC, DeviceRegistry.parseMac("  5A:1A:00:00:AB:CD "));
+    }
+
+    @Test
+    public void keepsTheTopBitsOfTheMac() {
+        assertEquals(0xFFFFFFFFFFFFL, DeviceRegistry.parseMac("FF:FF:FF:FF:FF:FF"));
+        assertEquals(0L, DeviceRegistry.parseMac("00:00:00:00:00:00"));
+    }
+
+    @Test
+    public void rejectsTheWrongNumberOfDigits() {
+        assertEquals(DeviceRegistry.NOT_A_MAC, DeviceRegistry.parseMac("5A:1A:00:00:AB:C"));
+        assertEquals(DeviceRegistry.NOT_A_MAC, DeviceRegistry.parseMac("5A:1A:00:00:AB:CDE"));
+        assertEquals(DeviceRegistry.NOT_A_MAC, DeviceRegistry.parseMac("5A1A0000ABC"));
+        assertEquals(DeviceRegistry.NOT_A_MAC, DeviceRegistry.parseMac("5A1A0000ABCDE"));
+        assertEquals(DeviceRegistry.NOT_A_MAC, DeviceRegistry.parseMac(""));
+        assertEquals(DeviceRegistry.NOT_A_MAC, DeviceRegistry.parseMac("   "));
+    }
+
+    @Test
+    public void rejectsStrayCharacters() {
+        assertEquals(DeviceRegistry.NOT_A_MAC, DeviceRegistry.parseMac("5A:1A:00:00:AB:CG"));
+        assertEquals(DeviceRegistry.NOT_A_MAC, DeviceRegistry.parseMac("5A.1A.00.00.AB.CD"));
+        assertEquals(DeviceRegistry.NOT_A_MAC, DeviceRegistry.parseMac("5A:1A:00 00:AB:CD"));
+        assertEquals(DeviceRegistry.NOT_A_MAC, DeviceRegistry.parseMac("0x5A1A0000ABCD"));
+        // A full-width digit, which Character.digit would read as 5.
+        assertEquals(DeviceRegistry.NOT_A_MAC, DeviceRegistry.parseMac("\uFF15A:1A:00:00:AB:CD"));
+    }
+
+    @Test
+    public void findsEveryDeviceAfterGrowingPastTheInitialCapacity() {
+        DeviceRegistry registry = new DeviceRegistry();
+        int count = 1_000;
+        for (int i = 0; i < count; i++) {
+            long mac = DeviceRegistry.parseMac(address(i));
+            assertEquals(-1, registry.find(mac));
+            assertEquals(i, registry.add(mac, address(i), "Printer " + i));
+        }
+
+        assertEquals(count, registry.size());
+        for (int i = 0; i < count; i++) {
+            int slot = registry.find(DeviceRegistry.parseMac(address(i)));
+            assertEquals(i, slot);
+            assertEquals(address(i), registry.getAddress(slot));
+            assertEquals("Printer " + i, registry.getName(slot));
+        }
+        assertEquals(-1, registry.find(DeviceRegistry.parseMac(address(count))));
+    }
+
+    @Test
+    public void signalWindowSurvivesGrowth() {
+        DeviceRegistry registry = new DeviceRegistry();
+        int first = registry.add(MAC, "5A:1A:00:00:AB:CD", "");
+        SignalWindow window = registry.signal(first);
+        for (int i = 1; i <= 64; i++) {
+            registry.add(MAC + i, address(i), "");
+        }
+
+        assertSame(window, registry.signal(registry.find(MAC)));
+    }
+
+    @Test
+    public void clearForgetsEveryDevice() {
+        DeviceRegistry registry = new DeviceRegistry();
+        for (int i = 0; i < 100; i++) {
+            registry.add(DeviceRegistry.parseMac(address(i)), address(i), "");
+        }
+        registry.clear();
+
+        assertEquals(0, registry.size());
+        assertEquals(-1, registry.find(DeviceRegistry.parseMac(address(5))));
+        assertEquals(0, registry.add(DeviceRegistry.parseMac(address(5)), address(5), ""));
+    }
+}
@@ -0,0 +1,155 @@
+package com.sunmi.printerconfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+public class DiscoveredPrinterAdapterTest {
+    private static final int BURST = 40;
+    private static final int WIDTH_PX = 1080;
+    // Tall enough for every row of the burst to be on screen, so every row that needs a bind gets one.
+    private static final int HEIGHT_PX = 100_000;
+
+    private static final class CountingAdapter extends DiscoveredPrinterAdapter {
+        int fullBinds;
+        int titleBinds;
+        int detailBinds;
+
+        CountingAdapter() {
+            super(device -> {
+            });
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+            if (payloads.isEmpty()) {
+                fullBinds++;
+            }
+            if (payloads.contains(PAYLOAD_TITLE_CHANGED)) {
+                titleBinds++;
+            }
+            if (payloads.contains(PAYLOAD_DETAIL_CHANGED)) {
+                detailBinds++;
+            }
+            super.onBindViewHolder(holder, position, payloads);
+        }
+
+        void resetCounts() {
+            fullBinds = 0;
+            titleBinds = 0;
+            detailBinds = 0;
+        }
+    }
+
+    private RecyclerView recyclerView;
+    private CountingAdapter adapter;
+    private final List<DiscoveredPrinter> printers = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        Context context = new ContextThemeWrapper(
+            ApplicationProvider.getApplicationContext(), androidx.appcompat.R.style.Theme_AppCompat_Light);
+        recyclerView = new RecyclerView(context);
+        recyclerView.setLayoutManager(new LinearLayoutManager(context));
+        // Change animations would bind a second holder for the same row.
+        recyclerView.setItemAnimator(null);
+        adapter = new CountingAdapter();
+        recyclerView.setAdapter(adapter);
+        layOut();
+    }
+
+    private void layOut() {
+        recyclerView.measure(
+            View.MeasureSpec.makeMeasureSpec(WIDTH_PX, View.MeasureSpec.EXACTLY),
+            View.MeasureSpec.makeMeasureSpec(HEIGHT_PX, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, WIDTH_PX, HEIGHT_PX);
+    }
+
+    private static String address(int index) {
+        return String.format(Locale.ROOT, "5A:1A:00:00:00:%02X", index);
+    }
+
+    private void discoverBurst() {
+        for (int i = 0; i < BURST; i++) {
+            printers.add(new DiscoveredPrinter(address(i), "CloudPrint_" + i, "", false, -70));
+            adapter.submitList(printers);
+            layOut();
+        }
+    }
+
+    @Test
+    public void burstOfDiscoveriesBindsEachRowOnce() {
+        discoverBurst();
+
+        assertEquals(BURST, adapter.getItemCount());
+        assertEquals(BURST, recyclerView.getChildCount());
+        // A full rebind per discovery would be 1 + 2 + ... + BURST.
+        assertEquals(BURST, adapter.fullBinds);
+        assertEquals(0, adapter.titleBinds);
+        assertEquals(0, adapter.detailBinds);
+    }
+
+    @Test
+    public void signalUpdatesRebindOnlyTheDetailLine() {
+        discoverBurst();
+        adapter.resetCounts();
+
+        for (int i = 0; i < BURST; i += 4) {
+            printers.set(i, printers.get(i).withRssi(-50));
+        }
+        adapter.submitList(printers);
+        layOut();
+
+        assertEquals(0, adapter.fullBinds);
+        assertEquals(0, adapter.titleBinds);
+        assertEquals(BURST / 4, adapter.detailBinds);
+        TextView detail = recyclerView.findViewHolderForItemId(printers.get(0).getStableId())
+            .itemView.findViewById(R.id.deviceAddress);
+        assertTrue(detail.getText().toString().contains("-50"));
+    }
+
+    @Test
+    public void renameRebindsOnlyTheTitleLine() {
+        discoverBurst();
+        adapter.resetCounts();
+
+        DiscoveredPrinter renamed = new DiscoveredPrinter(address(3), "NT311", "", false, -70);
+        printers.set(3, renamed);
+        adapter.submitList(printers);
+        layOut();
+
+        assertEquals(0, adapter.fullBinds);
+        assertEquals(1, adapter.titleBinds);
+        assertEquals(0, adapter.detailBinds);
+    }
+
+    @Test
+    public void lowerCaseAddressIsTheSameRow() {
+        DiscoveredPrinter upper = new DiscoveredPrinter("5A:1A:00:00:00:AB", "CloudPrint");
+        DiscoveredPrinter lower = new DiscoveredPrinter(" 5a:1a:00:00:00:ab ", "CloudPrint");
+
+        assertEquals(upper, lower);
+        assertEquals(upper.hashCode(), lower.hashCode());
+        assertEquals(upper.getStableId(), lower.getStableId());
+        assertEquals("5A:1A:00:00:00:AB", lower.getAddress());
+    }
+}
@@ -0,0 +1,113 @@
+package com.sunmi.printerconfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+public class DiscoveryMergerTest {
+    private DiscoveryMerger merger;
+
+    @Before
+    public void setUp() {
+        merger = new DiscoveryMerger(null);
+        merger.reset(Collections.emptyList());
+    }
+
+    private static String address(int index) {
+        return String.format(Locale.ROOT, "5A:1A:00:00:00:%02X", index);
+    }
+
+    // Fills the printer's smoothing window so its shown signal is exactly rssi.
+    private void settle(int index, int rssi) {
+        for (int i = 0; i < SignalWindow.SIZE; i++) {
+            merger.mergeSignal(address(index), rssi);
+        }
+    }
+
+    private static List<String> order(DiscoverySnapshot snapshot) {
+        List<String> names = new ArrayList<>();
+        for (DiscoveredPrinter printer : snapshot.getPrinters()) {
+            names.add(printer.getName());
+        }
+        return names;
+    }
+
+    private static int largestInversion(DiscoverySnapshot snapshot) {
+        List<DiscoveredPrinter> printers = snapshot.getPrinters();
+        int largest = 0;
+        for (int i = 0; i < printers.size(); i++) {
+            for (int j = i + 1; j < printers.size(); j++) {
+                largest = Math.max(largest, printers.get(j).getRssi() - printers.get(i).getRssi());
+            }
+        }
+        return largest;
+    }
+
+    @Test
+    public void signalOrdersStrongestFirst() {
+        for (int i = 0; i < 3; i++) {
+            merger.merge(address(i), "P" + i);
+        }
+        settle(0, -80);
+        settle(1, -50);
+        settle(2, -65);
+
+        assertEquals(Arrays.asList("P1", "P2", "P0"), order(merger.takeSnapshot()));
+    }
+
+    @Test
+    public void smallChangesDoNotReorder() {
+        merger.merge(address(0), "P0");
+        merger.merge(address(1), "P1");
+        settle(0, -60);
+        settle(1, -62);
+        merger.takeSnapshot();
+
+        settle(1, -60 + DiscoveryMerger.REORDER_HYSTERESIS_DB);
+
+        assertEquals(Arrays.asList("P0", "P1"), order(merger.takeSnapshot()));
+    }
+
+    @Test
+    public void driftWithinTheHysteresisCannotAccumulate() {
+        int count = 15;
+        for (int i = 0; i < count; i++) {
+            merger.merge(address(i), "P" + i);
+            settle(i, -50 - i);
+        }
+        merger.takeSnapshot();
+
+        // Each printer in turn climbs to just within the hysteresis of the one above it, bottom first,
+        // which adjacent-only comparisons would accept at every step.
+        for (int step = 0; step < 20; step++) {
+            for (int i = count - 1; i > 0; i--) {
+                DiscoverySnapshot snapshot = merger.takeSnapshot();
+                int position = order(snapshot).indexOf("P" + i);
+                if (position > 0) {
+                    int above = snapshot.getPrinters().get(position - 1).getRssi();
+                    settle(i, above + DiscoveryMerger.REORDER_HYSTERESIS_DB);
+                }
+            }
+            assertTrue(largestInversion(merger.takeSnapshot()) <= DiscoveryMerger.REORDER_HYSTERESIS_DB);
+        }
+    }
+
+    @Test
+    public void unheardPrintersStayAfterHeardOnesInArrivalOrder() {
+        for (int i = 0; i < 4; i++) {
+            merger.merge(address(i), "P" + i);
+        }
+        settle(3, -70);
+        settle(1, -60);
+
+        assertEquals(Arrays.asList("P1", "P3", "P0", "P2"), order(merger.takeSnapshot()));
+    }
+}
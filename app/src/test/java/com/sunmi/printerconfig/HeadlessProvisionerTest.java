@@ -0,0 +1,106 @@
+package com.sunmi.printerconfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs headless requests through the real {@link ProvisioningFlow} against a {@link SimulatedPrinterFleet}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class HeadlessProvisionerTest {
+    private static final String ADDRESS = "5A:1A:00:00:00:01";
+    private static final String SERIAL = "N4SIM0000001";
+    private static final String SSID = "Shop-WiFi";
+    private static final String PASSWORD = "secret";
+    // Real time allowed for the fleet's thread and the flow's worker to finish a run.
+    private static final long RUN_WAIT_MS = 10_000;
+    // Simulated time advanced per step: small against every flow timeout, so none fires early.
+    private static final long STEP_MS = 20;
+
+    private Context context;
+    private SimulatedPrinterFleet fleet;
+    private ProvisioningFlow flow;
+    private HeadlessProvisioningResult result;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        fleet = new SimulatedPrinterFleet(7)
+            .setLatency(SimulatedPrinterFleet.Stage.ADVERTISEMENT, LatencyDistribution.fixed(10));
+        fleet.add(new SimulatedPrinter(ADDRESS, "CloudPrint_SUNMI_0001", SERIAL)
+            .addRouter(SSID, -48, true)
+            .setAcceptedPassword(PASSWORD));
+        PrinterSessionManager.getInstance(context).setTransportFactory(fleet);
+        flow = ProvisioningFlow.getInstance(context);
+        flow.setLocatorFactory(SimulatedPrinterFleet.LOCATOR_FACTORY);
+    }
+
+    @After
+    public void tearDown() {
+        PrinterSessionManager.getInstance(context).setTransportFactory(null);
+        flow.setLocatorFactory(null);
+        fleet.shutdown();
+    }
+
+    private HeadlessProvisioningResult run(HeadlessProvisioningRequest request) throws InterruptedException {
+        result = null;
+        new HeadlessProvisioner(context, flow, request, finished -> result = finished).start();
+        long deadline = System.currentTimeMillis() + RUN_WAIT_MS;
+        while (result == null && System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idleFor(STEP_MS, TimeUnit.MILLISECONDS);
+            Thread.sleep(2);
+        }
+        assertNotNull("No result within " + RUN_WAIT_MS + " ms", result);
+        return result;
+    }
+
+    @Test
+    public void configuresAPrinterGivenItsAddress() throws InterruptedException {
+        HeadlessProvisioningResult result = run(new HeadlessProvisioningRequest(ADDRESS, null, SSID, PASSWORD));
+
+        assertEquals(result.getMessage(), HeadlessProvisioningResult.Status.CONFIGURED, result.getStatus());
+        assertEquals(ADDRESS, result.getPrinterAddress());
+        assertEquals(SERIAL, result.getSerialNumber());
+        // The fleet's locator skips the LAN check.
+        assertNull(result.getLanHost());
+    }
+
+    @Test
+    public void findsAPrinterGivenOnlyItsSerial() throws InterruptedException {
+        HeadlessProvisioningResult result = run(new HeadlessProvisioningRequest(null, SERIAL, SSID, PASSWORD));
+
+        assertEquals(result.getMessage(), HeadlessProvisioningResult.Status.CONFIGURED, result.getStatus());
+        assertEquals(ADDRESS, result.getPrinterAddress());
+    }
+
+    @Test
+    public void stopsBeforePushingToTheWrongPrinter() throws InterruptedException {
+        HeadlessProvisioningResult result = run(new HeadlessProvisioningRequest(ADDRESS, "N4SIM9999999", SSID, PASSWORD));
+
+        assertEquals(HeadlessProvisioningResult.Status.SERIAL_MISMATCH, result.getStatus());
+        assertEquals(SERIAL, result.getSerialNumber());
+    }
+
+    @Test
+    public void reportsAFailedPushWithItsStep() throws InterruptedException {
+        HeadlessProvisioningResult result = run(new HeadlessProvisioningRequest(ADDRESS, null, SSID, "wrong"));
+
+        assertEquals(HeadlessProvisioningResult.Status.FAILED, result.getStatus());
+        assertEquals(ProvisioningFlow.State.CONFIGURING, result.getFailedStep());
+    }
+}
@@ -0,0 +1,57 @@
+package com.sunmi.printerconfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+import android.widget.Button;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold-start order of {@link MainActivity}: the screen comes first, the printer services after it.
+ * The milestones checked here are the ones the diagnostics report shows from field devices.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MainActivityStartupTest {
+    // Real time allowed for the background store load.
+    private static final long LOAD_WAIT_MS = 5_000;
+    private static final long FRAME_MS = 16;
+
+    @Test
+    public void printerServicesStartAfterTheFirstFrame() throws InterruptedException {
+        ProvisioningMetrics metrics = ProvisioningMetrics.getInstance();
+        ActivityController<MainActivity> controller = Robolectric.buildActivity(MainActivity.class)
+            .create().start().resume();
+        MainActivity activity = controller.get();
+
+        // Nothing has run on the main thread since onCreate: no frame, so no flow or scan yet.
+        assertTrue(metrics.getStartupMilestoneMs("activity_created") >= 0);
+        assertEquals(-1, metrics.getStartupMilestoneMs("first_frame"));
+        assertEquals(-1, metrics.getStartupMilestoneMs("printers_ready"));
+        assertFalse(activity.<Button>findViewById(R.id.scanButton).isEnabled());
+
+        controller.visible();
+        long deadline = System.currentTimeMillis() + LOAD_WAIT_MS;
+        while (metrics.getStartupMilestoneMs("printers_ready") < 0 && System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idleFor(FRAME_MS, TimeUnit.MILLISECONDS);
+            Thread.sleep(5);
+        }
+
+        long firstFrameMs = metrics.getStartupMilestoneMs("first_frame");
+        long printersReadyMs = metrics.getStartupMilestoneMs("printers_ready");
+        assertTrue(firstFrameMs >= 0);
+        assertTrue("printers_ready " + printersReadyMs + " ms before first_frame " + firstFrameMs + " ms",
+            printersReadyMs >= firstFrameMs);
+        assertTrue(activity.<Button>findViewById(R.id.scanButton).isEnabled());
+        controller.destroy();
+    }
+}
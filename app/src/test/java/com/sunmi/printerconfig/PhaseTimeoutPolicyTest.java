@@ -0,0 +1,155 @@
+package com.sunmi.printerconfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What {@link PrinterSession} teaches {@link PhaseTimeoutPolicy} about Wi-Fi pushes that are slow,
+ * retried or never answered. The printer here never replies on its own; replies are delivered by hand.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PhaseTimeoutPolicyTest {
+    private static final String ADDRESS = "5A:1A:00:00:00:01";
+    private static final byte[] ESSID = "Shop-WiFi".getBytes(StandardCharsets.UTF_8);
+    private static final long DEFAULT_MS = 25_000;
+    private static final ProvisioningMetrics.Phase PHASE = ProvisioningMetrics.Phase.WIFI_CONFIG;
+
+    private static final PrinterTransport.Factory SILENT_PRINTER = (context, callbacks) -> new PrinterTransport() {
+        @Override
+        public void startScan() {
+        }
+
+        @Override
+        public void stopScan() {
+        }
+
+        @Override
+        public void getPrinterSn(String address) {
+        }
+
+        @Override
+        public void getPrinterWifiList(String address) {
+        }
+
+        @Override
+        public void setPrinterWifi(String address, byte[] essid, String password) {
+        }
+
+        @Override
+        public void disconnect(String address) {
+        }
+    };
+
+    private final PrinterClientCallbacks user = new PrinterClientCallbacks();
+    private PrinterSessionManager sessionManager;
+    private PhaseTimeoutPolicy policy;
+    private PrinterSession session;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        sessionManager = PrinterSessionManager.getInstance(context);
+        sessionManager.setTransportFactory(SILENT_PRINTER);
+        policy = sessionManager.getTimeoutPolicy();
+        policy.reset();
+        session = sessionManager.acquire(ADDRESS, user);
+    }
+
+    @After
+    public void tearDown() {
+        if (session != null) {
+            session.releaseAndDisconnect(user);
+        }
+        sessionManager.setTransportFactory(null);
+        policy.reset();
+    }
+
+    private static void advance(long ms) {
+        shadowOf(Looper.getMainLooper()).idleFor(ms, TimeUnit.MILLISECONDS);
+    }
+
+    private long learnedTimeoutMs() {
+        return policy.getTimeoutMs(PHASE, null, DEFAULT_MS);
+    }
+
+    @Test
+    public void fastRepliesShortenTheTimeoutToTheFloor() {
+        for (int i = 0; i < PhaseTimeoutPolicy.MIN_SAMPLES; i++) {
+            session.setWifi(ESSID, "secret");
+            advance(1_000);
+            session.wifiConfigSuccess();
+        }
+
+        assertEquals((long) (DEFAULT_MS * PhaseTimeoutPolicy.FLOOR_FACTOR), learnedTimeoutMs());
+    }
+
+    @Test
+    public void retryIsTimedFromTheFirstAttempt() {
+        for (int i = 0; i < PhaseTimeoutPolicy.MIN_SAMPLES; i++) {
+            session.setWifi(ESSID, "secret");
+            advance(DEFAULT_MS);
+            // The first attempt timed out; the reply to the retry comes a second later.
+            session.setWifi(ESSID, "secret");
+            advance(1_000);
+            session.wifiConfigSuccess();
+        }
+
+        // Timed from the retry, every sample would be one second and the timeout would sit at the floor.
+        assertTrue("timeout " + learnedTimeoutMs(), learnedTimeoutMs() >= 2 * (DEFAULT_MS + 1_000));
+    }
+
+    @Test
+    public void unansweredPushesRaiseTheTimeout() {
+        for (int i = 0; i < PhaseTimeoutPolicy.MIN_SAMPLES; i++) {
+            for (int attempt = 0; attempt < 3; attempt++) {
+                session.setWifi(ESSID, "secret");
+                advance(DEFAULT_MS);
+            }
+            session.giveUpPhase(PHASE);
+        }
+
+        assertEquals((long) (DEFAULT_MS * PhaseTimeoutPolicy.CEILING_FACTOR), learnedTimeoutMs());
+    }
+
+    @Test
+    public void rejectedPushIsNotASample() {
+        for (int i = 0; i < PhaseTimeoutPolicy.MIN_SAMPLES; i++) {
+            session.setWifi(ESSID, "wrong");
+            advance(DEFAULT_MS);
+            session.onWifiConfigFail();
+            session.giveUpPhase(PHASE);
+        }
+
+        assertEquals(DEFAULT_MS, learnedTimeoutMs());
+    }
+
+    @Test
+    public void nextUserDoesNotInheritAnAbandonedPush() {
+        for (int i = 0; i < PhaseTimeoutPolicy.MIN_SAMPLES; i++) {
+            session.setWifi(ESSID, "secret");
+            advance(DEFAULT_MS);
+            session.release(user);
+            session = sessionManager.acquire(ADDRESS, user);
+            session.setWifi(ESSID, "secret");
+            advance(1_000);
+            session.wifiConfigSuccess();
+        }
+
+        assertEquals((long) (DEFAULT_MS * PhaseTimeoutPolicy.FLOOR_FACTOR), learnedTimeoutMs());
+    }
+}
@@ -0,0 +1,120 @@
+package com.sunmi.printerconfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thresholds and cool-down of {@link PrinterCircuitBreaker}; time is moved by idling the main looper.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PrinterCircuitBreakerTest {
+    private static final String ADDRESS = "5A:1A:00:00:00:01";
+    private static final String OTHER_ADDRESS = "5A:1A:00:00:00:02";
+
+    private final PrinterCircuitBreaker breaker = PrinterCircuitBreaker.getInstance();
+
+    @Before
+    public void setUp() {
+        breaker.reset(ADDRESS);
+        breaker.reset(OTHER_ADDRESS);
+    }
+
+    @After
+    public void tearDown() {
+        breaker.reset(ADDRESS);
+        breaker.reset(OTHER_ADDRESS);
+    }
+
+    private static void advance(long ms) {
+        shadowOf(Looper.getMainLooper()).idleFor(ms, TimeUnit.MILLISECONDS);
+    }
+
+    private void open() {
+        for (int i = 0; i < PrinterCircuitBreaker.FAILURE_THRESHOLD; i++) {
+            breaker.recordFailure(ADDRESS);
+        }
+    }
+
+    @Test
+    public void opensOnTheThresholdFailureOnly() {
+        for (int i = 1; i < PrinterCircuitBreaker.FAILURE_THRESHOLD; i++) {
+            assertFalse("failure " + i, breaker.recordFailure(ADDRESS));
+            assertTrue("failure " + i, breaker.allowRequest(ADDRESS));
+        }
+
+        assertTrue(breaker.recordFailure(ADDRESS));
+        assertFalse(breaker.allowRequest(ADDRESS));
+        assertEquals(PrinterCircuitBreaker.OPEN_DURATION_MS, breaker.getRemainingOpenMs(ADDRESS));
+        assertTrue(breaker.allowRequest(OTHER_ADDRESS));
+    }
+
+    @Test
+    public void successResetsTheFailureCount() {
+        for (int i = 1; i < PrinterCircuitBreaker.FAILURE_THRESHOLD; i++) {
+            breaker.recordFailure(ADDRESS);
+        }
+        breaker.recordSuccess(ADDRESS);
+
+        assertFalse(breaker.recordFailure(ADDRESS));
+        assertTrue(breaker.allowRequest(ADDRESS));
+    }
+
+    @Test
+    public void failedTrialReopensAtOnce() {
+        open();
+        advance(PrinterCircuitBreaker.OPEN_DURATION_MS);
+
+        assertTrue(breaker.allowRequest(ADDRESS));
+        assertTrue(breaker.recordFailure(ADDRESS));
+        assertFalse(breaker.allowRequest(ADDRESS));
+        assertEquals(PrinterCircuitBreaker.OPEN_DURATION_MS, breaker.getRemainingOpenMs(ADDRESS));
+    }
+
+    @Test
+    public void successfulTrialClosesTheCircuit() {
+        open();
+        advance(PrinterCircuitBreaker.OPEN_DURATION_MS);
+        assertTrue(breaker.allowRequest(ADDRESS));
+
+        breaker.recordSuccess(ADDRESS);
+
+        assertTrue(breaker.allowRequest(ADDRESS));
+        assertTrue(breaker.allowRequest(ADDRESS));
+        assertEquals(0, breaker.getRemainingOpenMs(ADDRESS));
+    }
+
+    @Test
+    public void onlyOneTrialIsAdmittedAtATime() {
+        open();
+        advance(PrinterCircuitBreaker.OPEN_DURATION_MS);
+
+        assertTrue(breaker.allowRequest(ADDRESS));
+        assertTrue(breaker.isTrialInFlight(ADDRESS));
+        assertFalse(breaker.allowRequest(ADDRESS));
+        assertTrue(breaker.getRemainingOpenMs(ADDRESS) > 0);
+    }
+
+    @Test
+    public void abandonedTrialLetsTheNextRequestIn() {
+        open();
+        advance(PrinterCircuitBreaker.OPEN_DURATION_MS);
+        assertTrue(breaker.allowRequest(ADDRESS));
+
+        breaker.abandonTrial(ADDRESS);
+
+        assertTrue(breaker.allowRequest(ADDRESS));
+        assertFalse(breaker.allowRequest(ADDRESS));
+    }
+}
@@ -0,0 +1,158 @@
+package com.sunmi.printerconfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+
+public class PrinterModelMatcherTest {
+    private static final String RULES = ""
+        + "# comment\n"
+        + "\n"
+        + "NT311 | NT311        | prefix   | NT311\n"
+        + "CLOUD | CloudPrinter | contains | CLOUDPRINTER\n"
+        + "CLOUD | CloudPrinter | contains | CLOUD PRINT\n"
+        + "BRAND |              | contains | SUNMI\n";
+
+    private static PrinterModelMatcher matcher(String rules) throws IOException {
+        return PrinterModelMatcher.parse(new StringReader(rules));
+    }
+
+    private static String familyOf(PrinterModelMatcher matcher, String name) {
+        PrinterModelFamily family = matcher.match(name);
+        return family == null ? null : family.getId();
+    }
+
+    // PrinterDeviceClassifier.isLikelySunmi as it was before the rule table.
+    private static boolean baselineIsLikelySunmi(String deviceName) {
+        if (deviceName == null || deviceName.trim().isEmpty()) {
+            return false;
+        }
+        String normalizedName = deviceName.toUpperCase(Locale.ROOT);
+        return normalizedName.startsWith("NT311")
+            || normalizedName.contains("CLOUDPRINTER")
+            || normalizedName.contains("CLOUD PRINT")
+            || normalizedName.contains("SUNMI");
+    }
+
+    private static void assertParseError(String rules, String expectedMessage) throws IOException {
+        try {
+            matcher(rules);
+            fail("parsed: " + rules);
+        } catch (IllegalArgumentException e) {
+            assertEquals(expectedMessage, e.getMessage());
+        }
+    }
+
+    @Test
+    public void earliestRuleWins() throws IOException {
+        PrinterModelMatcher matcher = matcher(RULES);
+
+        assertEquals("NT311", familyOf(matcher, "NT311 SUNMI"));
+        assertEquals("CLOUD", familyOf(matcher, "SUNMI CloudPrinter"));
+        assertEquals("BRAND", familyOf(matcher, "SUNMI T2"));
+    }
+
+    @Test
+    public void laterRuleWinsWhenTheEarlierOneEndsLater() throws IOException {
+        // SUNMI ends first in the name, but the CLOUD rule is listed first.
+        PrinterModelMatcher matcher = matcher(RULES);
+
+        assertEquals("CLOUD", familyOf(matcher, "xSUNMIx CLOUD PRINT"));
+    }
+
+    @Test
+    public void prefixRulesOnlyMatchAtTheStart() throws IOException {
+        PrinterModelMatcher matcher = matcher(RULES);
+
+        assertEquals("NT311", familyOf(matcher, "NT311-1234"));
+        assertEquals("NT311", familyOf(matcher, "  NT311-1234"));
+        assertEquals("NT311", familyOf(matcher, "\tNT311"));
+        assertNull(familyOf(matcher, "X NT311"));
+        assertNull(familyOf(matcher, "NT31"));
+    }
+
+    @Test
+    public void containsRulesMatchAnywhere() throws IOException {
+        PrinterModelMatcher matcher = matcher(RULES);
+
+        assertEquals("BRAND", familyOf(matcher, "SUNMI"));
+        assertEquals("BRAND", familyOf(matcher, "my-sunmi-2"));
+        assertEquals("BRAND", familyOf(matcher, "xxSUNMI"));
+        assertEquals("CLOUD", familyOf(matcher, "Office Cloud Printer"));
+        assertNull(familyOf(matcher, "SUNM I"));
+    }
+
+    @Test
+    public void overlappingPatternsAreFound() throws IOException {
+        // The failure links must carry a match that starts inside a failed partial match.
+        PrinterModelMatcher matcher = matcher(RULES);
+
+        assertEquals("BRAND", familyOf(matcher, "SUNSUNMI"));
+        assertEquals("CLOUD", familyOf(matcher, "CLOUDCLOUD PRINT"));
+    }
+
+    @Test
+    public void foldsAsciiCaseOnly() throws IOException {
+        PrinterModelMatcher matcher = matcher(RULES);
+
+        assertEquals("BRAND", familyOf(matcher, "SuNmI"));
+        assertEquals("NT311", familyOf(matcher, "nt311"));
+        // Non-ASCII characters never match a pattern, even ones that upper-case to ASCII.
+        assertNull(familyOf(matcher, "\u017Funmi"));
+        assertNull(familyOf(matcher, "cloudpr\u0131nter"));
+        assertEquals("BRAND", familyOf(matcher, "\u5546\u7C73 SUNMI \u6253\u5370\u673A"));
+    }
+
+    @Test
+    public void emptyAndMissingNamesDoNotMatch() throws IOException {
+        PrinterModelMatcher matcher = matcher(RULES);
+
+        assertNull(matcher.match(null));
+        assertNull(matcher.match(""));
+        assertNull(matcher.match("   "));
+    }
+
+    @Test
+    public void bundledRulesAgreeWithTheOldClassifier() {
+        String[] names = {
+            null, "", "   ", "NT311", "nt311-abc", "NT31", "A NT311", "CloudPrinter", "my cloudprinter",
+            "Cloud Print 2", "CLOUD  PRINT", "SUNMI", "sunmi T2", "xSuNmIx", "Headphones", "SUNM", "NT311 SUNMI",
+            "\u5546\u7C73SUNMI", "Mi Band", "CLOUDPRINTE",
+        };
+        for (String name : names) {
+            assertEquals(String.valueOf(name), baselineIsLikelySunmi(name), PrinterDeviceClassifier.isLikelySunmi(name));
+        }
+    }
+
+    @Test
+    public void bundledRulesNowSkipLeadingSpacesForPrefixes() {
+        // The old classifier compared the untrimmed name, so it missed these.
+        assertTrue(PrinterDeviceClassifier.isLikelySunmi(" NT311"));
+        assertEquals("NT311", PrinterDeviceClassifier.classify(" NT311").getId());
+    }
+
+    @Test
+    public void reportsTheLineOfAMalformedRule() throws IOException {
+        assertParseError("# header\nA | a | prefix\n", "Line 2: expected 4 columns");
+        assertParseError("A | a | prefix | X | Y\n", "Line 1: expected 4 columns");
+        assertParseError("\n | a | prefix | X\n", "Line 2: family and pattern are required");
+        assertParseError("A | a | prefix |  \n", "Line 1: family and pattern are required");
+        assertParseError("A | a | suffix | X\n", "Line 1: unknown match type suffix");
+        assertParseError("A | a | contains | caf\u00E9\n", "Line 1: patterns must be ASCII");
+        assertParseError("A | a | contains | X\nA | b | contains | Y\n", "Line 2: conflicting label for A");
+    }
+
+    @Test
+    public void emptyRuleTableMatchesNothing() throws IOException {
+        PrinterModelMatcher matcher = matcher("# nothing yet\n");
+
+        assertNull(matcher.match("SUNMI"));
+    }
+}
@@ -0,0 +1,107 @@
+package com.sunmi.printerconfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idle grace period of {@link PrinterSessionManager}: a released session is reused until it runs out.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PrinterSessionManagerTest {
+    private static final String ADDRESS = "5A:1A:00:00:00:01";
+    private static final long GRACE_MS = 5_000;
+
+    private final PrinterClientCallbacks user = new PrinterClientCallbacks();
+    private final int[] disconnects = {0};
+    private PrinterSessionManager sessionManager;
+
+    @Before
+    public void setUp() {
+        sessionManager = PrinterSessionManager.getInstance(ApplicationProvider.getApplicationContext());
+        sessionManager.setTransportFactory((context, callbacks) -> new PrinterTransport() {
+            @Override
+            public void startScan() {
+            }
+
+            @Override
+            public void stopScan() {
+            }
+
+            @Override
+            public void getPrinterSn(String address) {
+            }
+
+            @Override
+            public void getPrinterWifiList(String address) {
+            }
+
+            @Override
+            public void setPrinterWifi(String address, byte[] essid, String password) {
+            }
+
+            @Override
+            public void disconnect(String address) {
+                disconnects[0]++;
+            }
+        });
+        sessionManager.setIdleGracePeriodMs(GRACE_MS);
+    }
+
+    @After
+    public void tearDown() {
+        sessionManager.setIdleGracePeriodMs(PrinterSessionManager.DEFAULT_IDLE_GRACE_PERIOD_MS);
+        sessionManager.setTransportFactory(null);
+    }
+
+    private static void advance(long ms) {
+        shadowOf(Looper.getMainLooper()).idleFor(ms, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void releasedSessionIsReusedWithinTheGracePeriod() {
+        PrinterSession session = sessionManager.acquire(ADDRESS, user);
+        session.release(user);
+        advance(GRACE_MS - 1);
+
+        PrinterSession again = sessionManager.acquire(ADDRESS, user);
+
+        assertSame(session, again);
+        assertEquals(0, disconnects[0]);
+        again.releaseAndDisconnect(user);
+    }
+
+    @Test
+    public void releasedSessionIsDisconnectedAfterTheGracePeriod() {
+        PrinterSession session = sessionManager.acquire(ADDRESS, user);
+        session.release(user);
+        advance(GRACE_MS);
+
+        assertEquals(1, disconnects[0]);
+        PrinterSession fresh = sessionManager.acquire(ADDRESS, user);
+        assertNotSame(session, fresh);
+        fresh.releaseAndDisconnect(user);
+    }
+
+    @Test
+    public void zeroGracePeriodDisconnectsRightAway() {
+        sessionManager.setIdleGracePeriodMs(0);
+        sessionManager.acquire(ADDRESS, user).release(user);
+        advance(0);
+
+        assertEquals(1, disconnects[0]);
+    }
+}
@@ -0,0 +1,124 @@
+package com.sunmi.printerconfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class ReachabilityVerifierTest {
+    private static final long TIMEOUT_MS = 60_000;
+    // Real time allowed for a loopback connect on the probe thread.
+    private static final long PROBE_WAIT_MS = 5_000;
+
+    private static final class RecordingListener implements ReachabilityVerifier.Listener {
+        InetSocketAddress reached;
+        int unreachableCalls;
+
+        @Override
+        public void onReachable(InetSocketAddress address, long timeToOnlineMs) {
+            reached = address;
+        }
+
+        @Override
+        public void onUnreachable() {
+            unreachableCalls++;
+        }
+    }
+
+    private static final class SilentLocator implements PrinterLocator {
+        boolean stopped;
+
+        @Override
+        public void start(Callback callback) {
+        }
+
+        @Override
+        public void stop() {
+            stopped = true;
+        }
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final RecordingListener listener = new RecordingListener();
+    private ServerSocket printServer;
+
+    @Before
+    public void setUp() throws IOException {
+        printServer = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        printServer.close();
+    }
+
+    private void idleUntilReached() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + PROBE_WAIT_MS;
+        while (listener.reached == null && System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle();
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void reportsTheAddressThatAcceptsAConnection() throws InterruptedException {
+        InetSocketAddress address = (InetSocketAddress) printServer.getLocalSocketAddress();
+        ReachabilityVerifier verifier =
+            new ReachabilityVerifier(handler, new FixedAddressPrinterLocator(address), TIMEOUT_MS);
+
+        verifier.start(ProvisioningMetrics.now(), listener);
+        idleUntilReached();
+
+        assertNotNull(listener.reached);
+        assertEquals(printServer.getLocalPort(), listener.reached.getPort());
+        shadowOf(Looper.getMainLooper()).idleFor(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertEquals(0, listener.unreachableCalls);
+    }
+
+    @Test
+    public void givesUpOnceAtTheDeadlineWhenNothingIsFound() {
+        SilentLocator locator = new SilentLocator();
+        ReachabilityVerifier verifier = new ReachabilityVerifier(handler, locator, TIMEOUT_MS);
+
+        verifier.start(ProvisioningMetrics.now(), listener);
+        shadowOf(Looper.getMainLooper()).idleFor(TIMEOUT_MS - 1, TimeUnit.MILLISECONDS);
+        assertEquals(0, listener.unreachableCalls);
+
+        shadowOf(Looper.getMainLooper()).idleFor(1, TimeUnit.MILLISECONDS);
+        assertEquals(1, listener.unreachableCalls);
+        assertTrue(locator.stopped);
+        shadowOf(Looper.getMainLooper()).idleFor(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertEquals(1, listener.unreachableCalls);
+    }
+
+    @Test
+    public void cancelReportsNothing() {
+        SilentLocator locator = new SilentLocator();
+        ReachabilityVerifier verifier = new ReachabilityVerifier(handler, locator, TIMEOUT_MS);
+
+        verifier.start(ProvisioningMetrics.now(), listener);
+        verifier.cancel();
+        shadowOf(Looper.getMainLooper()).idleFor(2 * TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        assertTrue(locator.stopped);
+        assertNull(listener.reached);
+        assertEquals(0, listener.unreachableCalls);
+    }
+}
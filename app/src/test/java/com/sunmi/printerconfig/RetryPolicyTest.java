@@ -0,0 +1,92 @@
+package com.sunmi.printerconfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class RetryPolicyTest {
+    private final RetryPolicy policy = new RetryPolicy(3, 2, 1_000, 8_000);
+
+    // Stands in for the jitter source with a fixed draw.
+    private static Random fixed(double value) {
+        return new Random() {
+            @Override
+            public double nextDouble() {
+                return value;
+            }
+        };
+    }
+
+    @Test
+    public void timeoutsAndListFailuresRetryUpToMaxAttempts() {
+        for (RetryPolicy.FailureKind kind
+            : new RetryPolicy.FailureKind[] {RetryPolicy.FailureKind.TIMEOUT, RetryPolicy.FailureKind.WIFI_LIST_FAIL}) {
+            assertTrue(kind.toString(), policy.shouldRetry(kind, 0, 1));
+            assertTrue(kind.toString(), policy.shouldRetry(kind, 0, 2));
+            assertFalse(kind.toString(), policy.shouldRetry(kind, 0, 3));
+        }
+    }
+
+    @Test
+    public void wifiConfigFailureHasItsOwnLowerCap() {
+        assertTrue(policy.shouldRetry(RetryPolicy.FailureKind.WIFI_CONFIG_FAIL, 0, 1));
+        assertFalse(policy.shouldRetry(RetryPolicy.FailureKind.WIFI_CONFIG_FAIL, 0, 2));
+    }
+
+    @Test
+    public void wifiConfigCapNeverExceedsMaxAttempts() {
+        RetryPolicy capped = new RetryPolicy(2, 5, 1_000, 8_000);
+
+        assertFalse(capped.shouldRetry(RetryPolicy.FailureKind.WIFI_CONFIG_FAIL, 0, 2));
+    }
+
+    @Test
+    public void openCircuitIsNeverRetried() {
+        assertFalse(policy.shouldRetry(RetryPolicy.FailureKind.CIRCUIT_OPEN, 0, 0));
+    }
+
+    @Test
+    public void sendDataFailureRetriesTransientCodesOnly() {
+        assertTrue(policy.shouldRetry(RetryPolicy.FailureKind.SEND_DATA_FAIL, 0, 1));
+        assertTrue(policy.shouldRetry(RetryPolicy.FailureKind.SEND_DATA_FAIL, 1, 2));
+        assertFalse(policy.shouldRetry(RetryPolicy.FailureKind.SEND_DATA_FAIL, 1, 3));
+        for (int code : new int[] {-3, -4, -5, -9}) {
+            assertTrue("code " + code, RetryPolicy.isPermanent(code));
+            assertFalse("code " + code, policy.shouldRetry(RetryPolicy.FailureKind.SEND_DATA_FAIL, code, 1));
+        }
+        for (int code : new int[] {0, 1, -1, -2, -6, -7, -8}) {
+            assertFalse("code " + code, RetryPolicy.isPermanent(code));
+        }
+    }
+
+    @Test
+    public void delayDoublesFromTheBaseWithinEqualJitterBounds() {
+        long[] steps = {1_000, 2_000, 4_000, 8_000, 8_000};
+        for (int i = 0; i < steps.length; i++) {
+            int attemptsMade = i + 1;
+            assertEquals("lower, attempt " + attemptsMade,
+                steps[i] / 2, policy.delayBeforeRetryMs(attemptsMade, fixed(0.0)));
+            long upper = policy.delayBeforeRetryMs(attemptsMade, fixed(0.999_999));
+            assertTrue("upper " + upper + ", attempt " + attemptsMade, upper <= steps[i] && upper >= steps[i] - 1);
+        }
+    }
+
+    @Test
+    public void delayStaysBoundedForHugeAttemptCounts() {
+        long delay = policy.delayBeforeRetryMs(Integer.MAX_VALUE, new Random(1));
+
+        assertTrue("delay " + delay, delay >= 4_000 && delay <= 8_000);
+    }
+
+    @Test
+    public void zeroBaseDelayRetriesAtOnce() {
+        RetryPolicy immediate = new RetryPolicy(3, 2, 0, 0);
+
+        assertEquals(0, immediate.delayBeforeRetryMs(1, new Random(1)));
+        assertEquals(0, immediate.delayBeforeRetryMs(0, new Random(1)));
+    }
+}
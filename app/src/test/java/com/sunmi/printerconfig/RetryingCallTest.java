@@ -0,0 +1,209 @@
+package com.sunmi.printerconfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Attempt, timeout and give-up bookkeeping of {@link RetryingCall}. The operation never answers on its
+ * own; outcomes are delivered by hand and time is moved by idling the main looper.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RetryingCallTest {
+    private static final String ADDRESS = "5A:1A:00:00:00:01";
+    private static final long TIMEOUT_MS = 5_000;
+    // The longest the policy below waits before the first retry.
+    private static final long FIRST_DELAY_MS = 1_000;
+
+    private final RetryPolicy policy = new RetryPolicy(3, 2, FIRST_DELAY_MS, 8_000);
+    private final List<RetryingCall> calls = new ArrayList<>();
+    private final PrinterCircuitBreaker breaker = PrinterCircuitBreaker.getInstance();
+    private final List<RetryingCall.Failure> retries = new ArrayList<>();
+    private RetryingCall.Failure gaveUp;
+    private int attempts;
+
+    private final RetryingCall.Listener listener = new RetryingCall.Listener() {
+        @Override
+        public void onRetryScheduled(RetryingCall.Failure failure, int nextAttempt, int maxAttempts, long delayMs) {
+            retries.add(failure);
+        }
+
+        @Override
+        public void onGaveUp(RetryingCall.Failure failure) {
+            gaveUp = failure;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        breaker.reset(ADDRESS);
+    }
+
+    @After
+    public void tearDown() {
+        for (RetryingCall call : calls) {
+            call.cancel();
+        }
+        breaker.reset(ADDRESS);
+    }
+
+    private RetryingCall newCall() {
+        RetryingCall call = new RetryingCall(ADDRESS, "test", policy, TIMEOUT_MS,
+            new Handler(Looper.getMainLooper()), () -> attempts++, listener);
+        calls.add(call);
+        return call;
+    }
+
+    private static void advance(long ms) {
+        shadowOf(Looper.getMainLooper()).idleFor(ms, TimeUnit.MILLISECONDS);
+    }
+
+    private void openCircuit() {
+        for (int i = 0; i < PrinterCircuitBreaker.FAILURE_THRESHOLD; i++) {
+            breaker.recordFailure(ADDRESS);
+        }
+    }
+
+    @Test
+    public void timedOutAttemptIsRetriedUntilItSucceeds() {
+        RetryingCall call = newCall();
+        call.start();
+        advance(TIMEOUT_MS);
+        advance(FIRST_DELAY_MS);
+
+        assertEquals(2, attempts);
+        assertEquals(1, retries.size());
+        assertEquals(RetryPolicy.FailureKind.TIMEOUT, retries.get(0).getKind());
+
+        call.succeed();
+        assertFalse(call.isActive());
+        assertNull(gaveUp);
+        advance(TIMEOUT_MS);
+        assertEquals(2, attempts);
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        RetryingCall call = newCall();
+        call.start();
+        // Each attempt times out and waits at most the policy's 8 s cap before the next.
+        advance(policy.getMaxAttempts() * (TIMEOUT_MS + 8_000));
+
+        assertEquals(policy.getMaxAttempts(), attempts);
+        assertEquals(policy.getMaxAttempts() - 1, retries.size());
+        assertEquals(RetryPolicy.FailureKind.TIMEOUT, gaveUp.getKind());
+        assertFalse(call.isActive());
+    }
+
+    @Test
+    public void permanentFailureGivesUpAtOnce() {
+        RetryingCall call = newCall();
+        call.start();
+        call.fail(RetryPolicy.FailureKind.SEND_DATA_FAIL, -5, "Bluetooth is off");
+
+        assertEquals(1, attempts);
+        assertTrue(retries.isEmpty());
+        assertEquals(-5, gaveUp.getCode());
+        assertEquals("Bluetooth is off", gaveUp.getMessage());
+    }
+
+    @Test
+    public void lateFailureAfterATimeoutIsNotCountedTwice() {
+        RetryingCall call = newCall();
+        call.start();
+        advance(TIMEOUT_MS);
+        // The first attempt's own failure arrives while its retry is waiting.
+        call.fail(RetryPolicy.FailureKind.SEND_DATA_FAIL, 1, null);
+        advance(FIRST_DELAY_MS);
+
+        assertEquals(2, attempts);
+        assertEquals(1, retries.size());
+        assertNull(gaveUp);
+        assertTrue(call.isActive());
+    }
+
+    @Test
+    public void attemptInFlightIsAwaitedWithoutIssuingAnother() {
+        RetryingCall call = newCall();
+        call.start(true);
+
+        assertEquals(0, attempts);
+        assertEquals(1, call.getAttemptsMade());
+
+        advance(TIMEOUT_MS);
+        advance(FIRST_DELAY_MS);
+        assertEquals(1, attempts);
+        assertEquals(2, call.getAttemptsMade());
+    }
+
+    @Test
+    public void attemptInFlightCanSucceedBeforeItsTimeout() {
+        RetryingCall call = newCall();
+        call.start(true);
+        call.succeed();
+        advance(TIMEOUT_MS + FIRST_DELAY_MS);
+
+        assertEquals(0, attempts);
+        assertTrue(retries.isEmpty());
+        assertNull(gaveUp);
+    }
+
+    @Test
+    public void openCircuitRefusesWithoutAnAttempt() {
+        openCircuit();
+        newCall().start();
+
+        assertEquals(0, attempts);
+        assertEquals(RetryPolicy.FailureKind.CIRCUIT_OPEN, gaveUp.getKind());
+    }
+
+    @Test
+    public void failureThatOpensTheCircuitGivesUp() {
+        for (int i = 1; i < PrinterCircuitBreaker.FAILURE_THRESHOLD; i++) {
+            breaker.recordFailure(ADDRESS);
+        }
+        RetryingCall call = newCall();
+        call.start();
+        advance(TIMEOUT_MS);
+
+        assertTrue(retries.isEmpty());
+        assertEquals(RetryPolicy.FailureKind.TIMEOUT, gaveUp.getKind());
+        assertFalse(breaker.allowRequest(ADDRESS));
+    }
+
+    @Test
+    public void cancelledTrialLetsTheNextCallIn() {
+        openCircuit();
+        advance(PrinterCircuitBreaker.OPEN_DURATION_MS);
+        RetryingCall trial = newCall();
+        trial.start();
+        RetryingCall refused = newCall();
+        refused.start();
+        assertEquals(RetryPolicy.FailureKind.CIRCUIT_OPEN, gaveUp.getKind());
+
+        trial.cancel();
+        gaveUp = null;
+        RetryingCall next = newCall();
+        next.start();
+
+        assertNull(gaveUp);
+        assertEquals(2, attempts);
+        next.succeed();
+        assertTrue(breaker.allowRequest(ADDRESS));
+    }
+}
@@ -0,0 +1,55 @@
+package com.sunmi.printerconfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import com.sunmi.cloudprinter.bean.Router;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class RouterIndexTest {
+    private static Router router(String ssid, int rssi, boolean hasPwd) {
+        Router router = new Router();
+        router.setName(ssid);
+        router.setEssid(ssid.getBytes(StandardCharsets.UTF_8));
+        router.setRssi(rssi);
+        router.setHasPwd(hasPwd);
+        return router;
+    }
+
+    @Test
+    public void mergingAccessPointsLeavesTheReportedRoutersAlone() {
+        Router secured = router("Shop", -70, true);
+        Router weakerOpen = router("Shop", -80, false);
+        Router strongerOpen = router("Shop", -50, false);
+        RouterIndex index = new RouterIndex("?");
+
+        index.merge(secured);
+        index.merge(weakerOpen);
+        index.merge(strongerOpen);
+
+        assertEquals(1, index.size());
+        assertEquals(3, index.get(0).getAccessPointCount());
+        assertEquals(-50, index.get(0).getRouter().getRssi());
+        assertTrue(index.get(0).getRouter().isHasPwd());
+        assertNotSame(strongerOpen, index.get(0).getRouter());
+        assertFalse(weakerOpen.isHasPwd());
+        assertFalse(strongerOpen.isHasPwd());
+    }
+
+    @Test
+    public void strongerAccessPointMovesItsNetworkUp() {
+        RouterIndex index = new RouterIndex("?");
+        index.merge(router("Office", -60, true));
+        index.merge(router("Shop", -70, true));
+        index.merge(router("Shop", -40, true));
+
+        assertEquals("Shop", index.get(0).getDisplayName());
+        assertEquals("Office", index.get(1).getDisplayName());
+        assertNotSame(index.get(0).getRouter(), index.getRouters().get(0));
+    }
+}
@@ -0,0 +1,161 @@
+package com.sunmi.printerconfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class SdkCallTraceTest {
+    private static final Pattern HEADER = Pattern.compile("# (\\d+) entries recorded, (\\d+) exported");
+    // Thread, event, address, code and detail of an exported line.
+    private static final Pattern LINE = Pattern.compile(".* [<>] \\[(.*?)\\] (\\S+) (\\S+)(?: code=(-?\\d+))?(?: \"(.*)\")?");
+
+    private final SdkCallTrace trace = new SdkCallTrace();
+
+    private static final class Entry {
+        final String thread;
+        final String event;
+        final int code;
+        final String detail;
+
+        Entry(String thread, String event, int code, String detail) {
+            this.thread = thread;
+            this.event = event;
+            this.code = code;
+            this.detail = detail;
+        }
+    }
+
+    private static final class Export {
+        final long recorded;
+        final int exported;
+        final List<Entry> entries = new ArrayList<>();
+
+        Export(String text) {
+            String[] lines = text.split("\n");
+            Matcher header = HEADER.matcher(lines[0]);
+            assertTrue(lines[0], header.matches());
+            recorded = Long.parseLong(header.group(1));
+            exported = Integer.parseInt(header.group(2));
+            for (int i = 1; i < lines.length; i++) {
+                Matcher line = LINE.matcher(lines[i]);
+                assertTrue(lines[i], line.matches());
+                int code = line.group(4) == null ? 0 : Integer.parseInt(line.group(4));
+                entries.add(new Entry(line.group(1), line.group(2), code, line.group(5)));
+            }
+            assertEquals(exported, entries.size());
+        }
+    }
+
+    // The event, code and detail all name the entry's index, so a torn copy would show as a mismatch.
+    private void record(String writer, int index) {
+        trace.record(SdkCallTrace.DIRECTION_CALLBACK, writer, "5A:1A:00:00:00:01", index + 1, writer + index);
+    }
+
+    private static void assertWhole(Entry entry) {
+        assertEquals(entry.event + (entry.code - 1), entry.detail);
+    }
+
+    @Test
+    public void emptyTraceHasOnlyTheHeader() {
+        Export export = new Export(trace.export());
+
+        assertEquals(0, export.recorded);
+        assertEquals(0, export.exported);
+    }
+
+    @Test
+    public void keepsTheNewestEntriesOldestFirst() {
+        int overflow = 10;
+        for (int i = 0; i < SdkCallTrace.CAPACITY + overflow; i++) {
+            record("w", i);
+        }
+
+        Export export = new Export(trace.export());
+
+        assertEquals(SdkCallTrace.CAPACITY + overflow, export.recorded);
+        assertEquals(SdkCallTrace.CAPACITY, export.exported);
+        for (int i = 0; i < export.entries.size(); i++) {
+            Entry entry = export.entries.get(i);
+            assertEquals(overflow + i + 1, entry.code);
+            assertWhole(entry);
+            assertEquals(Thread.currentThread().getName(), entry.thread);
+        }
+    }
+
+    @Test
+    public void twoWritersEachKeepTheirOrder() throws InterruptedException {
+        int perWriter = SdkCallTrace.CAPACITY;
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        for (String name : new String[] {"a", "b"}) {
+            Thread writer = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perWriter; i++) {
+                    record(name, i);
+                }
+            }, "writer-" + name);
+            writer.start();
+            writers.add(writer);
+        }
+        go.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        Export export = new Export(trace.export());
+
+        assertEquals(2 * perWriter, export.recorded);
+        // Only a writer stalled for a full lap can cost an entry.
+        assertTrue("exported " + export.exported, export.exported <= SdkCallTrace.CAPACITY);
+        assertTrue("exported " + export.exported, export.exported > SdkCallTrace.CAPACITY / 2);
+        Map<String, Integer> lastCode = new HashMap<>();
+        for (Entry entry : export.entries) {
+            assertWhole(entry);
+            assertEquals("writer-" + entry.event, entry.thread);
+            Integer previous = lastCode.get(entry.event);
+            assertTrue(entry.detail, previous == null || entry.code > previous);
+            lastCode.put(entry.event, entry.code);
+        }
+    }
+
+    @Test
+    public void exportDuringWritesSkipsEntriesInsteadOfTearingThem() throws InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; !stop.get(); i++) {
+                record("w", i);
+            }
+        }, "writer-w");
+        writer.start();
+        try {
+            for (int round = 0; round < 20; round++) {
+                Export export = new Export(trace.export());
+                assertTrue(export.exported <= SdkCallTrace.CAPACITY);
+                assertTrue(export.exported <= export.recorded);
+                int previous = 0;
+                for (Entry entry : export.entries) {
+                    assertWhole(entry);
+                    assertTrue(entry.detail, entry.code > previous);
+                    previous = entry.code;
+                }
+            }
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+    }
+}
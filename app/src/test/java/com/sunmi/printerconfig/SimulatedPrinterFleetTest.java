@@ -0,0 +1,169 @@
+package com.sunmi.printerconfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.sunmi.cloudprinter.bean.PrinterDevice;
+import com.sunmi.cloudprinter.bean.Router;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives printers through the fleet's transports on a plain JVM, the way a session does, and checks the
+ * callbacks come back in the SDK's order.
+ */
+public class SimulatedPrinterFleetTest {
+    private static final String ADDRESS = "5A:1A:00:00:00:01";
+    private static final String SERIAL = "N4SIM0000001";
+    private static final long EVENT_TIMEOUT_S = 5;
+
+    private static final class RecordingCallbacks extends PrinterClientCallbacks {
+        final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onPrinterFount(PrinterDevice printerDevice) {
+            events.add("onPrinterFount " + printerDevice.getAddress());
+        }
+
+        @Override
+        public void routerFound(Router router) {
+            events.add("routerFound " + router.getName());
+        }
+
+        @Override
+        public void onGetWifiListFinish() {
+            events.add("onGetWifiListFinish");
+        }
+
+        @Override
+        public void onSetWifiSuccess() {
+            events.add("onSetWifiSuccess");
+        }
+
+        @Override
+        public void wifiConfigSuccess() {
+            events.add("wifiConfigSuccess");
+        }
+
+        @Override
+        public void onWifiConfigFail() {
+            events.add("onWifiConfigFail");
+        }
+
+        @Override
+        public void sendDataFail(int code, String msg) {
+            events.add("sendDataFail " + code);
+        }
+
+        @Override
+        public void getSnRequestSuccess() {
+            events.add("getSnRequestSuccess");
+        }
+
+        @Override
+        public void onSnReceived(String sn) {
+            events.add("onSnReceived " + sn);
+        }
+
+        String next() throws InterruptedException {
+            String event = events.poll(EVENT_TIMEOUT_S, TimeUnit.SECONDS);
+            if (event == null) {
+                throw new AssertionError("No callback within " + EVENT_TIMEOUT_S + " s");
+            }
+            return event;
+        }
+    }
+
+    private SimulatedPrinterFleet fleet;
+    private SimulatedPrinter printer;
+    private final RecordingCallbacks callbacks = new RecordingCallbacks();
+    private PrinterTransport transport;
+
+    @Before
+    public void setUp() {
+        fleet = new SimulatedPrinterFleet(42)
+            .setLatency(SimulatedPrinterFleet.Stage.ADVERTISEMENT, LatencyDistribution.fixed(10))
+            .setLatency(SimulatedPrinterFleet.Stage.WIFI_JOIN, LatencyDistribution.fixed(20));
+        printer = fleet.add(new SimulatedPrinter(ADDRESS, "CloudPrint_SUNMI_0001", SERIAL)
+            .addRouter("Shop-WiFi", -48, true)
+            .addRouter("Shop-Guest", -61, false)
+            .setAcceptedPassword("secret"));
+        transport = fleet.create(null, callbacks);
+    }
+
+    @After
+    public void tearDown() {
+        fleet.shutdown();
+    }
+
+    @Test
+    public void sessionGetsTheSdkCallbacksInOrder() throws InterruptedException {
+        transport.getPrinterSn(ADDRESS);
+        assertEquals("getSnRequestSuccess", callbacks.next());
+        assertEquals("onSnReceived " + SERIAL, callbacks.next());
+
+        transport.getPrinterWifiList(ADDRESS);
+        assertEquals("routerFound Shop-WiFi", callbacks.next());
+        assertEquals("routerFound Shop-Guest", callbacks.next());
+        assertEquals("onGetWifiListFinish", callbacks.next());
+
+        transport.setPrinterWifi(ADDRESS, "Shop-WiFi".getBytes(StandardCharsets.UTF_8), "secret");
+        assertEquals("onSetWifiSuccess", callbacks.next());
+        assertEquals("wifiConfigSuccess", callbacks.next());
+    }
+
+    @Test
+    public void wrongPasswordIsAcceptedThenFailsToJoin() throws InterruptedException {
+        transport.setPrinterWifi(ADDRESS, "Shop-WiFi".getBytes(StandardCharsets.UTF_8), "wrong");
+
+        assertEquals("onSetWifiSuccess", callbacks.next());
+        assertEquals("onWifiConfigFail", callbacks.next());
+    }
+
+    @Test
+    public void injectedFailureAffectsOnlyTheNextRequest() throws InterruptedException {
+        printer.failNext(SimulatedPrinterFleet.Stage.SERIAL_NUMBER, -7);
+
+        transport.getPrinterSn(ADDRESS);
+        assertEquals("sendDataFail -7", callbacks.next());
+
+        transport.getPrinterSn(ADDRESS);
+        assertEquals("getSnRequestSuccess", callbacks.next());
+        assertEquals("onSnReceived " + SERIAL, callbacks.next());
+    }
+
+    @Test
+    public void disconnectDropsTheJoinResult() throws InterruptedException {
+        fleet.setLatency(SimulatedPrinterFleet.Stage.WIFI_JOIN, LatencyDistribution.fixed(200));
+        transport.setPrinterWifi(ADDRESS, "Shop-WiFi".getBytes(StandardCharsets.UTF_8), "secret");
+        assertEquals("onSetWifiSuccess", callbacks.next());
+
+        transport.disconnect(ADDRESS);
+
+        assertNull(callbacks.events.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void scanReportsOnlyPrintersInRange() throws InterruptedException {
+        fleet.add(new SimulatedPrinter("5A:1A:00:00:00:02", "CloudPrint_SUNMI_0002", "N4SIM0000002")
+            .setInRange(false));
+
+        transport.startScan();
+        for (int i = 0; i < 5; i++) {
+            assertEquals("onPrinterFount " + ADDRESS, callbacks.next());
+        }
+        transport.stopScan();
+    }
+
+    @Test
+    public void locatorFactorySkipsTheLanCheck() {
+        assertNull(SimulatedPrinterFleet.LOCATOR_FACTORY.create(null, SERIAL, ADDRESS, "Shop-WiFi"));
+    }
+}
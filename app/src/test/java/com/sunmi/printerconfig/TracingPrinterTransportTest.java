@@ -0,0 +1,39 @@
+package com.sunmi.printerconfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TracingPrinterTransportTest {
+    // SCAN_FAILED_APPLICATION_REGISTRATION_FAILED.
+    private static final int REGISTRATION_FAILED = 2;
+
+    @Test
+    public void scanFailureIsTracedAndPassedOn() {
+        int[] reportedCode = {0};
+        PrinterClientCallbacks callbacks = new PrinterClientCallbacks() {
+            @Override
+            public void onScanFailed(int errorCode) {
+                reportedCode[0] = errorCode;
+            }
+        };
+        ScanTransport scanner = TracingPrinterTransport.wrapScanner(callbacks, traced -> new ScanTransport() {
+            @Override
+            public void startScan() {
+                traced.onScanFailed(REGISTRATION_FAILED);
+            }
+
+            @Override
+            public void stopScan() {
+            }
+        });
+
+        scanner.startScan();
+
+        assertEquals(REGISTRATION_FAILED, reportedCode[0]);
+        String trace = SdkCallTrace.getInstance().export();
+        assertTrue(trace, trace.contains("> [" + Thread.currentThread().getName() + "] startScan"));
+        assertTrue(trace, trace.contains("onScanFailed - code=" + REGISTRATION_FAILED));
+    }
+}
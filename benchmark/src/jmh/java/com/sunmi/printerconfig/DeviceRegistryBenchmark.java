@@ -0,0 +1,82 @@
+package com.sunmi.printerconfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The duplicate check every advertisement goes through: the registry's parsed-MAC probe against the
+ * normalize-then-hash lookup it replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DeviceRegistryBenchmark {
+    @Param({"500", "5000"})
+    public int devices;
+
+    @Param({"8"})
+    public int advertisementsPerDevice;
+
+    private String[] addresses;
+    private int[] order;
+    private DeviceRegistry registry;
+    private Map<String, Integer> positions;
+
+    @Setup
+    public void setUp() {
+        addresses = SyntheticBursts.addresses(devices, 41);
+        order = SyntheticBursts.advertisementOrder(devices, advertisementsPerDevice, 42);
+        registry = new DeviceRegistry();
+        positions = new HashMap<>();
+        for (int i = 0; i < devices; i++) {
+            String address = addresses[i].toUpperCase(Locale.ROOT);
+            registry.add(DeviceRegistry.parseMac(address), address, "");
+            positions.put(address, i);
+        }
+    }
+
+    @Benchmark
+    public int registryLookups() {
+        int found = 0;
+        for (int device : order) {
+            if (registry.find(DeviceRegistry.parseMac(addresses[device])) >= 0) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int hashMapLookups() {
+        int found = 0;
+        for (int device : order) {
+            if (positions.get(addresses[device].trim().toUpperCase(Locale.ROOT)) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public DeviceRegistry registryBuild() {
+        DeviceRegistry built = new DeviceRegistry();
+        for (int device : order) {
+            long mac = DeviceRegistry.parseMac(addresses[device]);
+            if (built.find(mac) < 0) {
+                built.add(mac, addresses[device], "");
+            }
+        }
+        return built;
+    }
+}
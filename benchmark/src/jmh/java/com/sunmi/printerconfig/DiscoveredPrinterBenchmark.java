@@ -0,0 +1,78 @@
+package com.sunmi.printerconfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DiscoveredPrinterBenchmark {
+    private static final int BURST = 4096;
+
+    private DiscoveredPrinter[] printers;
+    private DiscoveredPrinter[] copies;
+
+    @Setup
+    public void setUp() {
+        String[] addresses = SyntheticBursts.addresses(BURST, 21);
+        String[] names = SyntheticBursts.names(BURST, 22);
+        printers = new DiscoveredPrinter[BURST];
+        copies = new DiscoveredPrinter[BURST];
+        for (int i = 0; i < BURST; i++) {
+            printers[i] = new DiscoveredPrinter(addresses[i], names[i]);
+            copies[i] = new DiscoveredPrinter(addresses[i], names[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public int hashCodes() {
+        int combined = 0;
+        for (DiscoveredPrinter printer : printers) {
+            combined += printer.hashCode();
+        }
+        return combined;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public int equalsDistinctInstances() {
+        int equal = 0;
+        for (int i = 0; i < BURST; i++) {
+            if (printers[i].equals(copies[i])) {
+                equal++;
+            }
+        }
+        return equal;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public Set<DiscoveredPrinter> hashSetInsert() {
+        Set<DiscoveredPrinter> set = new HashSet<>();
+        for (DiscoveredPrinter printer : printers) {
+            set.add(printer);
+        }
+        return set;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public DiscoveredPrinter[] construct() {
+        DiscoveredPrinter[] built = new DiscoveredPrinter[BURST];
+        for (int i = 0; i < BURST; i++) {
+            built[i] = new DiscoveredPrinter(printers[i].getAddress(), printers[i].getName());
+        }
+        return built;
+    }
+}
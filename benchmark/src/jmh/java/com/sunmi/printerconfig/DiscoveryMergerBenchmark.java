@@ -0,0 +1,102 @@
+package com.sunmi.printerconfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full scan burst through the dedup path, publishing a snapshot every
+ * {@code eventsPerFlush} events as the 16 ms flush would under load.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DiscoveryMergerBenchmark {
+    @Param({"500", "5000"})
+    public int devices;
+
+    @Param({"8"})
+    public int advertisementsPerDevice;
+
+    @Param({"64"})
+    public int eventsPerFlush;
+
+    private String[] addresses;
+    private String[] names;
+    private int[] order;
+    private int[] readings;
+    private List<DiscoveredPrinter> seed;
+    private DiscoveryMerger merger;
+
+    @Setup
+    public void setUp() {
+        addresses = SyntheticBursts.addresses(devices, 31);
+        names = SyntheticBursts.names(devices, 32);
+        order = SyntheticBursts.advertisementOrder(devices, advertisementsPerDevice, 33);
+        readings = SyntheticBursts.signalReadings(order, devices, 34);
+        seed = new ArrayList<>();
+        for (int i = 0; i < Math.min(64, devices); i++) {
+            seed.add(new DiscoveredPrinter(addresses[i].toUpperCase(Locale.ROOT), names[i], "", true));
+        }
+        merger = new DiscoveryMerger(null);
+    }
+
+    @Benchmark
+    public int scanBurst() {
+        merger.reset(seed);
+        int published = 0;
+        int sinceFlush = 0;
+        for (int device : order) {
+            merger.merge(addresses[device], names[device]);
+            if (++sinceFlush == eventsPerFlush) {
+                sinceFlush = 0;
+                published += merger.takeSnapshot().getPrinters().size();
+            }
+        }
+        return published + merger.takeSnapshot().getLiveCount();
+    }
+
+    /**
+     * The same burst with each advertisement's RSSI folded in, as the SDK transport reports it, so the
+     * list is kept in proximity order throughout.
+     */
+    @Benchmark
+    public int scanBurstWithSignal() {
+        merger.reset(seed);
+        int published = 0;
+        int sinceFlush = 0;
+        for (int i = 0; i < order.length; i++) {
+            int device = order[i];
+            merger.merge(addresses[device], names[device]);
+            merger.mergeSignal(addresses[device], readings[i]);
+            if (++sinceFlush == eventsPerFlush) {
+                sinceFlush = 0;
+                published += merger.takeSnapshot().getPrinters().size();
+            }
+        }
+        return published + merger.takeSnapshot().getLiveCount();
+    }
+
+    @Benchmark
+    public int scanBurstWithoutSnapshots() {
+        merger.reset(Collections.emptyList());
+        int changes = 0;
+        for (int device : order) {
+            if (merger.merge(addresses[device], names[device])) {
+                changes++;
+            }
+        }
+        return changes;
+    }
+}
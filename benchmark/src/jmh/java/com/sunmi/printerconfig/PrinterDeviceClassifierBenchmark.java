@@ -0,0 +1,51 @@
+package com.sunmi.printerconfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PrinterDeviceClassifierBenchmark {
+    private static final int BURST = 4096;
+
+    private String[] names;
+
+    @Setup
+    public void setUp() {
+        names = SyntheticBursts.names(BURST, 11);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public int isLikelySunmi() {
+        int matches = 0;
+        for (String name : names) {
+            if (PrinterDeviceClassifier.isLikelySunmi(name)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public int classify() {
+        int recognised = 0;
+        for (String name : names) {
+            PrinterModelFamily family = PrinterDeviceClassifier.classify(name);
+            if (family != null && !family.isGeneric()) {
+                recognised++;
+            }
+        }
+        return recognised;
+    }
+}
@@ -0,0 +1,54 @@
+package com.sunmi.printerconfig;
+
+import com.sunmi.cloudprinter.bean.Router;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges a burst of router reports (many access points per ESSID) into a fresh index.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RouterIndexBenchmark {
+    @Param({"200", "2000"})
+    public int reports;
+
+    @Param({"40"})
+    public int distinctEssids;
+
+    private Router[] routers;
+    private final RouterIndex.Listener listener = new RouterIndex.Listener() {
+        @Override
+        public void onRouterInserted(int position, RouterIndex.Entry entry) {
+        }
+
+        @Override
+        public void onRouterMoved(int fromPosition, int toPosition, RouterIndex.Entry entry) {
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        routers = SyntheticBursts.routers(reports, distinctEssids, 41);
+    }
+
+    @Benchmark
+    public int mergeBurst() {
+        RouterIndex index = new RouterIndex("(hidden)");
+        index.setListener(listener);
+        for (Router router : routers) {
+            index.merge(router);
+        }
+        return index.size();
+    }
+}
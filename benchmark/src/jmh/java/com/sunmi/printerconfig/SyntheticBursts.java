@@ -0,0 +1,104 @@
+package com.sunmi.printerconfig;
+
+import com.sunmi.cloudprinter.bean.Router;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Deterministic discovery and router bursts shaped like a busy store floor: mostly non-printer
+ * devices, a minority of Sunmi printers, and every device advertising several times.
+ */
+final class SyntheticBursts {
+    private static final String[] SUNMI_NAMES = {
+        "NT311_A1B2", "CloudPrinter-58", "Sunmi Cloud Print", "SUNMI NT212", "nt311s"
+    };
+    private static final String[] OTHER_NAMES = {
+        "", "JBL Flip 5", "Galaxy Buds", "Mi Band 6", "[TV] Samsung 7 Series", "Tile", "HP LaserJet 1020",
+        "Unknown device with a fairly long advertised name"
+    };
+    private static final String[] ESSIDS = {
+        "StoreWiFi", "StoreWiFi-5G", "Guest", "POS-Backoffice", "", "DIRECT-printer", "Cafe Free WiFi"
+    };
+
+    private SyntheticBursts() {
+    }
+
+    static String[] names(int count, long seed) {
+        Random random = new Random(seed);
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = random.nextInt(5) == 0
+                ? SUNMI_NAMES[random.nextInt(SUNMI_NAMES.length)]
+                : OTHER_NAMES[random.nextInt(OTHER_NAMES.length)];
+        }
+        return names;
+    }
+
+    static String[] addresses(int count, long seed) {
+        Random random = new Random(seed);
+        String[] addresses = new String[count];
+        for (int i = 0; i < count; i++) {
+            long mac = random.nextLong() & 0xFFFFFFFFFFFFL;
+            String formatted = String.format(Locale.ROOT, "%012X", mac);
+            addresses[i] = formatted.replaceAll("(..)(?!$)", "$1:");
+            if (random.nextBoolean()) {
+                // The SDK reports both cases; the merger normalizes.
+                addresses[i] = addresses[i].toLowerCase(Locale.ROOT);
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * Indices into a device table, each device repeated {@code repeats} times in shuffled order.
+     */
+    static int[] advertisementOrder(int devices, int repeats, long seed) {
+        int[] order = new int[devices * repeats];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i % devices;
+        }
+        Random random = new Random(seed);
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return order;
+    }
+
+    /**
+     * One RSSI reading per advertisement: each device sits at its own distance and every reading
+     * jitters around it, as multipath does on a shop floor.
+     */
+    static int[] signalReadings(int[] advertisementOrder, int devices, long seed) {
+        Random random = new Random(seed);
+        int[] baseline = new int[devices];
+        for (int i = 0; i < devices; i++) {
+            baseline[i] = -40 - random.nextInt(55);
+        }
+        int[] readings = new int[advertisementOrder.length];
+        for (int i = 0; i < readings.length; i++) {
+            readings[i] = baseline[advertisementOrder[i]] + random.nextInt(13) - 6;
+        }
+        return readings;
+    }
+
+    static Router[] routers(int count, int distinctEssids, long seed) {
+        Random random = new Random(seed);
+        Router[] routers = new Router[count];
+        for (int i = 0; i < count; i++) {
+            int essid = random.nextInt(distinctEssids);
+            String name = ESSIDS[essid % ESSIDS.length] + (essid < ESSIDS.length ? "" : "-" + essid);
+            Router router = new Router();
+            router.setName(name);
+            router.setEssid(name.getBytes(StandardCharsets.UTF_8));
+            router.setHasPwd(random.nextInt(4) != 0);
+            router.setRssi(-30 - random.nextInt(65));
+            routers[i] = router;
+        }
+        return routers;
+    }
+}